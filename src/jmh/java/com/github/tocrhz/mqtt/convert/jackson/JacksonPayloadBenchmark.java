@@ -0,0 +1,90 @@
+package com.github.tocrhz.mqtt.convert.jackson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tocrhz.mqtt.autoconfigure.PayloadJacksonAutoConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个类型缓存的 ObjectReader/ObjectWriter 与原来每次调用 ObjectMapper 的对比, 可选 Blackbird 模块.
+ * <p>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="JacksonPayloadBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JacksonPayloadBenchmark {
+
+    @Param({"pojo", "record"})
+    private String model;
+
+    @Param({"false", "true"})
+    private boolean blackbird;
+
+    private ObjectMapper objectMapper;
+    private Class<?> type;
+    private Object value;
+    private byte[] payload;
+    private JacksonPayloadSerialize serialize;
+    private Converter<byte[], ?> converter;
+
+    @Setup
+    public void setup() throws IOException {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("benchmark",
+                Map.of("mqtt.jackson.blackbird", blackbird)));
+        objectMapper = new PayloadJacksonAutoConfiguration(new DefaultListableBeanFactory(), environment).objectMapper();
+        Telemetry telemetry = Telemetry.sample();
+        value = "record".equals(model) ? telemetry.toRecord() : telemetry;
+        type = value.getClass();
+        payload = objectMapper.writeValueAsBytes(value);
+        serialize = new JacksonPayloadSerialize(objectMapper);
+        converter = new JacksonPayloadDeserialize(objectMapper).getConverter(type);
+    }
+
+    /**
+     * 原来的反序列化: 每次由 ObjectMapper 按类型查找
+     */
+    @Benchmark
+    public Object readMapper() throws IOException {
+        return objectMapper.readValue(payload, type);
+    }
+
+    @Benchmark
+    public Object readCached() {
+        return converter.convert(payload);
+    }
+
+    /**
+     * 原来的序列化: 每次由 ObjectMapper 按类型查找
+     */
+    @Benchmark
+    public byte[] writeMapper() throws IOException {
+        return objectMapper.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public byte[] writeCached() {
+        return serialize.convert(value);
+    }
+}
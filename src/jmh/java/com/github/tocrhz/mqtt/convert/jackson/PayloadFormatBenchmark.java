@@ -0,0 +1,63 @@
+package com.github.tocrhz.mqtt.convert.jackson;
+
+import com.github.tocrhz.mqtt.autoconfigure.PayloadJacksonAutoConfiguration;
+import com.github.tocrhz.mqtt.convert.MqttConversionService;
+import com.github.tocrhz.mqtt.convert.PayloadCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各消息格式编解码的吞吐量, 编码后的大小在开始时输出.
+ * <p>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="PayloadFormatBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadFormatBenchmark {
+
+    @Param({"json", "cbor", "smile", "msgpack"})
+    private String format;
+
+    private PayloadCodec codec;
+    private Telemetry telemetry;
+    private byte[] payload;
+
+    @Setup
+    public void setup() throws IOException {
+        new PayloadJacksonAutoConfiguration(new DefaultListableBeanFactory(), new StandardEnvironment());
+        MqttConversionService registry = MqttConversionService.getSharedInstance();
+        codec = registry.getCodec(format);
+        telemetry = Telemetry.sample();
+        payload = codec.encode(telemetry);
+        int json = registry.getCodec("json").encode(telemetry).length;
+        System.out.printf("%n%s: %d bytes (json: %d bytes, %.0f%%)%n", format, payload.length, json, payload.length * 100.0 / json);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return codec.encode(telemetry);
+    }
+
+    @Benchmark
+    public Telemetry decode() throws IOException {
+        return codec.decode(payload, Telemetry.class);
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按层级匹配的 {@link TopicPair} 与原来正则匹配的对比, 每次操作匹配一组主题(包括不匹配的).
+ * <p>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="TopicPairBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TopicPairBenchmark {
+    private final static Map<String, Class<?>> TYPES = Map.of("channel", Integer.class);
+    private final static String[] TOPICS = {
+            "factory/line-3/sensor-0042/channel/7",
+            "factory/line-3/sensor-0042/channel/12.5",
+            "factory/line-12/plc-7/channel/x",
+            "factory/line-3/sensor-0042/status",
+            "office/floor-2/sensor-0001/channel/1",
+    };
+
+    @Param({"factory/{line}/{device}/channel/{channel}", "factory/+/{device}/#", "factory/+/+/channel/+"})
+    private String template;
+
+    private TopicPair pair;
+    private LegacyTopicPattern legacy;
+    private TopicCapture capture;
+
+    @Setup
+    public void setup() {
+        pair = TopicPair.of(template, 0, null, new HashMap<>(TYPES));
+        legacy = new LegacyTopicPattern(template, TYPES);
+        capture = new TopicCapture();
+    }
+
+    @Benchmark
+    public void regexMatch(Blackhole blackhole) {
+        for (String topic : TOPICS) {
+            blackhole.consume(legacy.matches(topic));
+        }
+    }
+
+    @Benchmark
+    public void levelMatch(Blackhole blackhole) {
+        for (String topic : TOPICS) {
+            blackhole.consume(pair.isMatched(topic));
+        }
+    }
+
+    /**
+     * 原来的消息处理: 正则匹配后每条消息创建 HashMap 保存参数值
+     */
+    @Benchmark
+    public void regexValues(Blackhole blackhole) {
+        for (String topic : TOPICS) {
+            blackhole.consume(legacy.values(topic));
+        }
+    }
+
+    /**
+     * 现在的消息处理: 复用 TopicCapture, 只取需要的参数值
+     */
+    @Benchmark
+    public void levelCapture(Blackhole blackhole) {
+        for (String topic : TOPICS) {
+            if (pair.match(topic, capture)) {
+                for (int i = 0; i < capture.count(); i++) {
+                    blackhole.consume(capture.value(i));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void pathValueMap(Blackhole blackhole) {
+        for (String topic : TOPICS) {
+            blackhole.consume(pair.getPathValueMap(topic));
+        }
+    }
+}
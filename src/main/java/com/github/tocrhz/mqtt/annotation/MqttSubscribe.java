@@ -1,5 +1,7 @@
 package com.github.tocrhz.mqtt.annotation;
 
+import com.github.tocrhz.mqtt.subscriber.AckMode;
+
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -45,4 +47,49 @@ public @interface MqttSubscribe {
      * @return String[] groups
      */
     String[] groups() default "";
+
+    /**
+     * How the method is executed: 'inline', 'pool', 'virtual', 'ordered' or the bean name of an {@link java.util.concurrent.Executor}.
+     * <p>
+     * Default use 'mqtt.executor.type'. Only 'inline' keeps the arrival order, see {@link com.github.tocrhz.mqtt.properties.ExecutorProperties}.
+     *
+     * @return String executor
+     */
+    String executor() default "";
+
+    /**
+     * Name of the topic parameter used as ordering key, e.g. 'id' for 'dev/{id}/tel'.
+     * <p>
+     * If not blank, the executor is 'ordered': messages with the same value are handled in arrival order,
+     * different values in parallel. With executor 'ordered' and blank orderBy, the topic is the key.
+     *
+     * @return String orderBy
+     */
+    String orderBy() default "";
+
+    /**
+     * Max messages per call. If greater than 1, the method receives a batch:
+     * {@code List<MqttMessage>} for the messages, {@code List<String>} for the topics,
+     * {@code List<T>} (or {@code @Payload List<T>}) for the payloads converted to T.
+     *
+     * @return int batchSize, default 1 (no batch)
+     */
+    int batchSize() default 1;
+
+    /**
+     * Max wait time in milliseconds before an incomplete batch is delivered, only used when batchSize greater than 1.
+     * Values less than or equal to 0 fall back to the default.
+     * With executor 'inline' these batches run on the single shared 'mqtt-batch-' thread.
+     *
+     * @return long lingerMs
+     */
+    long lingerMs() default 100;
+
+    /**
+     * When QoS 1/2 messages are acked. With 'MANUAL' the ack is sent after the method (or its batch) completes,
+     * the client then uses manual acks even if 'mqtt.ack-mode' is 'AUTO'.
+     *
+     * @return AckMode, default use 'mqtt.ack-mode'
+     */
+    AckMode ackMode() default AckMode.DEFAULT;
 }
@@ -13,6 +13,9 @@ import java.lang.annotation.Target;
  * If there is no such annotation in the parameter list, the default custom type has this annotation.
  * <p>
  * If there is this annotation in the parameter list, only the message content will be assigned to the annotated parameter.
+ * <p>
+ * A {@code Stream<T>} or {@code Iterator<T>} parameter receives the elements of an array payload,
+ * each element is decoded only when the method iterates to it.
  *
  * @author tocrhz
  */
@@ -35,4 +38,23 @@ public @interface Payload {
      * @return boolean
      */
     boolean required() default false;
+
+    /**
+     * If a message matches several subscribers, the payload is converted once and the same object is passed
+     * to every method with the same target type and converters.
+     * <p>
+     * Set to false if the method modifies the payload, it then gets its own instance.
+     *
+     * @return boolean
+     */
+    boolean shared() default true;
+
+    /**
+     * Payload format, e.g. 'json', 'cbor', 'smile', 'msgpack', see {@link com.github.tocrhz.mqtt.convert.PayloadCodec}.
+     * <p>
+     * Default use the 'payload-format' of the client, or the converters if it is not set either.
+     *
+     * @return String format
+     */
+    String format() default "";
 }
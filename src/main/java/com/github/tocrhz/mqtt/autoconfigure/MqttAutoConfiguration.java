@@ -4,7 +4,7 @@ import com.github.tocrhz.mqtt.convert.MqttConversionService;
 import com.github.tocrhz.mqtt.properties.MqttConfigAdapter;
 import com.github.tocrhz.mqtt.properties.MqttProperties;
 import com.github.tocrhz.mqtt.publisher.MqttPublisher;
-import com.github.tocrhz.mqtt.publisher.SimpleMqttClient;
+import com.github.tocrhz.mqtt.subscriber.MessageExecutors;
 import com.github.tocrhz.mqtt.subscriber.MqttSubscriber;
 import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.springframework.beans.factory.ListableBeanFactory;
@@ -51,6 +51,17 @@ public class MqttAutoConfiguration {
         };
     }
 
+    /**
+     * 消息处理线程
+     *
+     * @param properties MqttProperties
+     * @return MessageExecutors
+     */
+    @Bean
+    public MessageExecutors mqttMessageExecutors(MqttProperties properties) {
+        return new MessageExecutors(properties.getExecutor(), factory);
+    }
+
     /**
      * default MqttConnector.
      * <p>
@@ -58,21 +69,24 @@ public class MqttAutoConfiguration {
      *
      * @param adapter    MqttConfigurer
      * @param properties MqttProperties
+     * @param executors  MessageExecutors
      * @return MqttConnector
      */
     @Bean
-    public MqttClientManager mqttClientManager(MqttProperties properties, MqttConfigAdapter adapter) {
+    public MqttClientManager mqttClientManager(MqttProperties properties, MqttConfigAdapter adapter, MessageExecutors executors) {
         // init property before connected.
         adapter.beforeResolveEmbeddedValue(MqttSubscriber.SUBSCRIBERS);
         for (MqttSubscriber subscriber : MqttSubscriber.SUBSCRIBERS) {
             subscriber.resolveEmbeddedValue(factory);
         }
         adapter.afterResolveEmbeddedValue(MqttSubscriber.SUBSCRIBERS);
-        MqttClientManager manager = new MqttClientManager(properties, adapter);
+        for (MqttSubscriber subscriber : MqttSubscriber.SUBSCRIBERS) {
+            subscriber.resolveExecutor(executors);
+        }
+        MqttClientManager manager = new MqttClientManager(properties, adapter, executors);
         // 将mqtt客户端添加进去
         properties.forEach(manager::clientNew);
-        // 建立连接
-        SimpleMqttClient.scheduled.execute(manager::afterInit);
+        // 所有单例创建完成后在 MqttClientManager#start 中建立连接
         return manager;
     }
 
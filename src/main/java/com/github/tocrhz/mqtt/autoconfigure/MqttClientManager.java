@@ -1,36 +1,64 @@
 package com.github.tocrhz.mqtt.autoconfigure;
 
+import com.github.tocrhz.mqtt.convert.PayloadCompressor;
+import com.github.tocrhz.mqtt.persist.JournalPersistence;
+import com.github.tocrhz.mqtt.properties.InboundProperties;
 import com.github.tocrhz.mqtt.properties.MqttConfigAdapter;
 import com.github.tocrhz.mqtt.properties.MqttConnectionProperties;
 import com.github.tocrhz.mqtt.properties.MqttProperties;
+import com.github.tocrhz.mqtt.properties.OutboundProperties;
+import com.github.tocrhz.mqtt.properties.PersistenceProperties;
+import com.github.tocrhz.mqtt.publisher.OfflineBuffer;
+import com.github.tocrhz.mqtt.publisher.OutboundQueue;
 import com.github.tocrhz.mqtt.publisher.SimpleMqttClient;
+import com.github.tocrhz.mqtt.subscriber.AckCoalescer;
+import com.github.tocrhz.mqtt.subscriber.InboundQueue;
+import com.github.tocrhz.mqtt.subscriber.MessageExecutors;
 import com.github.tocrhz.mqtt.subscriber.MqttSubscriber;
+import com.github.tocrhz.mqtt.subscriber.TopicFilters;
 import com.github.tocrhz.mqtt.subscriber.TopicPair;
+import com.github.tocrhz.mqtt.subscriber.TopicTrie;
 import org.eclipse.paho.client.mqttv3.*;
+import org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 客户端连接管理一下
+ * <p>
+ * 所有单例创建完成后在 {@link #start()} 中建立连接, 先于 Web 服务启动.
  */
 @SuppressWarnings("unused")
-public class MqttClientManager implements DisposableBean {
+public class MqttClientManager implements DisposableBean, SmartLifecycle {
     private final static Logger log = LoggerFactory.getLogger(MqttClientManager.class);
     private final static LinkedHashMap<String, SimpleMqttClient> MQTT_CLIENT_MAP = new LinkedHashMap<>();
     private final MqttProperties properties;
     private final MqttConfigAdapter adapter;
+    private final MessageExecutors executors;
 
     private String defaultClientId = null;
+    private volatile boolean running = false;
+    private volatile boolean connected = false;
 
     public MqttClientManager(MqttProperties properties, MqttConfigAdapter adapter) {
+        this(properties, adapter, null);
+    }
+
+    public MqttClientManager(MqttProperties properties, MqttConfigAdapter adapter, MessageExecutors executors) {
         this.properties = properties;
         this.adapter = adapter;
+        this.executors = executors;
         adapter.setProperties(properties);
     }
 
@@ -58,22 +86,90 @@ public class MqttClientManager implements DisposableBean {
         if (MQTT_CLIENT_MAP.containsKey(clientId)) {
             clientClose(clientId);
         }
+        // 创建topic
+        boolean enableShared = this.properties.isEnableSharedSubscription(clientId);
+        Set<TopicPair> topicPairs = mergeTopics(clientId, enableShared);
+        int subscribeBatch = this.properties.getSubscribeBatchSize(clientId);
+        // 消息分发索引
+        String format = this.properties.getPayloadFormat(clientId);
+        TopicTrie trie = TopicTrie.of(clientId, MqttSubscriber.SUBSCRIBERS, this.properties.getAckMode(clientId), format);
+        // 消息压缩
+        PayloadCompressor compressor = PayloadCompressor.of(clientId, this.properties.getCompression(clientId));
+        int qos = defaultPublishQos != null ? defaultPublishQos : this.properties.getDefaultPublishQos(clientId);
+        // 多个连接时, 其它连接使用 clientId-1, clientId-2 ..., 通过共享订阅分摊消息
+        int connections = this.properties.getConnections(clientId);
+        String shareGroup = connections > 1 ? clientId : null;
+        List<SimpleMqttClient> shards = new ArrayList<>(connections - 1);
+        for (int i = 1; i < connections; ++i) {
+            shards.add(clientNew(clientId, clientId + "-" + i, options, topicPairs, subscribeBatch, trie, enableShared, qos, format, compressor, shareGroup, List.of()));
+        }
+        SimpleMqttClient smc = clientNew(clientId, clientId, options, topicPairs, subscribeBatch, trie, enableShared, qos, format, compressor, shareGroup, List.copyOf(shards));
+        MQTT_CLIENT_MAP.put(clientId, smc);
+        return smc;
+    }
+
+    /**
+     * 创建一个连接
+     *
+     * @param clientId 配置的客户端ID
+     * @param id       连接使用的客户端ID
+     */
+    private SimpleMqttClient clientNew(String clientId, String id, MqttConnectOptions options, Set<TopicPair> topicPairs, int subscribeBatch, TopicTrie trie
+            , boolean enableShared, int qos, String format, PayloadCompressor compressor, String shareGroup, List<SimpleMqttClient> shards) {
         // 创建客户端
         IMqttAsyncClient client;
         try {
-            client = adapter.postCreate(clientId, options.getServerURIs());
+            client = adapter.postCreate(id, options.getServerURIs(), persistence(clientId));
         } catch (MqttException e) {
             log.error("create mqtt client error: {}", e.getMessage(), e);
             throw new RuntimeException(e);
         }
-        // 创建topic
-        boolean enableShared = this.properties.isEnableSharedSubscription(clientId);
-        Set<TopicPair> topicPairs = mergeTopics(clientId, enableShared);
-        int qos = defaultPublishQos != null ? defaultPublishQos : this.properties.getDefaultPublishQos(clientId);
+        // 有订阅者需要处理完成后确认时使用手动确认
+        AckCoalescer acks = trie.isManualAcks() ? new AckCoalescer(id, client, SimpleMqttClient.scheduled) : null;
+        // 接收队列
+        InboundQueue inbound = null;
+        InboundProperties inboundProperties = this.properties.getInbound(clientId);
+        if (inboundProperties != null && inboundProperties.getCapacity() != null && inboundProperties.getCapacity() > 0) {
+            inbound = new InboundQueue(id, inboundProperties.getCapacity(), inboundProperties.getOverflow());
+            if (acks != null) {
+                // 丢弃的消息也要确认, 否则会占用接收窗口
+                inbound.setDropListener((topic, message) -> acks.complete(message));
+            }
+        }
+        // 发送队列
+        OutboundQueue outbound = null;
+        OutboundProperties outboundProperties = this.properties.getOutbound(clientId);
+        if (outboundProperties != null && outboundProperties.getCapacity() != null && outboundProperties.getCapacity() > 0) {
+            outbound = new OutboundQueue(id, client, options.getMaxInflight(), outboundProperties.getCapacity()
+                    , outboundProperties.getOverflow(), TimeUnit.SECONDS.toMillis(options.getExecutorServiceTimeout())
+                    , SimpleMqttClient.scheduled);
+        }
+        // 离线缓存
+        OfflineBuffer offline = OfflineBuffer.of(id, this.properties.getOffline(clientId));
+        if (outbound != null && offline != null) {
+            // 连接断开时发送队列中的消息放回离线缓存
+            outbound.setFallback(offline::offer);
+        }
         // 创建客户端对象
-        SimpleMqttClient smc = new SimpleMqttClient(clientId, options, client, topicPairs, enableShared, qos, adapter);
-        MQTT_CLIENT_MAP.put(clientId, smc);
-        return smc;
+        return new SimpleMqttClient(id, options, client, topicPairs, subscribeBatch, trie, inbound, acks, outbound, offline, enableShared, qos, format, compressor, adapter, shareGroup, shards);
+    }
+
+    /**
+     * 配置的持久化方式, memory 时返回 null, 由 adapter 决定
+     */
+    private MqttClientPersistence persistence(String clientId) {
+        PersistenceProperties persistence = this.properties.getPersistence(clientId);
+        if (persistence == null || persistence.getType() == null || persistence.getType() == PersistenceProperties.PersistenceType.MEMORY) {
+            return null;
+        }
+        String directory = StringUtils.hasText(persistence.getDirectory())
+                ? persistence.getDirectory() : System.getProperty("user.dir");
+        if (persistence.getType() == PersistenceProperties.PersistenceType.FILE) {
+            return new MqttDefaultFilePersistence(directory);
+        }
+        return new JournalPersistence(directory
+                , Objects.requireNonNullElse(persistence.getFileSize(), 64 * 1024 * 1024)
+                , Objects.requireNonNullElse(persistence.getSyncInterval(), 100));
     }
 
     public void clientClose(String clientId) {
@@ -115,70 +211,109 @@ public class MqttClientManager implements DisposableBean {
     }
 
     void afterInit() {
+        afterInit(null);
+    }
 
-        // 初始化完成后，全部建立连接
+    /**
+     * 建立连接, 配置了 startup.await-connected 时等待连接和订阅完成.
+     * <p>
+     * 只在第一次启动时连接, 客户端在 {@link #destroy()} 中关闭.
+     */
+    @Override
+    public void start() {
+        if (!connected) {
+            connected = true;
+            afterInit(properties.getStartup() == null ? null : properties.getStartup().getAwaitConnected());
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 在 Web 服务启动(DEFAULT_PHASE - 1024)之前连接
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+
+    /**
+     * 所有客户端同时建立连接
+     *
+     * @param awaitConnected 等待所有客户端连接并订阅完成的最长时间, 为 null 时不等待
+     */
+    void afterInit(Duration awaitConnected) {
+        long start = System.nanoTime();
+        LinkedHashMap<String, CompletableFuture<Void>> readies = new LinkedHashMap<>();
+        // 初始化完成后，全部建立连接, 连接是异步的, 不会等待上一个客户端
         MQTT_CLIENT_MAP.forEach((id, client) -> {
             try {
                 if (defaultClientId == null) {
                     defaultClientId = id;
                 }
-                client.connect();
+                readies.put(id, client.connect());
             } catch (Exception e) {
-                log.error("mqtt client '{}' close error: {}", id, e.getMessage(), e);
+                log.error("mqtt client '{}' connect error: {}", id, e.getMessage(), e);
             }
         });
+        CompletableFuture<Void> all = CompletableFuture.allOf(readies.values().toArray(new CompletableFuture<?>[0]));
+        all.thenRun(() -> log.info("{} mqtt clients connected and subscribed in {} ms."
+                , readies.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        if (awaitConnected == null || awaitConnected.isNegative() || awaitConnected.isZero()) {
+            return;
+        }
+        try {
+            all.get(awaitConnected.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            List<String> pending = readies.entrySet().stream().filter(entry -> !entry.getValue().isDone())
+                    .map(Map.Entry::getKey).toList();
+            log.warn("mqtt clients {} not ready after {} ms, continue starting.", pending, awaitConnected.toMillis());
+        } catch (ExecutionException e) {
+            log.warn("mqtt clients not ready: {}", e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
-     * 合并相似的主题(实际没啥用)
+     * 合并主题, 去掉被其它主题包含的主题
      * merge the same topic
      *
      * @param clientId clientId
      * @return TopicPairs
      */
     private Set<TopicPair> mergeTopics(String clientId, boolean enableShared) {
-        Set<TopicPair> topicPairs = new HashSet<>();
+        List<TopicPair> topicPairs = new ArrayList<>();
         for (MqttSubscriber subscriber : MqttSubscriber.SUBSCRIBERS) {
             if (subscriber.containsClientId(clientId)) {
                 topicPairs.addAll(subscriber.getTopics());
             }
         }
-        if (topicPairs.isEmpty()) {
-            return topicPairs;
-        }
-        TopicPair[] pairs = new TopicPair[topicPairs.size()];
-        for (TopicPair topic : topicPairs) {
-            for (int i = 0; i < pairs.length; ++i) {
-                TopicPair pair = pairs[i];
-                if (pair == null) {
-                    pairs[i] = topic;
-                    break;
-                }
-                if (pair.getQos() != topic.getQos()) {
-                    continue;
-                }
-                String temp = pair.getTopic(enableShared)
-                        .replace('+', '\u0000')
-                        .replace("#", "\u0000/\u0000");
-                if (MqttTopic.isMatched(topic.getTopic(enableShared), temp)) {
-                    pairs[i] = topic;
-                    continue;
-                }
-                temp = topic.getTopic(enableShared)
-                        .replace('+', '\u0000')
-                        .replace("#", "\u0000/\u0000");
-                if (MqttTopic.isMatched(pair.getTopic(enableShared), temp)) {
-                    break;
-                }
-            }
+        Set<TopicPair> merged = TopicFilters.minimize(topicPairs, enableShared);
+        if (merged.size() < topicPairs.size()) {
+            log.debug("mqtt client '{}' merged {} topics into {}.", clientId, topicPairs.size(), merged.size());
         }
-        return Arrays.stream(pairs).filter(Objects::nonNull).collect(Collectors.toSet());
+        return merged;
     }
 
     @Override
     public void destroy() {
         log.info("shutting down all mqtt client.");
+        // 同一个客户端的各个连接共用一个 compressor
+        List<PayloadCompressor> compressors = new ArrayList<>();
         MQTT_CLIENT_MAP.forEach((id, client) -> {
+            if (client.compressor() != null) {
+                compressors.add(client.compressor());
+            }
             try {
                 client.close();
             } catch (Exception e) {
@@ -186,5 +321,15 @@ public class MqttClientManager implements DisposableBean {
             }
         });
         MQTT_CLIENT_MAP.clear();
+        // 处理还未满的批量消息
+        for (MqttSubscriber subscriber : MqttSubscriber.SUBSCRIBERS) {
+            subscriber.flush();
+        }
+        if (executors != null) {
+            // 客户端关闭后不再有新消息, 等待已接收的消息处理完
+            executors.shutdown(TimeUnit.SECONDS.toMillis(Objects.requireNonNullElse(properties.getExecutorServiceTimeout(), 10)));
+        }
+        // 所有连接都已关闭, 不再压缩和解压
+        compressors.forEach(PayloadCompressor::close);
     }
 }
@@ -0,0 +1,36 @@
+package com.github.tocrhz.mqtt.autoconfigure;
+
+import com.github.tocrhz.mqtt.index.MqttSubscribeIndex;
+import org.springframework.aot.hint.ExecutableMode;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.util.ClassUtils;
+
+import java.util.List;
+
+/**
+ * Runtime hints for what the starter loads by name: the subscriber index, the optional Jackson binary formats
+ * and modules, and virtual threads.
+ *
+ * @see MqttSubscribeAotProcessor
+ */
+class MqttRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.resources().registerPattern(MqttSubscribeIndex.LOCATION);
+        // Java 21+
+        hints.reflection().registerType(java.util.concurrent.Executors.class
+                , builder -> builder.withMethod("newVirtualThreadPerTaskExecutor", List.of(), ExecutableMode.INVOKE));
+        if (!ClassUtils.isPresent("com.fasterxml.jackson.databind.ObjectMapper", classLoader)) {
+            return;
+        }
+        for (String[] format : PayloadJacksonAutoConfiguration.BINARY_FORMATS) {
+            hints.reflection().registerTypeIfPresent(classLoader, format[1], MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        }
+        for (String module : new String[]{PayloadJacksonAutoConfiguration.BLACKBIRD_MODULE, PayloadJacksonAutoConfiguration.AFTERBURNER_MODULE}) {
+            hints.reflection().registerTypeIfPresent(classLoader, module, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        }
+    }
+}
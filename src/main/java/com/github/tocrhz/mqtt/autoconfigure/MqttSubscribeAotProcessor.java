@@ -0,0 +1,57 @@
+package com.github.tocrhz.mqtt.autoconfigure;
+
+import com.github.tocrhz.mqtt.annotation.MqttSubscribe;
+import com.github.tocrhz.mqtt.annotation.NamedValue;
+import com.github.tocrhz.mqtt.annotation.Payload;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.ExecutableMode;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.ReflectionHints;
+import org.springframework.beans.factory.aot.BeanRegistrationAotContribution;
+import org.springframework.beans.factory.aot.BeanRegistrationAotProcessor;
+import org.springframework.beans.factory.support.RegisteredBean;
+import org.springframework.core.convert.converter.Converter;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Registers reflection hints for the beans with @MqttSubscribe methods when building an AOT / native image:
+ * the subscriber methods, the converters named in @Payload, and the payload parameter types for Jackson binding.
+ *
+ * @see MqttSubscribeProcessor
+ */
+class MqttSubscribeAotProcessor implements BeanRegistrationAotProcessor {
+
+    @Override
+    public BeanRegistrationAotContribution processAheadOfTime(RegisteredBean registeredBean) {
+        Class<?> beanClass = registeredBean.getBeanClass();
+        List<Method> methods = Arrays.stream(beanClass.getMethods())
+                .filter(method -> method.isAnnotationPresent(MqttSubscribe.class)).toList();
+        if (methods.isEmpty()) {
+            return null;
+        }
+        return (generationContext, beanRegistrationCode) -> {
+            ReflectionHints reflection = generationContext.getRuntimeHints().reflection();
+            // MqttSubscribeProcessor 通过 getMethods 查找订阅方法
+            reflection.registerType(beanClass, MemberCategory.INTROSPECT_PUBLIC_METHODS);
+            BindingReflectionHintsRegistrar bindings = new BindingReflectionHintsRegistrar();
+            for (Method method : methods) {
+                reflection.registerMethod(method, ExecutableMode.INVOKE);
+                for (Parameter parameter : method.getParameters()) {
+                    Payload payload = parameter.getAnnotation(Payload.class);
+                    if (payload != null) {
+                        for (Class<? extends Converter<?, ?>> converter : payload.value()) {
+                            reflection.registerType(converter, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+                        }
+                    }
+                    if (!parameter.isAnnotationPresent(NamedValue.class)) {
+                        bindings.registerReflectionHints(reflection, parameter.getParameterizedType());
+                    }
+                }
+            }
+        };
+    }
+}
@@ -1,17 +1,23 @@
 package com.github.tocrhz.mqtt.autoconfigure;
 
 import com.github.tocrhz.mqtt.annotation.MqttSubscribe;
+import com.github.tocrhz.mqtt.index.MqttSubscribeIndex;
 import com.github.tocrhz.mqtt.subscriber.MqttSubscriber;
 import com.github.tocrhz.mqtt.subscriber.SubscriberModel;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanClassLoaderAware;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Method;
+import java.util.Collection;
 
 /**
  * When Bean is initialized, filter out the methods annotated with @MqttSubscribe, and create MqttSubscriber
+ * <p>
+ * When a {@link MqttSubscribeIndex} is on the classpath, beans loaded from indexed locations only resolve their listed methods,
+ * and are skipped without reflection when none is listed. Beans from other locations, or with a stale index entry, are scanned.
  *
  * @author tocrhz
  * @see MqttSubscribe
@@ -19,20 +25,41 @@ import java.lang.reflect.Method;
  */
 @Component
 @ConditionalOnProperty(prefix = "mqtt", name = "disable", havingValue = "false", matchIfMissing = true)
-public class MqttSubscribeProcessor implements BeanPostProcessor {
+public class MqttSubscribeProcessor implements BeanPostProcessor, BeanClassLoaderAware {
+
+    private MqttSubscribeIndex index;
+
+    @Override
+    public void setBeanClassLoader(ClassLoader classLoader) {
+        this.index = MqttSubscribeIndex.load(classLoader);
+    }
 
     @Override
     public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
-        Method[] methods = bean.getClass().getMethods();
-        for (Method method : methods) {
-            if (method.isAnnotationPresent(MqttSubscribe.class)) {
-                SubscriberModel model = SubscriberModel.of(method.getAnnotation(MqttSubscribe.class));
-                MqttSubscriber.SUBSCRIBERS.add(MqttSubscriber.of(model, bean, method));
+        Class<?> type = bean.getClass();
+        if (index != null) {
+            Collection<Method> methods = index.resolve(type);
+            if (methods != null) {
+                for (Method method : methods) {
+                    register(bean, method);
+                }
+                return bean;
             }
         }
+        // 没有索引, 类不在索引覆盖的位置或索引过期
+        for (Method method : type.getMethods()) {
+            register(bean, method);
+        }
         return bean;
     }
 
+    private static void register(Object bean, Method method) {
+        if (method.isAnnotationPresent(MqttSubscribe.class)) {
+            SubscriberModel model = SubscriberModel.of(method.getAnnotation(MqttSubscribe.class));
+            MqttSubscriber.SUBSCRIBERS.add(MqttSubscriber.of(model, bean, method));
+        }
+    }
+
     @Override
     public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
         return bean;
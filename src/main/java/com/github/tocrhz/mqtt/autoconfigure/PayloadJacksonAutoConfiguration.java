@@ -1,25 +1,33 @@
 package com.github.tocrhz.mqtt.autoconfigure;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.core.util.VersionUtil;
 import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.github.tocrhz.mqtt.convert.MqttConversionService;
+import com.github.tocrhz.mqtt.convert.PayloadCodec;
 import com.github.tocrhz.mqtt.convert.PayloadDeserialize;
 import com.github.tocrhz.mqtt.convert.PayloadSerialize;
+import com.github.tocrhz.mqtt.convert.jackson.JacksonPayloadCodec;
 import com.github.tocrhz.mqtt.convert.jackson.JacksonPayloadDeserialize;
 import com.github.tocrhz.mqtt.convert.jackson.JacksonPayloadSerialize;
 import com.github.tocrhz.mqtt.convert.jackson.JacksonStringDeserialize;
 import com.github.tocrhz.mqtt.convert.jackson.JacksonStringSerialize;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.ListableBeanFactory;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
@@ -41,8 +49,21 @@ import java.util.Map;
 @ConditionalOnClass(ObjectMapper.class)
 @Configuration
 public class PayloadJacksonAutoConfiguration {
+    private final static Logger log = LoggerFactory.getLogger(PayloadJacksonAutoConfiguration.class);
+    final static String BLACKBIRD_MODULE = "com.fasterxml.jackson.module.blackbird.BlackbirdModule";
+    final static String AFTERBURNER_MODULE = "com.fasterxml.jackson.module.afterburner.AfterburnerModule";
+    // 二进制格式, 对应的依赖存在时注册
+    final static String[][] BINARY_FORMATS = {
+            {"cbor", "com.fasterxml.jackson.dataformat.cbor.CBORFactory"},
+            {"smile", "com.fasterxml.jackson.dataformat.smile.SmileFactory"},
+            {"msgpack", "org.msgpack.jackson.dataformat.MessagePackFactory"},
+    };
 
-    public PayloadJacksonAutoConfiguration(ListableBeanFactory beanFactory) {
+    // 是否注册 Blackbird(或 Afterburner) 模块, 用生成的代码代替反射读写属性
+    private final boolean accelerate;
+
+    public PayloadJacksonAutoConfiguration(ListableBeanFactory beanFactory, Environment environment) {
+        this.accelerate = environment.getProperty("mqtt.jackson.blackbird", Boolean.class, false);
         MqttConversionService registry = MqttConversionService.getSharedInstance();
 
         ObjectMapper objectMapper = objectMapper();
@@ -61,18 +82,70 @@ public class PayloadJacksonAutoConfiguration {
         } else {
             serializeMap.values().forEach(registry::addConverter);
         }
+        // 消息格式, 已有同名的则不添加
+        addCodec(registry, new JacksonPayloadCodec("json", objectMapper));
+        ClassLoader classLoader = PayloadJacksonAutoConfiguration.class.getClassLoader();
+        for (String[] format : BINARY_FORMATS) {
+            if (ClassUtils.isPresent(format[1], classLoader)) {
+                try {
+                    JsonFactory factory = (JsonFactory) ClassUtils.forName(format[1], classLoader).getDeclaredConstructor().newInstance();
+                    addCodec(registry, new JacksonPayloadCodec(format[0], objectMapper(factory)));
+                } catch (Exception e) {
+                    log.warn("create payload format '{}' failed: {}", format[0], e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void addCodec(MqttConversionService registry, PayloadCodec codec) {
+        if (registry.getCodec(codec.format()) == null) {
+            registry.addCodec(codec);
+        }
     }
 
     public ObjectMapper objectMapper() {
-        ObjectMapper objectMapper = new ObjectMapper();
+        return objectMapper(null);
+    }
+
+    /**
+     * 使用指定格式的 ObjectMapper, 与 json 使用相同的配置.
+     *
+     * @param factory JsonFactory, 为 null 时为 json
+     * @return ObjectMapper
+     */
+    public ObjectMapper objectMapper(JsonFactory factory) {
+        ObjectMapper objectMapper = new ObjectMapper(factory);
         objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
         objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
         objectMapper.disable(DeserializationFeature.FAIL_ON_IGNORED_PROPERTIES);
         objectMapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
         objectMapper.registerModule(new MqttDefaultJacksonModule());
+        if (accelerate) {
+            registerAcceleratorModule(objectMapper);
+        }
         return objectMapper;
     }
 
+    /**
+     * 注册 Blackbird 模块, 没有的话使用 Afterburner, 都是可选依赖.
+     */
+    private static void registerAcceleratorModule(ObjectMapper objectMapper) {
+        ClassLoader classLoader = PayloadJacksonAutoConfiguration.class.getClassLoader();
+        for (String name : new String[]{BLACKBIRD_MODULE, AFTERBURNER_MODULE}) {
+            if (ClassUtils.isPresent(name, classLoader)) {
+                try {
+                    Module module = (Module) ClassUtils.forName(name, classLoader).getDeclaredConstructor().newInstance();
+                    objectMapper.registerModule(module);
+                    log.info("jackson module '{}' registered for mqtt payload.", module.getModuleName());
+                    return;
+                } catch (Exception e) {
+                    log.warn("register jackson module '{}' failed: {}", name, e.getMessage());
+                }
+            }
+        }
+        log.warn("mqtt.jackson.blackbird is true, but neither jackson-module-blackbird nor jackson-module-afterburner is present.");
+    }
+
     public JacksonPayloadSerialize jacksonPayloadSerialize(ObjectMapper objectMapper) {
         return new JacksonPayloadSerialize(objectMapper);
     }
@@ -5,14 +5,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.ListableBeanFactory;
 import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.core.convert.ConversionFailedException;
 import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.TypeDescriptor;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.core.convert.converter.ConverterFactory;
 import org.springframework.core.convert.converter.GenericConverter;
 import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.util.ClassUtils;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author tocrhz
@@ -21,12 +29,23 @@ public class MqttConversionService extends GenericConversionService {
     private final static Logger log = LoggerFactory.getLogger(MqttConversionService.class);
     private static volatile MqttConversionService sharedInstance;
 
+    // 已确定的转换方式, source -> target -> plan
+    private final ConcurrentHashMap<Class<?>, Map<Class<?>, Plan>> fromPlans = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, Plan> toPlans = new ConcurrentHashMap<>();
+    // 内置转换类注册完成后, 又添加了 byte[] 转换的目标类型
+    private final Set<Class<?>> overridden = ConcurrentHashMap.newKeySet();
+    private volatile boolean initialized;
+    private volatile boolean overriddenAll;
+    private final ConcurrentHashMap<String, PayloadCodec> codecs = new ConcurrentHashMap<>();
+    private final Set<String> unsupportedFormats = ConcurrentHashMap.newKeySet();
+
     public static MqttConversionService getSharedInstance() {
         if (sharedInstance == null) {
             synchronized (MqttConversionService.class) {
                 if (sharedInstance == null) {
-                    sharedInstance = new MqttConversionService();
-                    init(sharedInstance);
+                    MqttConversionService instance = new MqttConversionService();
+                    init(instance);
+                    sharedInstance = instance;
                 }
             }
         }
@@ -37,13 +56,15 @@ public class MqttConversionService extends GenericConversionService {
         // 其他默认
         registry.addConverter((StringToByteArrayConverter) source -> source.getBytes(StandardCharsets.UTF_8));
         registry.addConverter((ByteArrayToStringConverter) source -> new String(source, StandardCharsets.UTF_8));
-        registry.addConverter((ByteArrayToBooleanConverter) source -> Boolean.parseBoolean(new String(source, StandardCharsets.UTF_8)));
-        registry.addConverter((ByteArrayToByteConverter) source -> Byte.parseByte(new String(source, StandardCharsets.UTF_8)));
-        registry.addConverter((ByteArrayToShortConverter) source -> Short.parseShort(new String(source, StandardCharsets.UTF_8)));
-        registry.addConverter((ByteArrayToIntegerConverter) source -> Integer.parseInt(new String(source, StandardCharsets.UTF_8)));
-        registry.addConverter((ByteArrayToLongConverter) source -> Long.parseLong(new String(source, StandardCharsets.UTF_8)));
-        registry.addConverter((ByteArrayToFloatConverter) source -> Float.parseFloat(new String(source, StandardCharsets.UTF_8)));
-        registry.addConverter((ByteArrayToDoubleConverter) source -> Double.parseDouble(new String(source, StandardCharsets.UTF_8)));
+        // 数值直接从 byte[] 解析, 不创建 String
+        registry.addConverter((ByteArrayToBooleanConverter) ByteArrayParsers::parseBoolean);
+        registry.addConverter((ByteArrayToByteConverter) ByteArrayParsers::parseByte);
+        registry.addConverter((ByteArrayToShortConverter) ByteArrayParsers::parseShort);
+        registry.addConverter((ByteArrayToIntegerConverter) ByteArrayParsers::parseInt);
+        registry.addConverter((ByteArrayToLongConverter) ByteArrayParsers::parseLong);
+        registry.addConverter((ByteArrayToFloatConverter) ByteArrayParsers::parseFloat);
+        registry.addConverter((ByteArrayToDoubleConverter) ByteArrayParsers::parseDouble);
+        registry.initialized = true;
     }
 
     public static void addBeans(ListableBeanFactory beanFactory) {
@@ -52,24 +73,230 @@ public class MqttConversionService extends GenericConversionService {
         beanFactory.getBeansOfType(ConverterFactory.class).values().forEach(registry::addConverterFactory);
         beanFactory.getBeansOfType(Converter.class).values().forEach(registry::addConverter);
         beanFactory.getBeansOfType(GenericConverter.class).values().forEach(registry::addConverter);
+        beanFactory.getBeansOfType(PayloadCodec.class).values().forEach(registry::addCodec);
+    }
+
+    /**
+     * 添加消息格式, 替换同名的格式.
+     *
+     * @param codec 消息格式
+     */
+    public void addCodec(PayloadCodec codec) {
+        codecs.put(codec.format(), codec);
+    }
+
+    /**
+     * 获取消息格式
+     *
+     * @param format 格式名称
+     * @return PayloadCodec, 不存在时为 null
+     */
+    public PayloadCodec getCodec(String format) {
+        return codecs.get(format);
+    }
+
+    /**
+     * 查找转换方法, 用于启动时预先确定转换方式, 之后直接调用不再查找.
+     *
+     * @param sourceType 源类型
+     * @param targetType 目标类型
+     * @return 转换方法, 无法转换时返回 null
+     */
+    public Converter<Object, Object> findConverter(Class<?> sourceType, Class<?> targetType) {
+        TypeDescriptor source = TypeDescriptor.valueOf(sourceType);
+        TypeDescriptor target = TypeDescriptor.valueOf(targetType);
+        if (!canConvert(source, target)) {
+            return null;
+        }
+        GenericConverter converter = getConverter(source, target);
+        if (converter == null) {
+            return null;
+        }
+        return value -> {
+            if (value == null) {
+                return null;
+            }
+            try {
+                return converter.convert(value, source, target);
+            } catch (ConversionFailedException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new ConversionFailedException(source, target, value, e);
+            }
+        };
+    }
+
+    /**
+     * 添加转换类后, 已确定的转换方式可能不再是最优的, 清除重新查找.
+     */
+    @Override
+    public void addConverter(GenericConverter converter) {
+        super.addConverter(converter);
+        if (initialized) {
+            Set<GenericConverter.ConvertiblePair> pairs = converter.getConvertibleTypes();
+            if (pairs == null) {
+                overriddenAll = true;
+            } else {
+                for (GenericConverter.ConvertiblePair pair : pairs) {
+                    if (pair.getSourceType() == byte[].class) {
+                        overridden.add(pair.getTargetType());
+                    }
+                }
+            }
+        }
+        invalidatePlans();
+    }
+
+    /**
+     * byte[] 转为该类型时, 是否仍使用内置的 {@link ByteArrayParsers}, 可以跳过转换服务直接解析.
+     *
+     * @param type 目标类型, 如 int.class
+     * @return boolean
+     */
+    public boolean isBuiltinParser(Class<?> type) {
+        return initialized && !overriddenAll && !overridden.contains(ClassUtils.resolvePrimitiveIfNecessary(type));
+    }
+
+    @Override
+    public void removeConvertible(Class<?> sourceType, Class<?> targetType) {
+        super.removeConvertible(sourceType, targetType);
+        invalidatePlans();
+    }
+
+    private void invalidatePlans() {
+        // 父类构造时还未初始化
+        if (fromPlans != null) {
+            fromPlans.clear();
+            toPlans.clear();
+        }
     }
 
     public byte[] toBytes(Object source) {
         if (source == null) {
             return null;
         }
-        byte[] convert = toBytes(true, this, source);
-        if (convert == null) {
-            // 如果无法转换, 则使用Spring的转换方法
-            convert = toBytes(false, ApplicationConversionService.getSharedInstance(), source);
+        Class<?> src = source.getClass();
+        Plan plan = toPlans.get(src);
+        if (plan == null) {
+            plan = toPlans.computeIfAbsent(src, this::toBytesPlan);
+        }
+        try {
+            return (byte[]) plan.convert(source);
+        } catch (Exception e) {
+            log.error("convert from '{}' to 'byte[]' return null.", src.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 按指定格式转为 byte[], 格式为空时与 {@link #toBytes(Object)} 相同.
+     *
+     * @param source 对象
+     * @param format 消息格式
+     * @return byte[]
+     */
+    public byte[] toBytes(Object source, String format) {
+        if (source == null || format == null || format.isEmpty() || source instanceof byte[]) {
+            return toBytes(source);
+        }
+        PayloadCodec codec = codecs.get(format);
+        if (codec == null) {
+            unsupportedFormat(format);
+            return toBytes(source);
+        }
+        try {
+            return codec.encode(source);
+        } catch (Exception e) {
+            log.error("convert from '{}' to '{}' return null.", source.getClass().getName(), format, e);
+            return null;
+        }
+    }
+
+    /**
+     * 按指定格式转换, 先执行注解里的转换方法, 结果仍为 byte[] 时使用格式解码. 格式为空时与 {@link #fromBytes(byte[], Class, List)} 相同.
+     *
+     * @param source     消息内容
+     * @param target     目标类型
+     * @param converters 注解里的转换方法
+     * @param format     消息格式
+     * @return 对象
+     */
+    public Object fromBytes(byte[] source, Class<?> target, List<Converter<Object, Object>> converters, String format) {
+        if (source == null || format == null || format.isEmpty() || target == byte[].class) {
+            return fromBytes(source, target, converters);
+        }
+        PayloadCodec codec = codecs.get(format);
+        if (codec == null) {
+            unsupportedFormat(format);
+            return fromBytes(source, target, converters);
+        }
+        Object payload = chain(source, converters);
+        if (!(payload instanceof byte[] bytes)) {
+            return payload == null ? null : convertPayload(payload, target);
+        }
+        try {
+            return codec.decode(bytes, target);
+        } catch (Exception e) {
+            log.error("convert from '{}' to {}", format, target.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 消息内容为数组时, 转为逐个解析元素的 Iterator.
+     * <p>
+     * 格式为空时使用 json 格式; 注解里配置了转换方法或格式不存在时, 先转为整个数组.
+     *
+     * @param source     消息内容
+     * @param element    元素类型
+     * @param converters 注解里的转换方法
+     * @param format     消息格式
+     * @return Iterator, 无法转换时为 null
+     */
+    public Iterator<?> fromBytesElements(byte[] source, Class<?> element, List<Converter<Object, Object>> converters, String format) {
+        if (source == null) {
+            return null;
+        }
+        PayloadCodec codec = null;
+        if (converters == null || converters.isEmpty()) {
+            codec = codecs.get(format == null || format.isEmpty() ? "json" : format);
+            if (codec == null && format != null && !format.isEmpty()) {
+                unsupportedFormat(format);
+            }
+        }
+        if (codec == null) {
+            Object array = fromBytes(source, element.arrayType(), converters, format);
+            return array instanceof Object[] elements ? Arrays.asList(elements).iterator() : null;
+        }
+        try {
+            return codec.decodeElements(source, element);
+        } catch (Exception e) {
+            log.error("convert from '{}' to {}", codec.format(), element.getName(), e);
+            return null;
+        }
+    }
+
+    private void unsupportedFormat(String format) {
+        if (unsupportedFormats.add(format)) {
+            log.warn("Unsupported payload format '{}', use default convert.", format);
         }
-        return convert;
     }
 
     public Object fromBytes(byte[] source, Class<?> target, List<Converter<Object, Object>> converters) {
         if (source == null) {
             return null;
         }
+        Object payload = chain(source, converters);
+        if (payload == null) {
+            return null;
+        }
+        return convertPayload(payload, target);
+    }
+
+    /**
+     * 执行注解里的转换方法
+     */
+    private static Object chain(byte[] source, List<Converter<Object, Object>> converters) {
         Object payload = source;
         if (converters != null && !converters.isEmpty()) {
             // 直接配置到注解里的转换方法优先级最高, 按顺序执行
@@ -87,71 +314,124 @@ public class MqttConversionService extends GenericConversionService {
                 }
             }
         }
-        if (payload == null) {
+        return payload;
+    }
+
+    private Object convertPayload(Object payload, Class<?> target) {
+        // 从转换链的结果继续转换
+        Class<?> src = payload.getClass();
+        Map<Class<?>, Plan> targets = fromPlans.get(src);
+        if (targets == null) {
+            targets = fromPlans.computeIfAbsent(src, key -> new ConcurrentHashMap<>());
+        }
+        Plan plan = targets.get(target);
+        if (plan == null) {
+            plan = targets.computeIfAbsent(target, key -> fromBytesPlan(src, key));
+        }
+        try {
+            return plan.convert(payload);
+        } catch (Exception e) {
+            log.error("convert from {} to {}", src.getName(), target.getName(), e);
             return null;
         }
-        Object convert = fromBytes(true, this, source, target);
-        if (convert == null) {
+    }
+
+    /**
+     * 确定转换为 byte[] 的方式: 本身就是 byte[], 直接转 byte[], 先转 String.
+     * 只有自己才先尝试直接转 byte[], Spring 的都是先转 String.
+     */
+    private Plan toBytesPlan(Class<?> src) {
+        if (src == byte[].class) {
+            return IDENTITY;
+        }
+        Plan plan = direct(this, src, byte[].class);
+        if (plan == null) {
+            plan = toString(this, src);
+        }
+        if (plan == null) {
             // 如果无法转换, 则使用Spring的转换方法
-            convert = fromBytes(false, ApplicationConversionService.getSharedInstance(), source, target);
+            plan = toString(ApplicationConversionService.getSharedInstance(), src);
+        }
+        if (plan == null) {
+            log.warn("Unsupported convert from '{}' to 'byte[]', return null.", src.getName());
+            return NONE;
         }
-        return convert;
+        return plan;
     }
 
-    private static byte[] toBytes(boolean self, ConversionService service, Object source) {
-        Class<?> src = source.getClass();
-        try {
-            // 如果本身就是byte[], 直接返回
-            if (src == byte[].class) {
-                return (byte[]) source;
-            }
-            // 如果能直接转byte[], 就直接转 (只有自己才先尝试直接转byte[], 其他的都是先转String）
-            if (self && service.canConvert(src, byte[].class)) {
-                return service.convert(source, byte[].class);
-            }
-            // 如果不能, 就先转String, 再转为byte
-            if (service.canConvert(src, String.class)) {
-                String temporary = service.convert(source, String.class);
-                if (temporary == null) {
-                    log.warn("convert from '{}' to 'java.lang.String' return null.", src.getName());
-                    return null;
-                }
-                return temporary.getBytes(StandardCharsets.UTF_8);
-            } else {
-                log.warn("convert from '{}' to 'byte[]' return null.", src.getName());
+    private static Plan toString(ConversionService service, Class<?> src) {
+        Plan plan = direct(service, src, String.class);
+        if (plan == null) {
+            return null;
+        }
+        return source -> {
+            Object temporary = plan.convert(source);
+            if (temporary == null) {
+                log.warn("convert from '{}' to 'java.lang.String' return null.", src.getName());
                 return null;
             }
-        } catch (Exception e) {
-            log.error("convert from '{}' to 'byte[]' return null.", src.getName(), e);
+            return ((String) temporary).getBytes(StandardCharsets.UTF_8);
+        };
+    }
+
+    /**
+     * 确定转换方式: 直接转换, 先转 String 再转换. 先用自己的, 无法转换时使用Spring的.
+     */
+    private Plan fromBytesPlan(Class<?> src, Class<?> target) {
+        if (target == src) {
+            return IDENTITY;
+        }
+        Plan plan = fromBytesPlan(this, src, target);
+        if (plan == null) {
+            // 如果无法转换, 则使用Spring的转换方法
+            plan = fromBytesPlan(ApplicationConversionService.getSharedInstance(), src, target);
+        }
+        if (plan == null) {
+            log.warn("Unsupported convert from {} to {}, return null.", src.getName(), target.getName());
+            return NONE;
+        }
+        return plan;
+    }
+
+    private static Plan fromBytesPlan(ConversionService service, Class<?> src, Class<?> target) {
+        Plan plan = direct(service, src, target);
+        if (plan != null) {
+            return plan;
+        }
+        Plan first = direct(service, src, String.class);
+        Plan second = first == null ? null : direct(service, String.class, target);
+        if (second == null) {
             return null;
         }
+        return source -> {
+            Object temporary = first.convert(source);
+            return temporary == null ? null : second.convert(temporary);
+        };
     }
 
-    private static Object fromBytes(boolean self, ConversionService service, Object source, Class<?> target) {
-        Class<?> src = source.getClass();
-        try {
-            if (target == src) {
-                return source;
-            }
-            if (self && src == byte[].class && service.canConvert(src, target)) {
-                return service.convert(source, target);
-            }
-            if (src != byte[].class && service.canConvert(src, target)) {
-                return service.convert(source, target);
-            }
-            if (service.canConvert(src, target)) {
-                return service.convert(source, target);
-            }
-            if (service.canConvert(src, String.class) && service.canConvert(String.class, target)) {
-                return service.convert(service.convert(source, String.class), target);
-            } else {
-                log.warn("convert from {} to {}", src.getName(), target.getName());
-                return null;
-            }
-        } catch (Exception e) {
-            log.error("convert from {} to {}", src.getName(), target.getName(), e);
+    private static Plan direct(ConversionService service, Class<?> src, Class<?> target) {
+        if (!service.canConvert(src, target)) {
             return null;
         }
+        TypeDescriptor sourceType = TypeDescriptor.valueOf(src);
+        TypeDescriptor targetType = TypeDescriptor.valueOf(target);
+        if (service instanceof MqttConversionService self) {
+            GenericConverter converter = self.getConverter(sourceType, targetType);
+            if (converter != null) {
+                return source -> converter.convert(source, sourceType, targetType);
+            }
+        }
+        return source -> service.convert(source, sourceType, targetType);
     }
-}
 
+    /**
+     * Conversion resolved once for a (source, target) pair, including the failed ones.
+     */
+    @FunctionalInterface
+    private interface Plan {
+        Object convert(Object source);
+    }
+
+    private final static Plan IDENTITY = source -> source;
+    private final static Plan NONE = source -> null;
+}
@@ -0,0 +1,59 @@
+package com.github.tocrhz.mqtt.convert;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Encodes and decodes payloads in a named format, e.g. 'json', 'cbor', 'smile'.
+ * <p>
+ * Selected by {@link com.github.tocrhz.mqtt.annotation.Payload#format()}, the format argument of
+ * {@link com.github.tocrhz.mqtt.publisher.SimpleMqttClient#send} or the client property 'payload-format'.
+ * Beans of this type are registered to {@link MqttConversionService} and replace the default codec of the same format.
+ */
+public interface PayloadCodec {
+
+    /**
+     * 格式名称
+     *
+     * @return String
+     */
+    String format();
+
+    /**
+     * 对象转为消息内容
+     *
+     * @param source 对象
+     * @return byte[]
+     * @throws IOException 无法转换
+     */
+    byte[] encode(Object source) throws IOException;
+
+    /**
+     * 消息内容转为对象
+     *
+     * @param source     消息内容
+     * @param targetType 目标类型
+     * @param <T>        目标类型
+     * @return 对象
+     * @throws IOException 无法转换
+     */
+    <T> T decode(byte[] source, Class<T> targetType) throws IOException;
+
+    /**
+     * 消息内容为数组时, 逐个转为对象.
+     * <p>
+     * 默认先转为整个数组, 支持流式解析的格式应重写该方法, 在迭代时才解析下一个元素.
+     *
+     * @param source      消息内容
+     * @param elementType 元素类型
+     * @param <T>         元素类型
+     * @return Iterator
+     * @throws IOException 无法转换
+     */
+    @SuppressWarnings("unchecked")
+    default <T> Iterator<T> decodeElements(byte[] source, Class<T> elementType) throws IOException {
+        T[] array = (T[]) decode(source, elementType.arrayType());
+        return array == null ? null : Arrays.asList(array).iterator();
+    }
+}
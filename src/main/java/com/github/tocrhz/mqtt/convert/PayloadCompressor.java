@@ -0,0 +1,399 @@
+package com.github.tocrhz.mqtt.convert;
+
+import com.github.tocrhz.mqtt.properties.CompressionProperties;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.MqttTopic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Gzip compression of payloads above a size threshold.
+ * <p>
+ * Compressed payloads are plain gzip (RFC 1952), so a receiver recognizes them by the magic bytes {@code 1f 8b}
+ * and inflates them before conversion. {@link Deflater} and {@link Inflater} hold native memory, they are pooled
+ * instead of being created per message. Inflating stops with an error once the output passes the max inflated size,
+ * so a small malicious payload cannot exhaust the heap.
+ */
+public final class PayloadCompressor {
+    private final static Logger log = LoggerFactory.getLogger(PayloadCompressor.class);
+    private final static int MAGIC_1 = 0x1f;
+    private final static int MAGIC_2 = 0x8b;
+    private final static int HEADER_SIZE = 10;
+    private final static int TRAILER_SIZE = 8;
+    private final static int FLAG_HCRC = 0x02;
+    private final static int FLAG_EXTRA = 0x04;
+    private final static int FLAG_NAME = 0x08;
+    private final static int FLAG_COMMENT = 0x10;
+    private final static int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    // 许多服务端默认的最大报文为 1MB
+    public final static int DEFAULT_MAX_INFLATED_SIZE = 16 * 1024 * 1024;
+
+    private final String clientId;
+    private final int threshold;
+    private final int level;
+    private final String[] topics;
+    private final int maxInflatedSize;
+    private final ArrayBlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final ArrayBlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder compressedBytesIn = new LongAdder();
+    private final LongAdder compressedBytesOut = new LongAdder();
+    private final LongAdder compressNanos = new LongAdder();
+    private final LongAdder inflated = new LongAdder();
+    private final LongAdder inflateNanos = new LongAdder();
+    private final LongAdder inflateErrors = new LongAdder();
+
+    public PayloadCompressor(String clientId, int threshold, int level, String[] topics) {
+        this(clientId, threshold, level, topics, DEFAULT_MAX_INFLATED_SIZE);
+    }
+
+    /**
+     * @param clientId        客户端ID
+     * @param threshold       压缩阈值(字节)
+     * @param level           压缩级别
+     * @param topics          需要压缩和解压的主题, 为空时全部主题
+     * @param maxInflatedSize 解压后的最大大小(字节)
+     */
+    public PayloadCompressor(String clientId, int threshold, int level, String[] topics, int maxInflatedSize) {
+        this.clientId = clientId;
+        this.threshold = Math.max(threshold, 0);
+        this.level = level;
+        this.topics = topics == null || topics.length == 0 ? null : topics;
+        this.maxInflatedSize = maxInflatedSize > 0 ? maxInflatedSize : DEFAULT_MAX_INFLATED_SIZE;
+    }
+
+    /**
+     * 根据配置创建, 未启用时返回 null.
+     *
+     * @param clientId   客户端ID
+     * @param properties 压缩配置
+     * @return PayloadCompressor
+     */
+    public static PayloadCompressor of(String clientId, CompressionProperties properties) {
+        if (properties == null || !Boolean.TRUE.equals(properties.getEnabled())) {
+            return null;
+        }
+        int threshold = properties.getThreshold() == null ? 1024 : properties.getThreshold();
+        int level = properties.getLevel() == null ? Deflater.DEFAULT_COMPRESSION : properties.getLevel();
+        int maxInflatedSize = properties.getMaxInflatedSize() == null ? DEFAULT_MAX_INFLATED_SIZE : properties.getMaxInflatedSize();
+        return new PayloadCompressor(clientId, threshold, level, properties.getTopics(), maxInflatedSize);
+    }
+
+    /**
+     * 主题是否需要压缩和解压
+     *
+     * @param topic 主题
+     * @return boolean
+     */
+    public boolean matches(String topic) {
+        if (topics == null) {
+            return true;
+        }
+        for (String filter : topics) {
+            if (MqttTopic.isMatched(filter, topic)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 压缩, 小于阈值, 主题不匹配或压缩后没有变小时返回原数组.
+     *
+     * @param topic   主题
+     * @param payload 消息内容
+     * @return byte[]
+     */
+    public byte[] compress(String topic, byte[] payload) {
+        if (payload == null || payload.length < threshold || !matches(topic)) {
+            return payload;
+        }
+        long start = System.nanoTime();
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        }
+        byte[] result;
+        try {
+            result = deflate(deflater, payload);
+        } finally {
+            deflater.reset();
+            if (!deflaters.offer(deflater)) {
+                deflater.end();
+            }
+        }
+        compressNanos.add(System.nanoTime() - start);
+        if (result.length >= payload.length) {
+            return payload;
+        }
+        compressed.increment();
+        compressedBytesIn.add(payload.length);
+        compressedBytesOut.add(result.length);
+        return result;
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] payload) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2 + HEADER_SIZE + TRAILER_SIZE);
+        out.write(MAGIC_1);
+        out.write(MAGIC_2);
+        out.write(Deflater.DEFLATED);
+        // FLG, MTIME(4), XFL, OS=unknown
+        out.write(0);
+        out.write(0);
+        out.write(0);
+        out.write(0);
+        out.write(0);
+        out.write(0);
+        out.write(0xff);
+        deflater.setInput(payload);
+        deflater.finish();
+        byte[] buffer = new byte[Math.min(Math.max(payload.length, 64), 8192)];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        writeInt(out, (int) crc.getValue());
+        writeInt(out, payload.length);
+        return out.toByteArray();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    /**
+     * 是否为 gzip 格式
+     *
+     * @param payload 消息内容
+     * @return boolean
+     */
+    public static boolean isCompressed(byte[] payload) {
+        return payload != null && payload.length >= HEADER_SIZE + TRAILER_SIZE
+                && (payload[0] & 0xff) == MAGIC_1 && (payload[1] & 0xff) == MAGIC_2 && payload[2] == Deflater.DEFLATED;
+    }
+
+    /**
+     * 解压, 不是 gzip 格式, 主题不匹配, 解压失败或超过最大大小时返回原消息.
+     *
+     * @param topic   主题
+     * @param message 消息
+     * @return MqttMessage
+     */
+    public MqttMessage inflate(String topic, MqttMessage message) {
+        byte[] payload = message.getPayload();
+        if (!isCompressed(payload) || !matches(topic)) {
+            return message;
+        }
+        long start = System.nanoTime();
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        try {
+            byte[] result = inflate(inflater, payload, maxInflatedSize);
+            inflated.increment();
+            return new InflatedMessage(result, message);
+        } catch (DataFormatException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            inflateErrors.increment();
+            log.warn("mqtt client '{}' inflate payload of topic '{}' failed: {}", clientId, topic, e.getMessage());
+            return message;
+        } finally {
+            inflater.reset();
+            if (!inflaters.offer(inflater)) {
+                inflater.end();
+            }
+            inflateNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private static byte[] inflate(Inflater inflater, byte[] payload, int maxSize) throws DataFormatException {
+        int flags = payload[3] & 0xff;
+        int offset = HEADER_SIZE;
+        if ((flags & FLAG_EXTRA) != 0) {
+            offset += 2 + ((payload[offset] & 0xff) | (payload[offset + 1] & 0xff) << 8);
+        }
+        if ((flags & FLAG_NAME) != 0) {
+            offset = skipZeroTerminated(payload, offset);
+        }
+        if ((flags & FLAG_COMMENT) != 0) {
+            offset = skipZeroTerminated(payload, offset);
+        }
+        if ((flags & FLAG_HCRC) != 0) {
+            offset += 2;
+        }
+        int end = payload.length - TRAILER_SIZE;
+        if (offset > end) {
+            throw new DataFormatException("invalid gzip header");
+        }
+        int size = readInt(payload, end + 4);
+        if (size < 0 || size > maxSize) {
+            throw new DataFormatException("inflated size exceeds " + maxSize + " bytes");
+        }
+        int crc = readInt(payload, end);
+        inflater.setInput(payload, offset, end - offset);
+        // ISIZE 只是长度对 2^32 取模的值, 仅用作初始大小; 多留 1 字节用于判断是否超过最大大小
+        long limit = (long) maxSize + 1;
+        long initial = size > 0 && size <= ((long) payload.length << 10) ? size : Math.max(payload.length * 4L, 64);
+        byte[] result = new byte[(int) Math.min(initial, limit)];
+        int length = 0;
+        while (!inflater.finished()) {
+            if (length == result.length) {
+                result = Arrays.copyOf(result, (int) Math.min((long) result.length << 1, limit));
+            }
+            int n = inflater.inflate(result, length, result.length - length);
+            if (n == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                throw new DataFormatException("truncated gzip data");
+            }
+            length += n;
+            if (length > maxSize) {
+                throw new DataFormatException("inflated size exceeds " + maxSize + " bytes");
+            }
+        }
+        if (length != size) {
+            throw new DataFormatException("gzip size mismatch");
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(result, 0, length);
+        if ((int) checksum.getValue() != crc) {
+            throw new DataFormatException("gzip crc mismatch");
+        }
+        return length == result.length ? result : Arrays.copyOf(result, length);
+    }
+
+    private static int skipZeroTerminated(byte[] payload, int offset) throws DataFormatException {
+        while (offset < payload.length) {
+            if (payload[offset++] == 0) {
+                return offset;
+            }
+        }
+        throw new DataFormatException("invalid gzip header");
+    }
+
+    private static int readInt(byte[] payload, int offset) {
+        return (payload[offset] & 0xff) | (payload[offset + 1] & 0xff) << 8
+                | (payload[offset + 2] & 0xff) << 16 | (payload[offset + 3] & 0xff) << 24;
+    }
+
+    /**
+     * 压缩的消息数量
+     *
+     * @return long
+     */
+    public long getCompressedCount() {
+        return compressed.sum();
+    }
+
+    /**
+     * 压缩前的总字节数
+     *
+     * @return long
+     */
+    public long getCompressedBytesIn() {
+        return compressedBytesIn.sum();
+    }
+
+    /**
+     * 压缩后的总字节数
+     *
+     * @return long
+     */
+    public long getCompressedBytesOut() {
+        return compressedBytesOut.sum();
+    }
+
+    /**
+     * 压缩率, 压缩后/压缩前, 没有压缩过时为 1.
+     *
+     * @return double
+     */
+    public double getCompressionRatio() {
+        long in = compressedBytesIn.sum();
+        return in == 0 ? 1.0 : (double) compressedBytesOut.sum() / in;
+    }
+
+    /**
+     * 压缩耗时(纳秒), 包括压缩后没有变小的消息.
+     *
+     * @return long
+     */
+    public long getCompressNanos() {
+        return compressNanos.sum();
+    }
+
+    /**
+     * 解压的消息数量
+     *
+     * @return long
+     */
+    public long getInflatedCount() {
+        return inflated.sum();
+    }
+
+    /**
+     * 解压耗时(纳秒)
+     *
+     * @return long
+     */
+    public long getInflateNanos() {
+        return inflateNanos.sum();
+    }
+
+    /**
+     * 解压失败的消息数量
+     *
+     * @return long
+     */
+    public long getInflateErrors() {
+        return inflateErrors.sum();
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public int getMaxInflatedSize() {
+        return maxInflatedSize;
+    }
+
+    /**
+     * 释放缓存的 Deflater 和 Inflater
+     */
+    public void close() {
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) {
+            deflater.end();
+        }
+        Inflater inflater;
+        while ((inflater = inflaters.poll()) != null) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 解压后的消息, 保留原消息的 id, qos, retained 和 duplicate.
+     */
+    private static final class InflatedMessage extends MqttMessage {
+        private InflatedMessage(byte[] payload, MqttMessage source) {
+            super(payload);
+            setQos(source.getQos());
+            setRetained(source.isRetained());
+            setDuplicate(source.isDuplicate());
+            setId(source.getId());
+        }
+    }
+}
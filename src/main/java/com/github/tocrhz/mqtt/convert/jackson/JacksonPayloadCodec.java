@@ -0,0 +1,63 @@
+package com.github.tocrhz.mqtt.convert.jackson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.tocrhz.mqtt.convert.PayloadCodec;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Payload codec of a Jackson data format, the format is decided by the factory of the ObjectMapper.
+ * <p>
+ * 每个类型使用预先确定类型的 ObjectReader, ObjectWriter.
+ */
+public class JacksonPayloadCodec implements PayloadCodec {
+    private final String format;
+    private final ObjectMapper objectMapper;
+    private final ConcurrentHashMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    public JacksonPayloadCodec(String format, ObjectMapper objectMapper) {
+        this.format = format;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String format() {
+        return format;
+    }
+
+    @Override
+    public byte[] encode(Object source) throws IOException {
+        Class<?> type = source.getClass();
+        ObjectWriter writer = writers.get(type);
+        if (writer == null) {
+            writer = writers.computeIfAbsent(type, objectMapper::writerFor);
+        }
+        return writer.writeValueAsBytes(source);
+    }
+
+    @Override
+    public <T> T decode(byte[] source, Class<T> targetType) throws IOException {
+        return reader(targetType).readValue(source);
+    }
+
+    /**
+     * 使用 MappingIterator 流式解析, 根节点为数组时逐个返回数组中的元素, 否则逐个返回根节点.
+     */
+    @Override
+    public <T> Iterator<T> decodeElements(byte[] source, Class<T> elementType) throws IOException {
+        return reader(elementType).readValues(source);
+    }
+
+    private ObjectReader reader(Class<?> type) {
+        ObjectReader reader = readers.get(type);
+        if (reader == null) {
+            reader = readers.computeIfAbsent(type, objectMapper::readerFor);
+        }
+        return reader;
+    }
+}
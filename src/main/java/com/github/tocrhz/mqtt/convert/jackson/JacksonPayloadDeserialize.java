@@ -1,6 +1,7 @@
 package com.github.tocrhz.mqtt.convert.jackson;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.github.tocrhz.mqtt.convert.PayloadDeserialize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,14 +9,18 @@ import org.springframework.core.convert.converter.Converter;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 默认的json字符串转对象配置
+ * <p>
+ * 每个类型的转换方法只创建一次, 使用预先确定类型的 ObjectReader.
  */
 public class JacksonPayloadDeserialize implements PayloadDeserialize {
     private final static Logger log = LoggerFactory.getLogger(JacksonPayloadDeserialize.class);
 
     private final ObjectMapper objectMapper;
+    private final ConcurrentHashMap<Class<?>, Converter<byte[], ?>> converters = new ConcurrentHashMap<>();
 
     public JacksonPayloadDeserialize(ObjectMapper objectMapper) {
         this.objectMapper = objectMapper;
@@ -24,14 +29,19 @@ public class JacksonPayloadDeserialize implements PayloadDeserialize {
     @Override
     @SuppressWarnings("unchecked")
     public <T> Converter<byte[], T> getConverter(Class<T> targetType) {
+        return (Converter<byte[], T>) converters.computeIfAbsent(targetType, this::createConverter);
+    }
+
+    private Converter<byte[], ?> createConverter(Class<?> targetType) {
+        if (targetType == byte[].class) {
+            return source -> source;
+        } else if (targetType == String.class) {
+            return source -> new String(source, StandardCharsets.UTF_8);
+        }
+        ObjectReader reader = objectMapper.readerFor(targetType);
         return source -> {
             try {
-                if (targetType == byte[].class) {
-                    return (T) source;
-                }else if (targetType == String.class) {
-                    return (T) new String(source, StandardCharsets.UTF_8);
-                }
-                return objectMapper.readValue(source, targetType);
+                return reader.readValue(source);
             } catch (IOException e) {
                 log.warn("Payload deserialize error: {}", e.getMessage(), e);
             }
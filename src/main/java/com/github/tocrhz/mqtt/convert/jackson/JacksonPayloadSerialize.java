@@ -1,19 +1,24 @@
 package com.github.tocrhz.mqtt.convert.jackson;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.github.tocrhz.mqtt.convert.PayloadSerialize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 默认的对象转json字符串配置
+ * <p>
+ * 每个类型使用预先确定类型的 ObjectWriter.
  */
 public class JacksonPayloadSerialize implements PayloadSerialize {
     private final static Logger log = LoggerFactory.getLogger(JacksonPayloadDeserialize.class);
 
     private final ObjectMapper objectMapper;
+    private final ConcurrentHashMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
 
     public JacksonPayloadSerialize(ObjectMapper objectMapper) {
         this.objectMapper = objectMapper;
@@ -27,10 +32,18 @@ public class JacksonPayloadSerialize implements PayloadSerialize {
             }else if (source instanceof String){
                 return ((String) source).getBytes(StandardCharsets.UTF_8);
             }
-            return objectMapper.writeValueAsBytes(source);
+            return writer(source.getClass()).writeValueAsBytes(source);
         } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
             log.warn("Payload serialize error: {}", e.getMessage(), e);
         }
         return null;
     }
+
+    private ObjectWriter writer(Class<?> type) {
+        ObjectWriter writer = writers.get(type);
+        if (writer == null) {
+            writer = writers.computeIfAbsent(type, objectMapper::writerFor);
+        }
+        return writer;
+    }
 }
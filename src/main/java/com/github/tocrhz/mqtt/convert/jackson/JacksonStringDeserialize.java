@@ -1,6 +1,7 @@
 package com.github.tocrhz.mqtt.convert.jackson;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.convert.converter.Converter;
@@ -8,14 +9,18 @@ import org.springframework.core.convert.converter.ConverterFactory;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 默认的json字符串转对象配置
+ * <p>
+ * 每个类型的转换方法只创建一次, 使用预先确定类型的 ObjectReader.
  */
 public class JacksonStringDeserialize implements ConverterFactory<String, Object> {
     private final static Logger log = LoggerFactory.getLogger(JacksonStringDeserialize.class);
 
     private final ObjectMapper objectMapper;
+    private final ConcurrentHashMap<Class<?>, Converter<String, ?>> converters = new ConcurrentHashMap<>();
 
     public JacksonStringDeserialize(ObjectMapper objectMapper) {
         this.objectMapper = objectMapper;
@@ -24,14 +29,19 @@ public class JacksonStringDeserialize implements ConverterFactory<String, Object
     @Override
     @SuppressWarnings("unchecked")
     public <T> Converter<String, T> getConverter(Class<T> targetType) {
+        return (Converter<String, T>) converters.computeIfAbsent(targetType, this::createConverter);
+    }
+
+    private Converter<String, ?> createConverter(Class<?> targetType) {
+        if (targetType == byte[].class) {
+            return source -> source.getBytes(StandardCharsets.UTF_8);
+        } else if (targetType == String.class) {
+            return source -> source;
+        }
+        ObjectReader reader = objectMapper.readerFor(targetType);
         return source -> {
             try {
-                if (targetType == byte[].class) {
-                    return (T) source.getBytes(StandardCharsets.UTF_8);
-                }else if (targetType == String.class) {
-                    return (T) source;
-                }
-                return objectMapper.readValue(source, targetType);
+                return reader.readValue(source);
             } catch (IOException e) {
                 log.warn("Payload deserialize error: {}", e.getMessage(), e);
             }
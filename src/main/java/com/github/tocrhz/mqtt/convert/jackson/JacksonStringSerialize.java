@@ -1,17 +1,23 @@
 package com.github.tocrhz.mqtt.convert.jackson;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.convert.converter.Converter;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * 默认的对象转json字符串配置
+ * <p>
+ * 每个类型使用预先确定类型的 ObjectWriter.
  */
 public class JacksonStringSerialize implements Converter<Object, String> {
     private final static Logger log = LoggerFactory.getLogger(JacksonStringSerialize.class);
 
     private final ObjectMapper objectMapper;
+    private final ConcurrentHashMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
 
     public JacksonStringSerialize(ObjectMapper objectMapper) {
         this.objectMapper = objectMapper;
@@ -23,10 +29,18 @@ public class JacksonStringSerialize implements Converter<Object, String> {
             if (source instanceof String) {
                 return (String) source;
             }
-            return objectMapper.writeValueAsString(source);
+            return writer(source.getClass()).writeValueAsString(source);
         } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
             log.warn("Payload serialize error: {}", e.getMessage(), e);
         }
         return null;
     }
+
+    private ObjectWriter writer(Class<?> type) {
+        ObjectWriter writer = writers.get(type);
+        if (writer == null) {
+            writer = writers.computeIfAbsent(type, objectMapper::writerFor);
+        }
+        return writer;
+    }
 }
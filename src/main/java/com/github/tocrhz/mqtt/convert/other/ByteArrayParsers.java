@@ -0,0 +1,167 @@
+package com.github.tocrhz.mqtt.convert.other;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses plain ASCII payloads into numbers and booleans without creating a String.
+ * <p>
+ * Only the common form (optional sign, digits, and for floating point an optional fraction) is parsed here.
+ * Anything else, e.g. whitespace, exponents, non-ASCII digits or out of range values, falls back to
+ * {@code Xxx.parseXxx(new String(source, UTF_8))}, so results and exceptions are exactly the same.
+ */
+public final class ByteArrayParsers {
+    // 10^0 ~ 10^22 都可以用 double 精确表示
+    private final static double[] DOUBLE_POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    // 10^0 ~ 10^10 都可以用 float 精确表示
+    private final static float[] FLOAT_POW10 = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    private ByteArrayParsers() {
+    }
+
+    public static boolean parseBoolean(byte[] source) {
+        if (source.length == 4) {
+            return (source[0] | 0x20) == 't' && (source[1] | 0x20) == 'r'
+                    && (source[2] | 0x20) == 'u' && (source[3] | 0x20) == 'e';
+        }
+        for (byte b : source) {
+            if (b < 0) {
+                return Boolean.parseBoolean(string(source));
+            }
+        }
+        return false;
+    }
+
+    public static byte parseByte(byte[] source) {
+        long value = parseDigits(source, 3);
+        if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+            return Byte.parseByte(string(source));
+        }
+        return (byte) value;
+    }
+
+    public static short parseShort(byte[] source) {
+        long value = parseDigits(source, 5);
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+            return Short.parseShort(string(source));
+        }
+        return (short) value;
+    }
+
+    public static int parseInt(byte[] source) {
+        long value = parseDigits(source, 10);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return Integer.parseInt(string(source));
+        }
+        return (int) value;
+    }
+
+    public static long parseLong(byte[] source) {
+        long value = parseDigits(source, 18);
+        if (value == Long.MIN_VALUE) {
+            return Long.parseLong(string(source));
+        }
+        return value;
+    }
+
+    public static double parseDouble(byte[] source) {
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        int i = 0;
+        boolean negative = false;
+        if (source.length > 0 && (source[0] == '-' || source[0] == '+')) {
+            negative = source[0] == '-';
+            i = 1;
+        }
+        for (; i < source.length; i++) {
+            int b = source[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                if (++digits > 15) {
+                    return Double.parseDouble(string(source));
+                }
+                if (scale >= 0) {
+                    ++scale;
+                }
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return Double.parseDouble(string(source));
+            }
+        }
+        if (digits == 0 || scale == 0) {
+            // "", "-", ".", "1.": 交给 JDK 处理
+            return Double.parseDouble(string(source));
+        }
+        // 尾数小于 2^53 且 10 的幂可以精确表示时, 一次除法的结果就是正确舍入的
+        double value = scale < 0 ? (double) mantissa : mantissa / DOUBLE_POW10[scale];
+        return negative ? -value : value;
+    }
+
+    public static float parseFloat(byte[] source) {
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        int i = 0;
+        boolean negative = false;
+        if (source.length > 0 && (source[0] == '-' || source[0] == '+')) {
+            negative = source[0] == '-';
+            i = 1;
+        }
+        for (; i < source.length; i++) {
+            int b = source[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                if (++digits > 7 || scale >= 10) {
+                    return Float.parseFloat(string(source));
+                }
+                if (scale >= 0) {
+                    ++scale;
+                }
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return Float.parseFloat(string(source));
+            }
+        }
+        if (digits == 0 || scale == 0) {
+            return Float.parseFloat(string(source));
+        }
+        float value = scale < 0 ? (float) mantissa : mantissa / FLOAT_POW10[scale];
+        return negative ? -value : value;
+    }
+
+    /**
+     * 解析整数, 不是简单的整数或位数超过 maxDigits 时返回 Long.MIN_VALUE, 由调用者使用 JDK 的方法处理.
+     */
+    private static long parseDigits(byte[] source, int maxDigits) {
+        int length = source.length;
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (source[0] == '-' || source[0] == '+')) {
+            negative = source[0] == '-';
+            i = 1;
+        }
+        if (i == length || length - i > maxDigits) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (; i < length; i++) {
+            int digit = source[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private static String string(byte[] source) {
+        return new String(source, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,12 @@
+package com.github.tocrhz.mqtt.exception;
+
+/**
+ * The payload cannot be converted to bytes for publishing.
+ */
+public class PayloadConversionException extends RuntimeException {
+
+    public PayloadConversionException(Object payload, String format) {
+        super("payload type '" + (payload == null ? "null" : payload.getClass().getName()) + "' cannot be converted"
+                + (format == null ? "." : " to format '" + format + "'."));
+    }
+}
@@ -0,0 +1,194 @@
+package com.github.tocrhz.mqtt.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.SpringProperties;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Public {@code @MqttSubscribe} methods per class, written at build time by {@link MqttSubscribeIndexer}.
+ * <p>
+ * A class is covered when it was loaded from a classpath root (directory or jar) that contains an index file.
+ * For a bean whose class, superclasses and interfaces are all covered, only the listed methods need to be resolved,
+ * beans with no listed method are skipped without reflection. Beans that are not fully covered, or whose listed methods
+ * cannot be resolved (stale index), must be scanned.
+ * Set {@value #IGNORE_INDEX} to true to ignore the index and scan every bean.
+ */
+public final class MqttSubscribeIndex {
+    private final static Logger log = LoggerFactory.getLogger(MqttSubscribeIndex.class);
+    /**
+     * 索引文件位置
+     */
+    public final static String LOCATION = "META-INF/mqtt-subscribers.properties";
+    /**
+     * 忽略索引的系统属性
+     */
+    public final static String IGNORE_INDEX = "mqtt.index.ignore";
+
+    // key: 类的二进制名称, value: 方法签名, 如 handle(java.lang.String;byte[])
+    private final HashMap<String, Set<String>> entries;
+    // 包含索引文件的类路径根
+    private final Set<String> roots;
+    private final ConcurrentHashMap<ProtectionDomain, Boolean> covered = new ConcurrentHashMap<>();
+
+    private MqttSubscribeIndex(HashMap<String, Set<String>> entries, Set<String> roots) {
+        this.entries = entries;
+        this.roots = roots;
+    }
+
+    /**
+     * 读取类路径中的所有索引
+     *
+     * @param classLoader ClassLoader
+     * @return 没有索引或忽略索引时返回 null
+     */
+    public static MqttSubscribeIndex load(ClassLoader classLoader) {
+        if (SpringProperties.getFlag(IGNORE_INDEX)) {
+            return null;
+        }
+        HashMap<String, Set<String>> entries = new HashMap<>();
+        Set<String> roots = new HashSet<>();
+        try {
+            Enumeration<URL> urls = classLoader == null
+                    ? ClassLoader.getSystemResources(LOCATION) : classLoader.getResources(LOCATION);
+            if (!urls.hasMoreElements()) {
+                return null;
+            }
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                String location = url.toString();
+                roots.add(root(location.substring(0, location.length() - LOCATION.length())));
+                Properties properties = new Properties();
+                try (Reader reader = new InputStreamReader(url.openStream(), StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                }
+                for (String name : properties.stringPropertyNames()) {
+                    Set<String> methods = entries.computeIfAbsent(name, key -> new LinkedHashSet<>());
+                    for (String method : properties.getProperty(name).split(",")) {
+                        if (!method.isBlank()) {
+                            methods.add(method.trim());
+                        }
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("unable to load mqtt subscriber index, all beans are scanned: {}", e.getMessage());
+            return null;
+        }
+        log.debug("loaded mqtt subscriber index with {} classes from {} locations.", entries.size(), roots.size());
+        return new MqttSubscribeIndex(entries, roots);
+    }
+
+    /**
+     * 类路径根的统一形式, 如 jar:file:/a.jar!/ 和 file:/a.jar 都为 file:/a.jar
+     */
+    static String root(String location) {
+        if (location.startsWith("jar:")) {
+            location = location.substring(4);
+        }
+        if (location.endsWith("!/")) {
+            location = location.substring(0, location.length() - 2);
+        }
+        if (location.endsWith("/")) {
+            location = location.substring(0, location.length() - 1);
+        }
+        return location;
+    }
+
+    /**
+     * 索引中类及其父类, 接口的方法, 按名称和参数类型从 type 的公共方法中查找.
+     *
+     * @param type 类
+     * @return 方法, 没有时为空集合; 有未被索引覆盖的类, 或方法无法找到(索引过期)时返回 null, 需要扫描
+     */
+    public Collection<Method> resolve(Class<?> type) {
+        Set<Method> methods = Set.of();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            methods = collect(type, current, methods);
+            if (methods == null) {
+                return null;
+            }
+        }
+        return methods;
+    }
+
+    private Set<Method> collect(Class<?> type, Class<?> declaring, Set<Method> methods) {
+        if (!covers(declaring)) {
+            return null;
+        }
+        Set<String> signatures = entries.get(declaring.getName());
+        if (signatures != null) {
+            if (methods.isEmpty()) {
+                methods = new LinkedHashSet<>();
+            }
+            for (String signature : signatures) {
+                Method method = find(type, signature);
+                if (method == null) {
+                    log.debug("'{}' of {} not found, the index is stale.", signature, declaring.getName());
+                    return null;
+                }
+                methods.add(method);
+            }
+        }
+        for (Class<?> face : declaring.getInterfaces()) {
+            methods = collect(type, face, methods);
+            if (methods == null) {
+                return null;
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * 类是否从包含索引的类路径根加载, JDK 的类没有订阅方法, 视为已覆盖
+     */
+    private boolean covers(Class<?> type) {
+        if (type.getClassLoader() == null) {
+            return true;
+        }
+        return covered.computeIfAbsent(type.getProtectionDomain(), domain -> {
+            CodeSource source = domain.getCodeSource();
+            return source != null && source.getLocation() != null && roots.contains(root(source.getLocation().toString()));
+        });
+    }
+
+    private static Method find(Class<?> type, String signature) {
+        int open = signature.indexOf('(');
+        if (open <= 0 || !signature.endsWith(")")) {
+            return null;
+        }
+        String name = signature.substring(0, open);
+        String params = signature.substring(open + 1, signature.length() - 1);
+        try {
+            String[] names = params.isEmpty() ? new String[0] : params.split(";");
+            Class<?>[] types = new Class<?>[names.length];
+            for (int i = 0; i < names.length; i++) {
+                types[i] = ClassUtils.forName(names[i], type.getClassLoader());
+            }
+            return type.getMethod(name, types);
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            return null;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.tocrhz.mqtt.index;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Annotation processor that writes the public {@code @MqttSubscribe} methods of each class to {@value MqttSubscribeIndex#LOCATION},
+ * as name and erased parameter types, e.g. {@code handle(java.lang.String;byte[])}.
+ * <p>
+ * Entries of a previous (incremental) compilation are kept when their class still exists and was not compiled again.
+ *
+ * @see MqttSubscribeIndex
+ */
+@SupportedAnnotationTypes(MqttSubscribeIndexer.ANNOTATION)
+public class MqttSubscribeIndexer extends AbstractProcessor {
+    final static String ANNOTATION = "com.github.tocrhz.mqtt.annotation.MqttSubscribe";
+
+    // key: 类的二进制名称, value: 方法签名
+    private final TreeMap<String, Set<String>> index = new TreeMap<>();
+    private final Set<String> processed = new LinkedHashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element root : roundEnv.getRootElements()) {
+            if (root instanceof TypeElement type) {
+                collectProcessed(type);
+            }
+        }
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                // 与运行时扫描一致, 只有公共方法会被订阅
+                if (element.getKind() == ElementKind.METHOD && element.getModifiers().contains(Modifier.PUBLIC)
+                        && element.getEnclosingElement() instanceof TypeElement type) {
+                    String name = processingEnv.getElementUtils().getBinaryName(type).toString();
+                    index.computeIfAbsent(name, key -> new LinkedHashSet<>()).add(signature((ExecutableElement) element));
+                }
+            }
+        }
+        if (roundEnv.processingOver()) {
+            write();
+        }
+        return false;
+    }
+
+    private String signature(ExecutableElement method) {
+        List<String> types = new ArrayList<>();
+        for (VariableElement parameter : method.getParameters()) {
+            types.add(typeName(parameter.asType()));
+        }
+        return method.getSimpleName() + "(" + String.join(";", types) + ")";
+    }
+
+    /**
+     * 擦除后的类型名称, 可由 ClassUtils.forName 加载
+     */
+    private String typeName(TypeMirror type) {
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        if (erased instanceof ArrayType array) {
+            return typeName(array.getComponentType()) + "[]";
+        }
+        if (erased instanceof DeclaredType declared) {
+            return processingEnv.getElementUtils().getBinaryName((TypeElement) declared.asElement()).toString();
+        }
+        return erased.toString();
+    }
+
+    private void collectProcessed(TypeElement type) {
+        processed.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+        for (Element enclosed : type.getEnclosedElements()) {
+            if (enclosed instanceof TypeElement nested) {
+                collectProcessed(nested);
+            }
+        }
+    }
+
+    private void write() {
+        Filer filer = processingEnv.getFiler();
+        TreeMap<String, String> entries = new TreeMap<>();
+        // 保留上次编译中未重新编译且仍然存在的类
+        try {
+            FileObject previous = filer.getResource(StandardLocation.CLASS_OUTPUT, "", MqttSubscribeIndex.LOCATION);
+            Properties properties = new Properties();
+            try (Reader reader = new InputStreamReader(previous.openInputStream(), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            for (String name : properties.stringPropertyNames()) {
+                if (!processed.contains(name) && processingEnv.getElementUtils().getTypeElement(name.replace('$', '.')) != null) {
+                    entries.put(name, properties.getProperty(name));
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // 没有上次的索引
+        }
+        for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+            entries.put(entry.getKey(), String.join(",", entry.getValue()));
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", MqttSubscribeIndex.LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, String> entry : entries.entrySet()) {
+                    writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING
+                    , "Unable to write " + MqttSubscribeIndex.LOCATION + ": " + e.getMessage());
+        }
+    }
+}
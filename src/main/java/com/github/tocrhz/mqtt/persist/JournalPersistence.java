@@ -0,0 +1,402 @@
+package com.github.tocrhz.mqtt.persist;
+
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Paho persistence backed by an append-only, memory-mapped journal.
+ * <p>
+ * Every put and remove appends one record, the live entries are also kept in memory so that reads never touch the file.
+ * The live entries are written to a new file and the old one is deleted when the journal is opened, when the file is full,
+ * and when at least half of the file is used but less than a quarter of the used bytes are live. The last check runs with
+ * every sync, or with every write when the sync interval is 0, so the copy stays small.
+ * The file is forced to disk every sync interval, so one fsync covers all records appended in between,
+ * with a sync interval of 0 every record is forced before put returns.
+ * <p>
+ * Files are replayed in order, an old file left by a crash or a failed delete only repeats records the newer file supersedes.
+ * On Windows a file cannot be deleted while it is mapped, and the mapping is only released when the buffer is garbage
+ * collected. An old file that cannot be deleted is retried at the next compaction and at close, and deleted at the latest
+ * on the next open.
+ * <p>
+ * Record: {@code [int length][int crc][byte op][short key length][key][data]}, the length is written last,
+ * a record torn by a crash fails the length or crc check and ends the journal.
+ */
+public class JournalPersistence implements MqttClientPersistence {
+    private final static Logger log = LoggerFactory.getLogger(JournalPersistence.class);
+    private final static ScheduledExecutorService SYNC = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mqtt-journal-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final static String PREFIX = "journal-";
+    private final static String SUFFIX = ".log";
+    private final static byte PUT = 1;
+    private final static byte REMOVE = 2;
+    private final static int RECORD_HEADER = 8;
+    // 使用的空间中有效数据少于 1/COMPACT_RATIO 时压缩
+    private final static int COMPACT_RATIO = 4;
+
+    private final Path directory;
+    private final int fileSize;
+    private final long syncInterval;
+    private final HashMap<String, byte[]> entries = new HashMap<>();
+    // 压缩后没能删除的旧文件
+    private final List<Path> stale = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+    private Path path;
+    private Path file;
+    private long generation;
+    private MappedByteBuffer buffer;
+    private int position;
+    // 有效记录的字节数
+    private long live;
+    private boolean dirty;
+    private ScheduledFuture<?> syncTask;
+
+    /**
+     * @param directory    目录, 每个客户端一个子目录
+     * @param fileSize     日志文件大小(字节)
+     * @param syncInterval 刷盘间隔(毫秒), 为 0 时每次写入都刷盘
+     */
+    public JournalPersistence(String directory, int fileSize, long syncInterval) {
+        this.directory = Path.of(directory);
+        this.fileSize = Math.max(fileSize, 4096);
+        this.syncInterval = Math.max(syncInterval, 0);
+    }
+
+    @Override
+    public synchronized void open(String clientId, String serverURI) throws MqttPersistenceException {
+        path = directory.resolve((clientId + "-" + serverURI).replaceAll("[^A-Za-z0-9._-]", "_"));
+        try {
+            Files.createDirectories(path);
+            recover();
+        } catch (IOException e) {
+            throw new MqttPersistenceException(e);
+        }
+        if (syncInterval > 0) {
+            syncTask = SYNC.scheduleWithFixedDelay(this::sync, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 读取所有日志文件恢复数据, 再压缩到新的文件中
+     */
+    private void recover() throws IOException {
+        entries.clear();
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(path)) {
+            list.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().forEach(files::add);
+        }
+        for (Path journal : files) {
+            String name = journal.getFileName().toString();
+            try {
+                generation = Math.max(generation, Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())) + 1);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            // 读取到堆中, 映射的文件在 Windows 中无法删除
+            replay(ByteBuffer.wrap(Files.readAllBytes(journal)));
+        }
+        compact(0);
+        stale.addAll(files);
+        deleteStale();
+        if (!entries.isEmpty()) {
+            log.info("recovered {} persisted mqtt messages from '{}'.", entries.size(), path);
+        }
+    }
+
+    private void replay(ByteBuffer journal) {
+        int offset = 0;
+        int capacity = journal.capacity();
+        while (offset + RECORD_HEADER <= capacity) {
+            int length = journal.getInt(offset);
+            if (length <= 0 || length > capacity - offset - RECORD_HEADER) {
+                break;
+            }
+            byte[] body = new byte[length];
+            journal.get(offset + RECORD_HEADER, body);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != journal.getInt(offset + 4)) {
+                log.warn("journal '{}' corrupted at {}, following records are ignored.", path, offset);
+                break;
+            }
+            int keyLength = ((body[1] & 0xff) << 8) | (body[2] & 0xff);
+            String key = new String(body, 3, keyLength, StandardCharsets.UTF_8);
+            if (body[0] == PUT) {
+                byte[] data = new byte[length - 3 - keyLength];
+                System.arraycopy(body, 3 + keyLength, data, 0, data.length);
+                entries.put(key, data);
+            } else {
+                entries.remove(key);
+            }
+            offset += RECORD_HEADER + length;
+        }
+    }
+
+    /**
+     * 将现有数据写入新的日志文件, 删除旧文件
+     *
+     * @param reserve 需要额外预留的空间
+     */
+    private void compact(int reserve) throws IOException {
+        long bytes = 0;
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            bytes += RECORD_HEADER + 3 + entry.getKey().length() * 3 + entry.getValue().length;
+        }
+        long size = Math.max(fileSize, 2L * (bytes + reserve + RECORD_HEADER + 3));
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("journal size exceeds " + Integer.MAX_VALUE + " bytes");
+        }
+        Path old = file;
+        file = path.resolve(String.format("%s%020d%s", PREFIX, generation++, SUFFIX));
+        // 替换后不再引用旧文件的映射
+        buffer = map(file, (int) size);
+        position = 0;
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            append(PUT, entry.getKey(), entry.getValue());
+        }
+        buffer.force();
+        dirty = false;
+        live = position;
+        if (old != null) {
+            stale.add(old);
+        }
+        deleteStale();
+    }
+
+    /**
+     * 有效数据较少时压缩
+     */
+    private void compactIfSparse() throws IOException {
+        if (position >= buffer.capacity() / 2 && live * COMPACT_RATIO < position) {
+            compact(0);
+        }
+    }
+
+    /**
+     * 删除旧文件, 失败(Windows 中映射还没有释放)时留到下次
+     */
+    private void deleteStale() {
+        stale.removeIf(old -> {
+            try {
+                Files.deleteIfExists(old);
+                return true;
+            } catch (IOException e) {
+                log.debug("delete journal '{}' failed, retry later: {}", old, e.getMessage());
+                return false;
+            }
+        });
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * 追加一条记录, 空间不够时先压缩
+     */
+    private void write(byte op, String key, byte[] data) throws MqttPersistenceException {
+        checkOpen();
+        int length = 3 + key.length() * 3 + (data == null ? 0 : data.length);
+        try {
+            if (position + RECORD_HEADER + length > buffer.capacity()) {
+                compact(RECORD_HEADER + length);
+                if (op == REMOVE) {
+                    // 压缩后的文件中已经没有这条数据
+                    return;
+                }
+            }
+            append(op, key, data);
+            if (syncInterval == 0) {
+                buffer.force();
+                compactIfSparse();
+            } else {
+                dirty = true;
+            }
+        } catch (IOException e) {
+            throw new MqttPersistenceException(e);
+        }
+    }
+
+    private void append(byte op, String key, byte[] data) {
+        byte[] name = key.getBytes(StandardCharsets.UTF_8);
+        int length = 3 + name.length + (data == null ? 0 : data.length);
+        int offset = position + RECORD_HEADER;
+        buffer.put(offset, op);
+        buffer.put(offset + 1, (byte) (name.length >>> 8));
+        buffer.put(offset + 2, (byte) name.length);
+        buffer.put(offset + 3, name);
+        if (data != null) {
+            buffer.put(offset + 3 + name.length, data);
+        }
+        crc.reset();
+        crc.update(buffer.slice(offset, length));
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, length);
+        position += RECORD_HEADER + length;
+    }
+
+    private void sync() {
+        MappedByteBuffer target;
+        synchronized (this) {
+            if (!dirty || buffer == null) {
+                return;
+            }
+            try {
+                compactIfSparse();
+            } catch (IOException e) {
+                log.warn("compact journal '{}' failed: {}", path, e.getMessage());
+            }
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            target = buffer;
+        }
+        try {
+            target.force();
+        } catch (Exception e) {
+            log.warn("sync journal '{}' failed: {}", path, e.getMessage());
+        }
+    }
+
+    private void checkOpen() throws MqttPersistenceException {
+        if (buffer == null) {
+            throw new MqttPersistenceException(MqttPersistenceException.REASON_CODE_CLIENT_CLOSED);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws MqttPersistenceException {
+        if (syncTask != null) {
+            syncTask.cancel(false);
+            syncTask = null;
+        }
+        if (buffer != null) {
+            buffer.force();
+            buffer = null;
+        }
+        deleteStale();
+    }
+
+    @Override
+    public synchronized void put(String key, MqttPersistable persistable) throws MqttPersistenceException {
+        // 与 MqttDefaultFilePersistence 一样, 消息头和消息内容保存在一起, 读取时都作为消息头返回
+        int headerLength = persistable.getHeaderLength();
+        int payloadLength = persistable.getPayloadBytes() == null ? 0 : persistable.getPayloadLength();
+        byte[] data = new byte[headerLength + payloadLength];
+        System.arraycopy(persistable.getHeaderBytes(), persistable.getHeaderOffset(), data, 0, headerLength);
+        if (payloadLength > 0) {
+            System.arraycopy(persistable.getPayloadBytes(), persistable.getPayloadOffset(), data, headerLength, payloadLength);
+        }
+        write(PUT, key, data);
+        byte[] previous = entries.put(key, data);
+        live += size(key, data) - (previous == null ? 0 : size(key, previous));
+    }
+
+    private static int size(String key, byte[] data) {
+        return RECORD_HEADER + 3 + key.getBytes(StandardCharsets.UTF_8).length + data.length;
+    }
+
+    @Override
+    public synchronized MqttPersistable get(String key) throws MqttPersistenceException {
+        checkOpen();
+        byte[] data = entries.get(key);
+        return data == null ? null : new Persisted(data);
+    }
+
+    @Override
+    public synchronized void remove(String key) throws MqttPersistenceException {
+        checkOpen();
+        byte[] previous = entries.remove(key);
+        if (previous != null) {
+            live -= size(key, previous);
+            write(REMOVE, key, null);
+        }
+    }
+
+    @Override
+    public synchronized Enumeration<String> keys() throws MqttPersistenceException {
+        checkOpen();
+        return Collections.enumeration(new ArrayList<>(entries.keySet()));
+    }
+
+    @Override
+    public synchronized void clear() throws MqttPersistenceException {
+        checkOpen();
+        entries.clear();
+        try {
+            compact(0);
+        } catch (IOException e) {
+            throw new MqttPersistenceException(e);
+        }
+    }
+
+    @Override
+    public synchronized boolean containsKey(String key) throws MqttPersistenceException {
+        checkOpen();
+        return entries.containsKey(key);
+    }
+
+    private record Persisted(byte[] data) implements MqttPersistable {
+        @Override
+        public byte[] getHeaderBytes() {
+            return data;
+        }
+
+        @Override
+        public int getHeaderLength() {
+            return data.length;
+        }
+
+        @Override
+        public int getHeaderOffset() {
+            return 0;
+        }
+
+        @Override
+        public byte[] getPayloadBytes() {
+            return null;
+        }
+
+        @Override
+        public int getPayloadLength() {
+            return 0;
+        }
+
+        @Override
+        public int getPayloadOffset() {
+            return 0;
+        }
+    }
+}
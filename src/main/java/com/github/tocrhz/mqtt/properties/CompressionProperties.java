@@ -0,0 +1,98 @@
+package com.github.tocrhz.mqtt.properties;
+
+/**
+ * 消息压缩相关配置.
+ * <p>
+ * 启用后, 发送时超过阈值的消息使用 gzip 压缩, 接收时以 gzip 头开头的消息先解压再转换.
+ */
+public class CompressionProperties {
+    /**
+     * 是否启用压缩.
+     */
+    private Boolean enabled;
+
+    /**
+     * 压缩阈值(字节), 消息长度不小于该值时才压缩.
+     */
+    private Integer threshold;
+
+    /**
+     * 压缩级别, 1~9, -1 为默认级别.
+     */
+    private Integer level;
+
+    /**
+     * 需要压缩和解压的主题, 支持通配符, 为空时全部主题.
+     */
+    private String[] topics;
+
+    /**
+     * 解压后的最大大小(字节), 超过时解压失败, 保留原消息.
+     */
+    private Integer maxInflatedSize;
+
+    /**
+     * 是否启用压缩.
+     *
+     * @return Boolean
+     */
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 压缩阈值(字节).
+     *
+     * @return Integer
+     */
+    public Integer getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * 压缩级别.
+     *
+     * @return Integer
+     */
+    public Integer getLevel() {
+        return level;
+    }
+
+    /**
+     * 需要压缩和解压的主题.
+     *
+     * @return String[]
+     */
+    public String[] getTopics() {
+        return topics;
+    }
+
+    /**
+     * 解压后的最大大小(字节).
+     *
+     * @return Integer
+     */
+    public Integer getMaxInflatedSize() {
+        return maxInflatedSize;
+    }
+
+    public void setMaxInflatedSize(Integer maxInflatedSize) {
+        this.maxInflatedSize = maxInflatedSize;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setThreshold(Integer threshold) {
+        this.threshold = threshold;
+    }
+
+    public void setLevel(Integer level) {
+        this.level = level;
+    }
+
+    public void setTopics(String[] topics) {
+        this.topics = topics;
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.tocrhz.mqtt.properties;
+
+/**
+ * 消息处理线程相关配置.
+ * <p>
+ * 可选的处理方式:
+ * <ul>
+ *     <li>inline: 在客户端的回调线程中执行, 同一客户端的消息严格按到达顺序处理, 处理慢会阻塞该客户端的所有消息.</li>
+ *     <li>pool: 在有界的线程池中执行, 不保证顺序; 队列满时在回调线程中执行, 以此限制接收速度.</li>
+ *     <li>virtual: 每条消息一个虚拟线程(Java 21+), 不保证顺序; 低版本 Java 使用 pool.</li>
+ *     <li>ordered: 按 key 分配到多个单线程通道, 相同 key 的消息按到达顺序处理, 不同 key 并行处理; 通道满时阻塞回调线程.
+ *     key 为 {@link com.github.tocrhz.mqtt.annotation.MqttSubscribe#orderBy()} 指定的主题参数, 默认为主题.</li>
+ *     <li>其他: Spring 中 {@link java.util.concurrent.Executor} 的 bean 名称, 顺序取决于该 Executor.</li>
+ * </ul>
+ */
+public class ExecutorProperties {
+    /**
+     * 默认的处理方式: inline, pool, virtual, ordered 或 Executor 的 bean 名称, 默认 inline.
+     */
+    private String type = "inline";
+
+    /**
+     * pool 方式的线程数, 默认为 CPU 核数的 2 倍.
+     */
+    private Integer poolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * pool 方式的队列长度, 默认 10000.
+     */
+    private Integer queueCapacity = 10000;
+
+    /**
+     * ordered 方式的通道数量, 默认为 CPU 核数.
+     */
+    private Integer lanes = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * ordered 方式每个通道的队列长度, 默认 1000.
+     */
+    private Integer laneQueueCapacity = 1000;
+
+    /**
+     * 默认的处理方式: inline, pool, virtual, ordered 或 Executor 的 bean 名称, 默认 inline.
+     *
+     * @return String
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * pool 方式的线程数, 默认为 CPU 核数的 2 倍.
+     *
+     * @return Integer
+     */
+    public Integer getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * pool 方式的队列长度, 默认 10000.
+     *
+     * @return Integer
+     */
+    public Integer getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * ordered 方式的通道数量, 默认为 CPU 核数.
+     *
+     * @return Integer
+     */
+    public Integer getLanes() {
+        return lanes;
+    }
+
+    /**
+     * ordered 方式每个通道的队列长度, 默认 1000.
+     *
+     * @return Integer
+     */
+    public Integer getLaneQueueCapacity() {
+        return laneQueueCapacity;
+    }
+
+    public void setLanes(Integer lanes) {
+        this.lanes = lanes;
+    }
+
+    public void setLaneQueueCapacity(Integer laneQueueCapacity) {
+        this.laneQueueCapacity = laneQueueCapacity;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public void setPoolSize(Integer poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public void setQueueCapacity(Integer queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+}
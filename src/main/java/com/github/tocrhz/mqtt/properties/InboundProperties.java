@@ -0,0 +1,66 @@
+package com.github.tocrhz.mqtt.properties;
+
+/**
+ * 接收队列相关配置.
+ * <p>
+ * 启用后, 回调线程只负责将消息放入队列, 由单独的线程按顺序取出并分发给订阅者.
+ */
+public class InboundProperties {
+    /**
+     * 接收队列长度, 为 0 时不使用队列, 直接在回调线程中分发.
+     */
+    private Integer capacity;
+
+    /**
+     * 队列满时的处理方式.
+     */
+    private OverflowPolicy overflow;
+
+    /**
+     * 队列满时的处理方式
+     */
+    public enum OverflowPolicy {
+        /**
+         * 阻塞回调线程, 不再读取新的消息, 由 TCP 反压到服务端.
+         */
+        BLOCK,
+        /**
+         * 丢弃新收到的消息.
+         */
+        DROP_NEWEST,
+        /**
+         * 丢弃队列中最早的消息.
+         */
+        DROP_OLDEST,
+        /**
+         * 丢弃新收到的 QOS 为 0 的消息, 其他 QOS 阻塞.
+         */
+        DROP_QOS0
+    }
+
+    /**
+     * 接收队列长度, 为 0 时不使用队列, 直接在回调线程中分发.
+     *
+     * @return Integer
+     */
+    public Integer getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 队列满时的处理方式.
+     *
+     * @return OverflowPolicy
+     */
+    public OverflowPolicy getOverflow() {
+        return overflow;
+    }
+
+    public void setCapacity(Integer capacity) {
+        this.capacity = capacity;
+    }
+
+    public void setOverflow(OverflowPolicy overflow) {
+        this.overflow = overflow;
+    }
+}
@@ -4,10 +4,15 @@ import com.github.tocrhz.mqtt.subscriber.MqttSubscriber;
 import com.github.tocrhz.mqtt.subscriber.TopicPair;
 import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ReflectionUtils;
 
+import java.lang.reflect.Method;
 import java.util.LinkedList;
 import java.util.Set;
 
@@ -16,6 +21,7 @@ import java.util.Set;
  */
 @SuppressWarnings("unused")
 public abstract class MqttConfigAdapter {
+    private final static Logger log = LoggerFactory.getLogger(MqttConfigAdapter.class);
     protected MqttProperties mqttProperties;
 
     public final void setProperties(MqttProperties mqttProperties) {
@@ -63,6 +69,35 @@ public abstract class MqttConfigAdapter {
         return new MqttAsyncClient(serverURIs[0], clientId, new MemoryPersistence());
     }
 
+    /**
+     * 使用配置的持久化方式创建客户端.
+     * <p>
+     * 子类只重写了 {@link #postCreate(String, String[])} 时调用该方法, 忽略 persistence 并输出警告.
+     *
+     * @param clientId    客户端ID
+     * @param serverURIs  serverURIs
+     * @param persistence 持久化方式, 为 null 时(memory)调用 {@link #postCreate(String, String[])}
+     * @return IMqttAsyncClient
+     * @throws MqttException 创建客户端异常
+     */
+    public IMqttAsyncClient postCreate(String clientId, String[] serverURIs, MqttClientPersistence persistence) throws MqttException {
+        if (persistence == null) {
+            return postCreate(clientId, serverURIs);
+        }
+        // 子类重写了两个参数的方法时, 仍使用子类创建的客户端
+        if (overridesPostCreate()) {
+            log.warn("mqtt client '{}': {} overrides postCreate(String, String[]), the configured persistence is ignored."
+                    + " Override postCreate(String, String[], MqttClientPersistence) to use it.", clientId, getClass().getName());
+            return postCreate(clientId, serverURIs);
+        }
+        return new MqttAsyncClient(serverURIs[0], clientId, persistence);
+    }
+
+    private boolean overridesPostCreate() {
+        Method method = ReflectionUtils.findMethod(getClass(), "postCreate", String.class, String[].class);
+        return method != null && method.getDeclaringClass() != MqttConfigAdapter.class;
+    }
+
     /**
      * 在创建客户端后, 订阅主题前, 修改订阅的主题.
      *
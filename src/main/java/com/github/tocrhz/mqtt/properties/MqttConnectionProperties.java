@@ -1,5 +1,6 @@
 package com.github.tocrhz.mqtt.properties;
 
+import com.github.tocrhz.mqtt.subscriber.AckMode;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 
 /**
@@ -85,11 +86,64 @@ public class MqttConnectionProperties {
      */
     private Boolean automaticReconnect;
 
+    /**
+     * 最大发送窗口, 同时等待确认的 QOS 1/2 消息数量.
+     *
+     * @see MqttConnectOptions#setMaxInflight(int)
+     */
+    private Integer maxInflight;
+
+    /**
+     * 连接数量, 大于 1 时同一个客户端建立多个连接, 客户端ID依次为 clientId-1, clientId-2 ...
+     * 发送的消息按主题分配到各个连接, 订阅使用共享订阅分摊到各个连接.
+     */
+    private Integer connections;
+
+    /**
+     * 每个 SUBSCRIBE 报文中的主题数量, 主题较多时分成多个报文同时发送, 为 0 时全部放在一个报文中.
+     */
+    private Integer subscribeBatchSize;
+
     /**
      * 遗愿相关配置.
      */
     private WillProperties will;
 
+    /**
+     * 接收队列相关配置.
+     */
+    private InboundProperties inbound;
+
+    /**
+     * 发送队列相关配置.
+     */
+    private OutboundProperties outbound;
+
+    /**
+     * 离线缓存相关配置.
+     */
+    private OfflineProperties offline;
+
+    /**
+     * 消息持久化相关配置.
+     */
+    private PersistenceProperties persistence;
+
+    /**
+     * 消息压缩相关配置.
+     */
+    private CompressionProperties compression;
+
+    /**
+     * 消息确认方式, MANUAL 时处理方法执行完成后才确认 QOS 1/2 的消息, 默认 AUTO.
+     */
+    private AckMode ackMode;
+
+    /**
+     * 默认的消息格式, 如 json, cbor, smile, msgpack. 为空时使用转换类.
+     */
+    private String payloadFormat;
+
     /**
      * 客户端ID
      *
@@ -228,6 +282,137 @@ public class MqttConnectionProperties {
         this.will = will;
     }
 
+    /**
+     * 接收队列相关配置.
+     *
+     * @return InboundProperties
+     */
+    public InboundProperties getInbound() {
+        return inbound;
+    }
+
+    public void setInbound(InboundProperties inbound) {
+        this.inbound = inbound;
+    }
+
+    /**
+     * 最大发送窗口.
+     *
+     * @return Integer
+     * @see MqttConnectOptions#setMaxInflight(int)
+     */
+    public Integer getMaxInflight() {
+        return maxInflight;
+    }
+
+    public void setMaxInflight(Integer maxInflight) {
+        this.maxInflight = maxInflight;
+    }
+
+    /**
+     * 连接数量.
+     *
+     * @return Integer
+     */
+    public Integer getConnections() {
+        return connections;
+    }
+
+    public void setConnections(Integer connections) {
+        this.connections = connections;
+    }
+
+    /**
+     * 每个 SUBSCRIBE 报文中的主题数量.
+     *
+     * @return Integer
+     */
+    public Integer getSubscribeBatchSize() {
+        return subscribeBatchSize;
+    }
+
+    public void setSubscribeBatchSize(Integer subscribeBatchSize) {
+        this.subscribeBatchSize = subscribeBatchSize;
+    }
+
+    /**
+     * 发送队列相关配置.
+     *
+     * @return OutboundProperties
+     */
+    public OutboundProperties getOutbound() {
+        return outbound;
+    }
+
+    public void setOutbound(OutboundProperties outbound) {
+        this.outbound = outbound;
+    }
+
+    /**
+     * 离线缓存相关配置.
+     *
+     * @return OfflineProperties
+     */
+    public OfflineProperties getOffline() {
+        return offline;
+    }
+
+    public void setOffline(OfflineProperties offline) {
+        this.offline = offline;
+    }
+
+    /**
+     * 消息持久化相关配置.
+     *
+     * @return PersistenceProperties
+     */
+    public PersistenceProperties getPersistence() {
+        return persistence;
+    }
+
+    public void setPersistence(PersistenceProperties persistence) {
+        this.persistence = persistence;
+    }
+
+    /**
+     * 消息压缩相关配置.
+     *
+     * @return CompressionProperties
+     */
+    public CompressionProperties getCompression() {
+        return compression;
+    }
+
+    public void setCompression(CompressionProperties compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * 消息确认方式.
+     *
+     * @return AckMode
+     */
+    public AckMode getAckMode() {
+        return ackMode;
+    }
+
+    public void setAckMode(AckMode ackMode) {
+        this.ackMode = ackMode;
+    }
+
+    /**
+     * 默认的消息格式
+     *
+     * @return String
+     */
+    public String getPayloadFormat() {
+        return payloadFormat;
+    }
+
+    public void setPayloadFormat(String payloadFormat) {
+        this.payloadFormat = payloadFormat;
+    }
+
     public void setAutomaticReconnect(Boolean automaticReconnect) {
         this.automaticReconnect = automaticReconnect;
     }
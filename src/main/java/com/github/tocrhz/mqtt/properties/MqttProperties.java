@@ -1,5 +1,6 @@
 package com.github.tocrhz.mqtt.properties;
 
+import com.github.tocrhz.mqtt.subscriber.AckMode;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.util.StringUtils;
@@ -28,6 +29,16 @@ public class MqttProperties extends MqttConnectionProperties {
      */
     private Map<String, MqttConnectionProperties> clients = new LinkedHashMap<>();
 
+    /**
+     * 消息处理线程相关配置
+     */
+    private ExecutorProperties executor = new ExecutorProperties();
+
+    /**
+     * 启动相关配置
+     */
+    private StartupProperties startup = new StartupProperties();
+
     /**
      * 是否禁用
      *
@@ -54,6 +65,32 @@ public class MqttProperties extends MqttConnectionProperties {
         this.clients = clients;
     }
 
+    /**
+     * 消息处理线程相关配置
+     *
+     * @return ExecutorProperties
+     */
+    public ExecutorProperties getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(ExecutorProperties executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 启动相关配置
+     *
+     * @return StartupProperties
+     */
+    public StartupProperties getStartup() {
+        return startup;
+    }
+
+    public void setStartup(StartupProperties startup) {
+        this.startup = startup;
+    }
+
     /**
      * 遍历所有的客户端配置
      *
@@ -126,6 +163,7 @@ public class MqttProperties extends MqttConnectionProperties {
         options.setCleanSession(properties.getCleanSession());
         options.setAutomaticReconnect(properties.getAutomaticReconnect());
         options.setExecutorServiceTimeout(properties.getExecutorServiceTimeout());
+        options.setMaxInflight(properties.getMaxInflight());
         options.setServerURIs(properties.getUri());
         if (StringUtils.hasText(properties.getUsername()) && StringUtils.hasText(properties.getPassword())) {
             options.setUserName(properties.getUsername());
@@ -151,6 +189,9 @@ public class MqttProperties extends MqttConnectionProperties {
         target.setExecutorServiceTimeout(mergeValue(getExecutorServiceTimeout(), target.getExecutorServiceTimeout(), 10));
         target.setCleanSession(mergeValue(getCleanSession(), target.getCleanSession(), true));
         target.setAutomaticReconnect(mergeValue(getAutomaticReconnect(), target.getAutomaticReconnect(), true));
+        target.setMaxInflight(mergeValue(getMaxInflight(), target.getMaxInflight(), 10));
+        target.setConnections(mergeValue(getConnections(), target.getConnections(), 1));
+        target.setSubscribeBatchSize(mergeValue(getSubscribeBatchSize(), target.getSubscribeBatchSize(), 100));
         target.setWill(mergeValue(getWill(), target.getWill(), null));
         target.setEnableSharedSubscription(mergeValue(getEnableSharedSubscription(), target.getEnableSharedSubscription(), true));
         if (target.getWill() != null && getWill() != null) {
@@ -161,6 +202,51 @@ public class MqttProperties extends MqttConnectionProperties {
             targetWill.setQos(mergeValue(will.getQos(), targetWill.getQos(), 0));
             targetWill.setRetained(mergeValue(will.getRetained(), targetWill.getRetained(), false));
         }
+        target.setAckMode(mergeValue(getAckMode(), target.getAckMode(), AckMode.AUTO));
+        target.setPayloadFormat(mergeValue(getPayloadFormat(), target.getPayloadFormat(), null));
+        target.setInbound(mergeValue(getInbound(), target.getInbound(), null));
+        if (target.getInbound() != null && getInbound() != null) {
+            InboundProperties inbound = getInbound();
+            InboundProperties targetInbound = target.getInbound();
+            targetInbound.setCapacity(mergeValue(inbound.getCapacity(), targetInbound.getCapacity(), 0));
+            targetInbound.setOverflow(mergeValue(inbound.getOverflow(), targetInbound.getOverflow(), InboundProperties.OverflowPolicy.BLOCK));
+        }
+        target.setOutbound(mergeValue(getOutbound(), target.getOutbound(), null));
+        if (target.getOutbound() != null && getOutbound() != null) {
+            OutboundProperties outbound = getOutbound();
+            OutboundProperties targetOutbound = target.getOutbound();
+            targetOutbound.setCapacity(mergeValue(outbound.getCapacity(), targetOutbound.getCapacity(), 0));
+            targetOutbound.setOverflow(mergeValue(outbound.getOverflow(), targetOutbound.getOverflow(), OutboundProperties.OverflowPolicy.BLOCK));
+        }
+        target.setOffline(mergeValue(getOffline(), target.getOffline(), null));
+        if (target.getOffline() != null && getOffline() != null) {
+            OfflineProperties offline = getOffline();
+            OfflineProperties targetOffline = target.getOffline();
+            targetOffline.setMemoryCapacity(mergeValue(offline.getMemoryCapacity(), targetOffline.getMemoryCapacity(), 0));
+            targetOffline.setDirectory(mergeValue(offline.getDirectory(), targetOffline.getDirectory(), null));
+            targetOffline.setSegmentSize(mergeValue(offline.getSegmentSize(), targetOffline.getSegmentSize(), 16 * 1024 * 1024));
+            targetOffline.setMaxDiskSize(mergeValue(offline.getMaxDiskSize(), targetOffline.getMaxDiskSize(), 1024L * 1024 * 1024));
+            targetOffline.setReplayRate(mergeValue(offline.getReplayRate(), targetOffline.getReplayRate(), 1000));
+        }
+        target.setPersistence(mergeValue(getPersistence(), target.getPersistence(), null));
+        if (target.getPersistence() != null && getPersistence() != null) {
+            PersistenceProperties persistence = getPersistence();
+            PersistenceProperties targetPersistence = target.getPersistence();
+            targetPersistence.setType(mergeValue(persistence.getType(), targetPersistence.getType(), PersistenceProperties.PersistenceType.MEMORY));
+            targetPersistence.setDirectory(mergeValue(persistence.getDirectory(), targetPersistence.getDirectory(), null));
+            targetPersistence.setFileSize(mergeValue(persistence.getFileSize(), targetPersistence.getFileSize(), 64 * 1024 * 1024));
+            targetPersistence.setSyncInterval(mergeValue(persistence.getSyncInterval(), targetPersistence.getSyncInterval(), 100));
+        }
+        target.setCompression(mergeValue(getCompression(), target.getCompression(), null));
+        if (target.getCompression() != null && getCompression() != null) {
+            CompressionProperties compression = getCompression();
+            CompressionProperties targetCompression = target.getCompression();
+            targetCompression.setEnabled(mergeValue(compression.getEnabled(), targetCompression.getEnabled(), false));
+            targetCompression.setThreshold(mergeValue(compression.getThreshold(), targetCompression.getThreshold(), 1024));
+            targetCompression.setLevel(mergeValue(compression.getLevel(), targetCompression.getLevel(), -1));
+            targetCompression.setTopics(mergeValue(compression.getTopics(), targetCompression.getTopics(), null));
+            targetCompression.setMaxInflatedSize(mergeValue(compression.getMaxInflatedSize(), targetCompression.getMaxInflatedSize(), 16 * 1024 * 1024));
+        }
     }
 
     private <T> T mergeValue(T parentValue, T targetValue, T defaultValue) {
@@ -192,4 +278,110 @@ public class MqttProperties extends MqttConnectionProperties {
             return properties.getDefaultPublishQos();
         }
     }
+
+    public int getConnections(String clientId) {
+        Integer connections;
+        if (clientId.equals(getClientId())) {
+            connections = getConnections();
+        } else {
+            MqttConnectionProperties properties = clients.get(clientId);
+            connections = properties == null ? null : properties.getConnections();
+        }
+        return connections == null ? 1 : Math.max(connections, 1);
+    }
+
+    public int getSubscribeBatchSize(String clientId) {
+        Integer size;
+        if (clientId.equals(getClientId())) {
+            size = getSubscribeBatchSize();
+        } else {
+            MqttConnectionProperties properties = clients.get(clientId);
+            size = properties == null ? null : properties.getSubscribeBatchSize();
+        }
+        return size == null ? 100 : Math.max(size, 0);
+    }
+
+    public InboundProperties getInbound(String clientId) {
+        if (clientId.equals(getClientId())) {
+            return getInbound();
+        } else {
+            MqttConnectionProperties properties = clients.get(clientId);
+            if (properties == null) {
+                return null;
+            }
+            return properties.getInbound();
+        }
+    }
+
+    public OutboundProperties getOutbound(String clientId) {
+        if (clientId.equals(getClientId())) {
+            return getOutbound();
+        } else {
+            MqttConnectionProperties properties = clients.get(clientId);
+            if (properties == null) {
+                return null;
+            }
+            return properties.getOutbound();
+        }
+    }
+
+    public OfflineProperties getOffline(String clientId) {
+        if (clientId.equals(getClientId())) {
+            return getOffline();
+        } else {
+            MqttConnectionProperties properties = clients.get(clientId);
+            if (properties == null) {
+                return null;
+            }
+            return properties.getOffline();
+        }
+    }
+
+    public PersistenceProperties getPersistence(String clientId) {
+        if (clientId.equals(getClientId())) {
+            return getPersistence();
+        } else {
+            MqttConnectionProperties properties = clients.get(clientId);
+            if (properties == null) {
+                return null;
+            }
+            return properties.getPersistence();
+        }
+    }
+
+    public CompressionProperties getCompression(String clientId) {
+        if (clientId.equals(getClientId())) {
+            return getCompression();
+        } else {
+            MqttConnectionProperties properties = clients.get(clientId);
+            if (properties == null) {
+                return null;
+            }
+            return properties.getCompression();
+        }
+    }
+
+    public AckMode getAckMode(String clientId) {
+        if (clientId.equals(getClientId())) {
+            return Objects.requireNonNullElse(getAckMode(), AckMode.AUTO);
+        } else {
+            MqttConnectionProperties properties = clients.get(clientId);
+            if (properties == null || properties.getAckMode() == null) {
+                return AckMode.AUTO;
+            }
+            return properties.getAckMode();
+        }
+    }
+
+    public String getPayloadFormat(String clientId) {
+        if (clientId.equals(getClientId())) {
+            return getPayloadFormat();
+        } else {
+            MqttConnectionProperties properties = clients.get(clientId);
+            if (properties == null) {
+                return null;
+            }
+            return properties.getPayloadFormat();
+        }
+    }
 }
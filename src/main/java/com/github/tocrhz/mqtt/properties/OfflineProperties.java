@@ -0,0 +1,98 @@
+package com.github.tocrhz.mqtt.properties;
+
+/**
+ * 离线缓存相关配置.
+ * <p>
+ * 未连接时发送的消息先放在内存中, 超过内存缓存数量后写入磁盘上的分段日志, 连接成功后按顺序重新发送.
+ */
+public class OfflineProperties {
+    /**
+     * 内存中缓存的消息数量, 为 0 且未配置目录时不缓存.
+     */
+    private Integer memoryCapacity;
+
+    /**
+     * 磁盘缓存的目录, 每个客户端一个子目录, 为空时只缓存在内存中.
+     */
+    private String directory;
+
+    /**
+     * 每个日志分段文件的大小(字节).
+     */
+    private Integer segmentSize;
+
+    /**
+     * 磁盘缓存的最大大小(字节).
+     */
+    private Long maxDiskSize;
+
+    /**
+     * 重新连接后每秒重新发送的消息数量, 为 0 时不限制.
+     */
+    private Integer replayRate;
+
+    /**
+     * 内存中缓存的消息数量.
+     *
+     * @return Integer
+     */
+    public Integer getMemoryCapacity() {
+        return memoryCapacity;
+    }
+
+    /**
+     * 磁盘缓存的目录.
+     *
+     * @return String
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 每个日志分段文件的大小(字节).
+     *
+     * @return Integer
+     */
+    public Integer getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * 磁盘缓存的最大大小(字节).
+     *
+     * @return Long
+     */
+    public Long getMaxDiskSize() {
+        return maxDiskSize;
+    }
+
+    /**
+     * 重新连接后每秒重新发送的消息数量.
+     *
+     * @return Integer
+     */
+    public Integer getReplayRate() {
+        return replayRate;
+    }
+
+    public void setMemoryCapacity(Integer memoryCapacity) {
+        this.memoryCapacity = memoryCapacity;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public void setSegmentSize(Integer segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public void setMaxDiskSize(Long maxDiskSize) {
+        this.maxDiskSize = maxDiskSize;
+    }
+
+    public void setReplayRate(Integer replayRate) {
+        this.replayRate = replayRate;
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.tocrhz.mqtt.properties;
+
+/**
+ * 发送队列相关配置.
+ * <p>
+ * 启用后, QOS 1/2 的消息超过最大发送窗口(max-inflight)时放入队列, 有消息发送完成时再从队列中取出发送.
+ */
+public class OutboundProperties {
+    /**
+     * 发送队列长度, 为 0 时不使用队列, 超过发送窗口的消息发送失败.
+     */
+    private Integer capacity;
+
+    /**
+     * 队列满时的处理方式.
+     */
+    private OverflowPolicy overflow;
+
+    /**
+     * 队列满时的处理方式
+     */
+    public enum OverflowPolicy {
+        /**
+         * 阻塞发送的线程, 最长等待发送超时时间(executor-service-timeout), 超时后发送失败.
+         * <p>
+         * 只在应用自己的线程中等待; 在 Paho 的回调线程(如 inline 方式的订阅方法)和定时任务线程中与 FAIL 相同, 立即发送失败,
+         * 因为发送完成的通知也由回调线程处理, 在这里等待会死锁.
+         */
+        BLOCK,
+        /**
+         * 立即发送失败.
+         */
+        FAIL
+    }
+
+    /**
+     * 发送队列长度, 为 0 时不使用队列.
+     *
+     * @return Integer
+     */
+    public Integer getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 队列满时的处理方式.
+     *
+     * @return OverflowPolicy
+     */
+    public OverflowPolicy getOverflow() {
+        return overflow;
+    }
+
+    public void setCapacity(Integer capacity) {
+        this.capacity = capacity;
+    }
+
+    public void setOverflow(OverflowPolicy overflow) {
+        this.overflow = overflow;
+    }
+}
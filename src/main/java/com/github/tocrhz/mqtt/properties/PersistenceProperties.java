@@ -0,0 +1,98 @@
+package com.github.tocrhz.mqtt.properties;
+
+/**
+ * 消息持久化相关配置.
+ * <p>
+ * 保存未完成的 QOS 1/2 消息, cleanSession 为 false 时重启后继续发送.
+ */
+public class PersistenceProperties {
+    /**
+     * 持久化方式.
+     */
+    private PersistenceType type;
+
+    /**
+     * 保存的目录, 每个客户端一个子目录.
+     */
+    private String directory;
+
+    /**
+     * journal 方式的日志文件大小(字节), 写满后压缩到新文件.
+     */
+    private Integer fileSize;
+
+    /**
+     * journal 方式的刷盘间隔(毫秒), 为 0 时每次写入都刷盘.
+     */
+    private Integer syncInterval;
+
+    /**
+     * 持久化方式
+     */
+    public enum PersistenceType {
+        /**
+         * 保存在内存中, 重启后丢失.
+         */
+        MEMORY,
+        /**
+         * Paho 的 MqttDefaultFilePersistence, 每条消息一个文件.
+         */
+        FILE,
+        /**
+         * 追加写入的内存映射日志文件, 定期刷盘.
+         */
+        JOURNAL
+    }
+
+    /**
+     * 持久化方式.
+     *
+     * @return PersistenceType
+     */
+    public PersistenceType getType() {
+        return type;
+    }
+
+    /**
+     * 保存的目录.
+     *
+     * @return String
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * journal 方式的日志文件大小(字节).
+     *
+     * @return Integer
+     */
+    public Integer getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * journal 方式的刷盘间隔(毫秒).
+     *
+     * @return Integer
+     */
+    public Integer getSyncInterval() {
+        return syncInterval;
+    }
+
+    public void setType(PersistenceType type) {
+        this.type = type;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public void setFileSize(Integer fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public void setSyncInterval(Integer syncInterval) {
+        this.syncInterval = syncInterval;
+    }
+}
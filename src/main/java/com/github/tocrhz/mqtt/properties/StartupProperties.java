@@ -0,0 +1,28 @@
+package com.github.tocrhz.mqtt.properties;
+
+import java.time.Duration;
+
+/**
+ * 启动相关配置.
+ * <p>
+ * 所有客户端同时建立连接, 连接成功并收到订阅确认(SUBACK)后该客户端就绪.
+ */
+public class StartupProperties {
+    /**
+     * 启动时等待所有客户端就绪的最长时间, 如 10s, 超时后继续启动, 为空时不等待.
+     */
+    private Duration awaitConnected;
+
+    /**
+     * 启动时等待所有客户端就绪的最长时间.
+     *
+     * @return Duration
+     */
+    public Duration getAwaitConnected() {
+        return awaitConnected;
+    }
+
+    public void setAwaitConnected(Duration awaitConnected) {
+        this.awaitConnected = awaitConnected;
+    }
+}
@@ -3,6 +3,8 @@ package com.github.tocrhz.mqtt.publisher;
 import com.github.tocrhz.mqtt.autoconfigure.MqttClientManager;
 import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Used to publish message
  *
@@ -55,4 +57,24 @@ public class MqttPublisher {
     public void send(String topic, Object payload, int qos, boolean retained, IMqttActionListener callback) {
         client().send(topic, payload, qos, retained, callback);
     }
+
+    public void send(String topic, Object payload, int qos, boolean retained, String format, IMqttActionListener callback) {
+        client().send(topic, payload, qos, retained, format, callback);
+    }
+
+    public CompletableFuture<PublishResult> publishAsync(String topic, Object payload) {
+        return client().publishAsync(topic, payload);
+    }
+
+    public CompletableFuture<PublishResult> publishAsync(String topic, Object payload, int qos) {
+        return client().publishAsync(topic, payload, qos);
+    }
+
+    public CompletableFuture<PublishResult> publishAsync(String topic, Object payload, int qos, boolean retained) {
+        return client().publishAsync(topic, payload, qos, retained);
+    }
+
+    public CompletableFuture<PublishResult> publishAsync(String topic, Object payload, int qos, boolean retained, String format) {
+        return client().publishAsync(topic, payload, qos, retained, format);
+    }
 }
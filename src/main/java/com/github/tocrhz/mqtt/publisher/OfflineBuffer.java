@@ -0,0 +1,369 @@
+package com.github.tocrhz.mqtt.publisher;
+
+import com.github.tocrhz.mqtt.properties.OfflineProperties;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Holds messages published while the client is disconnected and sends them again, in order, after connecting.
+ * <p>
+ * The oldest messages are kept in memory, when memory is full the following ones are appended to a
+ * {@link SegmentLog} on disk. Messages on disk are still there after a restart, their callbacks are not.
+ * Replay is rate limited so that a reconnect does not flood the broker.
+ */
+public final class OfflineBuffer {
+    private final static Logger log = LoggerFactory.getLogger(OfflineBuffer.class);
+    private final static long TICK_MS = 100;
+    // 磁盘中重启前的消息没有回调
+    private final static IMqttActionListener NO_CALLBACK = new IMqttActionListener() {
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+        }
+    };
+
+    private final String clientId;
+    private final int memoryCapacity;
+    private final SegmentLog disk;
+    private final int replayRate;
+    private final ArrayDeque<Item> memory = new ArrayDeque<>();
+    private final ArrayDeque<IMqttActionListener> diskCallbacks = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicBoolean replaying = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    // 磁盘中重启前留下的消息数量
+    private long recovered;
+    private boolean closed;
+
+    public OfflineBuffer(String clientId, int memoryCapacity, Path directory, int segmentSize, long maxDiskSize, int replayRate) throws IOException {
+        this.clientId = clientId;
+        this.memoryCapacity = Math.max(memoryCapacity, 0);
+        this.disk = directory == null ? null : new SegmentLog(directory, segmentSize, maxDiskSize);
+        this.replayRate = Math.max(replayRate, 0);
+        this.recovered = disk == null ? 0 : disk.size();
+    }
+
+    /**
+     * 根据配置创建, 未启用时返回 null.
+     *
+     * @param clientId   客户端ID
+     * @param properties 离线缓存配置
+     * @return OfflineBuffer
+     */
+    public static OfflineBuffer of(String clientId, OfflineProperties properties) {
+        if (properties == null) {
+            return null;
+        }
+        int memoryCapacity = properties.getMemoryCapacity() == null ? 0 : properties.getMemoryCapacity();
+        String directory = properties.getDirectory();
+        if (memoryCapacity <= 0 && !StringUtils.hasText(directory)) {
+            return null;
+        }
+        try {
+            Path path = StringUtils.hasText(directory)
+                    ? Path.of(directory, clientId.replaceAll("[^A-Za-z0-9._-]", "_")) : null;
+            return new OfflineBuffer(clientId, memoryCapacity, path
+                    , properties.getSegmentSize() == null ? 16 * 1024 * 1024 : properties.getSegmentSize()
+                    , properties.getMaxDiskSize() == null ? 1024L * 1024 * 1024 : properties.getMaxDiskSize()
+                    , properties.getReplayRate() == null ? 1000 : properties.getReplayRate());
+        } catch (IOException e) {
+            log.error("mqtt client '{}' create offline buffer in '{}' failed, only memory is used: {}", clientId, directory, e.getMessage(), e);
+            return memoryCapacity > 0 ? of(clientId, memoryOnly(properties)) : null;
+        }
+    }
+
+    private static OfflineProperties memoryOnly(OfflineProperties properties) {
+        OfflineProperties copy = new OfflineProperties();
+        copy.setMemoryCapacity(properties.getMemoryCapacity());
+        copy.setReplayRate(properties.getReplayRate());
+        return copy;
+    }
+
+    /**
+     * 缓存消息, 内存和磁盘都满时以失败结束.
+     *
+     * @param topic    主题
+     * @param message  消息
+     * @param callback 发送完成或失败时的回调, 可为 null
+     */
+    public void offer(String topic, MqttMessage message, IMqttActionListener callback) {
+        boolean accepted = false;
+        lock.lock();
+        try {
+            if (!closed) {
+                // 磁盘中有消息时也写入磁盘, 保证内存中的都比磁盘中的早
+                if (memory.size() < memoryCapacity && (disk == null || disk.isEmpty())) {
+                    memory.addLast(new Item(topic, message, callback));
+                    accepted = true;
+                } else if (disk != null && disk.append(encode(topic, message))) {
+                    diskCallbacks.addLast(callback == null ? NO_CALLBACK : callback);
+                    accepted = true;
+                }
+            }
+        } catch (IOException e) {
+            log.error("mqtt client '{}' write offline message failed: {}", clientId, e.getMessage(), e);
+        } finally {
+            lock.unlock();
+        }
+        if (!accepted) {
+            long count = dropped.incrementAndGet();
+            if (count == 1 || count % 10000 == 0) {
+                log.warn("mqtt client '{}' offline buffer is full, {} messages dropped.", clientId, count);
+            }
+            fail(callback, new MqttException(MqttException.REASON_CODE_DISCONNECTED_BUFFER_FULL));
+        }
+    }
+
+    private Item peek() {
+        lock.lock();
+        try {
+            if (closed) {
+                return null;
+            }
+            Item item = memory.peekFirst();
+            if (item == null && disk != null) {
+                byte[] record = disk.peek();
+                if (record != null) {
+                    IMqttActionListener callback = recovered > 0 ? NO_CALLBACK : diskCallbacks.peekFirst();
+                    item = decode(record, callback == NO_CALLBACK ? null : callback);
+                }
+            }
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 关闭后不再删除, 已发送的磁盘消息下次启动时会重复发送
+     */
+    private void remove() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (memory.pollFirst() == null && disk != null && !disk.isEmpty()) {
+                disk.remove();
+                if (recovered > 0) {
+                    --recovered;
+                } else {
+                    diskCallbacks.pollFirst();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 是否没有缓存的消息
+     *
+     * @return boolean
+     */
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return memory.isEmpty() && (disk == null || disk.isEmpty());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 缓存的消息数量
+     *
+     * @return long
+     */
+    public long size() {
+        lock.lock();
+        try {
+            return memory.size() + (disk == null ? 0 : disk.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 缓存满而丢弃的消息数量
+     *
+     * @return long
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * 开始按顺序重新发送, 已经在发送或已关闭时忽略.
+     *
+     * @param sender    发送方法
+     * @param connected 是否已连接
+     * @param scheduler 定时任务线程池
+     */
+    public void replay(Sender sender, BooleanSupplier connected, ScheduledExecutorService scheduler) {
+        if (!isClosed() && replaying.compareAndSet(false, true)) {
+            scheduler.execute(() -> tick(sender, connected, scheduler));
+        }
+    }
+
+    private void tick(Sender sender, BooleanSupplier connected, ScheduledExecutorService scheduler) {
+        int budget = replayRate == 0 ? Integer.MAX_VALUE : (int) Math.max(1, replayRate * TICK_MS / 1000);
+        while (budget-- > 0) {
+            if (isClosed()) {
+                // 磁盘中剩下的消息留到下次启动
+                replaying.set(false);
+                return;
+            }
+            if (!connected.getAsBoolean()) {
+                // 重新连接后再发送
+                replaying.set(false);
+                return;
+            }
+            Item item = peek();
+            if (item == null) {
+                replaying.set(false);
+                // 停止前又放入了消息
+                if (!isEmpty()) {
+                    replay(sender, connected, scheduler);
+                }
+                return;
+            }
+            try {
+                sender.send(item.topic, item.message, item.callback);
+                remove();
+            } catch (MqttException e) {
+                if (e.getReasonCode() == MqttException.REASON_CODE_MAX_INFLIGHT) {
+                    break;
+                } else if (isDisconnected(e)) {
+                    replaying.set(false);
+                    return;
+                }
+                remove();
+                fail(item.callback, e);
+            } catch (RuntimeException e) {
+                remove();
+                fail(item.callback, e);
+            }
+        }
+        scheduler.schedule(() -> tick(sender, connected, scheduler), TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 是否因为未连接而发送失败, 这样的消息应该缓存起来
+     *
+     * @param e MqttException
+     * @return boolean
+     */
+    public static boolean isDisconnected(MqttException e) {
+        int reason = e.getReasonCode();
+        return reason == MqttException.REASON_CODE_CLIENT_NOT_CONNECTED
+                || reason == MqttException.REASON_CODE_CONNECTION_LOST
+                || reason == MqttException.REASON_CODE_CLIENT_DISCONNECTING;
+    }
+
+    /**
+     * 关闭, 磁盘中的消息保留到下次启动, 内存中的消息以失败结束.
+     */
+    public void close() {
+        ArrayDeque<Item> left;
+        lock.lock();
+        try {
+            closed = true;
+            left = new ArrayDeque<>(memory);
+            memory.clear();
+            if (disk != null) {
+                disk.close();
+                if (!disk.isEmpty()) {
+                    log.info("mqtt client '{}' closed, {} offline messages kept on disk.", clientId, disk.size());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!left.isEmpty()) {
+            log.warn("mqtt client '{}' closed, {} offline messages in memory not sent.", clientId, left.size());
+            for (Item item : left) {
+                fail(item.callback, new MqttException(MqttException.REASON_CODE_CLIENT_CLOSED));
+            }
+        }
+    }
+
+    private static void fail(IMqttActionListener callback, Throwable exception) {
+        if (callback != null) {
+            try {
+                callback.onFailure(null, exception);
+            } catch (Throwable throwable) {
+                log.error("publish callback error: {}", throwable.getMessage(), throwable);
+            }
+        }
+    }
+
+    /**
+     * [qos][retained][topic length][topic][payload]
+     */
+    private static byte[] encode(String topic, MqttMessage message) {
+        byte[] name = topic.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = message.getPayload();
+        ByteBuffer buffer = ByteBuffer.allocate(4 + name.length + payload.length);
+        buffer.put((byte) message.getQos());
+        buffer.put((byte) (message.isRetained() ? 1 : 0));
+        buffer.putShort((short) name.length);
+        buffer.put(name);
+        buffer.put(payload);
+        return buffer.array();
+    }
+
+    private static Item decode(byte[] record, IMqttActionListener callback) {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        int qos = buffer.get();
+        boolean retained = buffer.get() == 1;
+        byte[] name = new byte[buffer.getShort() & 0xffff];
+        buffer.get(name);
+        byte[] payload = new byte[buffer.remaining()];
+        buffer.get(payload);
+        MqttMessage message = new MqttMessage(payload);
+        message.setQos(qos);
+        message.setRetained(retained);
+        return new Item(new String(name, StandardCharsets.UTF_8), message, callback);
+    }
+
+    /**
+     * 发送方法
+     */
+    @FunctionalInterface
+    public interface Sender {
+        void send(String topic, MqttMessage message, IMqttActionListener callback) throws MqttException;
+    }
+
+    private record Item(String topic, MqttMessage message, IMqttActionListener callback) {
+    }
+}
@@ -0,0 +1,468 @@
+package com.github.tocrhz.mqtt.publisher;
+
+import com.github.tocrhz.mqtt.properties.OutboundProperties.OverflowPolicy;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps at most max-inflight QOS 1/2 publishes outstanding and queues the rest.
+ * <p>
+ * Paho rejects a publish beyond the inflight window with {@link MqttException#REASON_CODE_MAX_INFLIGHT}.
+ * Here such a publish waits in a bounded queue and is sent when an earlier one completes,
+ * the {@link OverflowPolicy} decides what happens when the queue is full. QOS 0 is not counted by Paho and is sent directly.
+ * <p>
+ * BLOCK only waits on application threads. Code run by {@link #nonBlocking(Runnable)} fails at once like FAIL:
+ * the Paho callbacks (message arrived, delivery complete, token listeners) and the tasks of the shared scheduler,
+ * because the Paho callback thread also delivers the completions that empty the queue.
+ * <p>
+ * When the client is not connected, {@link #publish} throws for a message sent directly. Queued messages that meet a
+ * lost connection are handed, with everything queued behind them, to the {@link Fallback} (the offline buffer) instead of failing.
+ */
+public final class OutboundQueue {
+    private final static Logger log = LoggerFactory.getLogger(OutboundQueue.class);
+    // Paho 收到确认后先调用回调再减少计数时, 稍后重试
+    private final static long RETRY_DELAY_MS = 10;
+    // 当前线程是否在不能等待的回调或定时任务中
+    private final static ThreadLocal<Boolean> NON_BLOCKING = new ThreadLocal<>();
+
+    private final String clientId;
+    private final IMqttAsyncClient client;
+    private final int maxInflight;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final long timeoutNanos;
+    private final ScheduledExecutorService scheduler;
+    private final ArrayDeque<Item> queue;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile Fallback fallback;
+    private int inflight;
+    private boolean retryScheduled;
+    private boolean draining;
+    private boolean closed;
+
+    /**
+     * @param clientId    客户端ID
+     * @param client      客户端
+     * @param maxInflight 最大发送窗口
+     * @param capacity    队列长度
+     * @param policy      队列满时的处理方式
+     * @param timeout     BLOCK 时的最长等待时间(毫秒)
+     * @param scheduler   重试用的线程池
+     */
+    public OutboundQueue(String clientId, IMqttAsyncClient client, int maxInflight, int capacity
+            , OverflowPolicy policy, long timeout, ScheduledExecutorService scheduler) {
+        this.clientId = clientId;
+        this.client = client;
+        this.maxInflight = Math.max(maxInflight, 1);
+        this.capacity = capacity;
+        this.policy = policy == null ? OverflowPolicy.BLOCK : policy;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        this.scheduler = scheduler;
+        this.queue = new ArrayDeque<>(Math.min(capacity, 1024));
+    }
+
+    /**
+     * 连接断开时队列中的消息交给 fallback, 而不是以失败结束.
+     *
+     * @param fallback 主题, 消息, 回调
+     */
+    public void setFallback(Fallback fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * 发送消息, 发送窗口已满时放入队列.
+     *
+     * @param topic    主题
+     * @param message  消息
+     * @param callback 发送完成或失败时的回调, 可为 null
+     * @throws MqttException 直接发送时客户端未连接, 见 {@link OfflineBuffer#isDisconnected(MqttException)}
+     */
+    public void publish(String topic, MqttMessage message, IMqttActionListener callback) throws MqttException {
+        if (message.getQos() == 0) {
+            try {
+                client.publish(topic, message, null, nonBlocking(callback));
+            } catch (MqttException e) {
+                if (OfflineBuffer.isDisconnected(e)) {
+                    throw e;
+                }
+                fail(callback, e);
+            }
+            return;
+        }
+        Item item = new Item(topic, message, callback);
+        MqttException rejection = null;
+        lock.lock();
+        try {
+            if (closed) {
+                rejection = new MqttException(MqttException.REASON_CODE_CLIENT_CLOSED);
+            } else if (inflight < maxInflight && queue.isEmpty() && !draining) {
+                ++inflight;
+            } else {
+                long nanos = timeoutNanos;
+                boolean fail = policy == OverflowPolicy.FAIL || !mayBlock();
+                while (queue.size() >= capacity && !closed) {
+                    if (fail || nanos <= 0) {
+                        break;
+                    }
+                    nanos = notFull.awaitNanos(nanos);
+                }
+                if (closed) {
+                    rejection = new MqttException(MqttException.REASON_CODE_CLIENT_CLOSED);
+                } else if (queue.size() >= capacity) {
+                    rejection = new MqttException(MqttException.REASON_CODE_MAX_INFLIGHT);
+                } else {
+                    queue.addLast(item);
+                }
+                item = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            item = null;
+            rejection = new MqttException(e);
+        } finally {
+            lock.unlock();
+        }
+        if (rejection != null) {
+            reject(callback, rejection);
+        } else if (item != null && !send(item, true)) {
+            retry(item, false);
+        }
+    }
+
+    /**
+     * 执行 task, 期间队列满时 BLOCK 与 FAIL 一样立即失败.
+     * <p>
+     * Paho 的回调线程同时负责发送完成的通知, 在这里等待时队列永远不会空出来; 定时任务线程池只有两个线程, 也不能等待.
+     * 所以 Paho 的回调和定时任务都通过该方法执行.
+     *
+     * @param task 任务
+     */
+    public static void nonBlocking(Runnable task) {
+        if (NON_BLOCKING.get() != null) {
+            task.run();
+            return;
+        }
+        NON_BLOCKING.set(Boolean.TRUE);
+        try {
+            task.run();
+        } finally {
+            NON_BLOCKING.remove();
+        }
+    }
+
+    /**
+     * 通过 {@link #nonBlocking(Runnable)} 执行回调
+     *
+     * @param callback 回调, 可为 null
+     * @return IMqttActionListener
+     */
+    public static IMqttActionListener nonBlocking(IMqttActionListener callback) {
+        if (callback == null) {
+            return null;
+        }
+        return new IMqttActionListener() {
+            @Override
+            public void onSuccess(IMqttToken asyncActionToken) {
+                nonBlocking(() -> callback.onSuccess(asyncActionToken));
+            }
+
+            @Override
+            public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                nonBlocking(() -> callback.onFailure(asyncActionToken, exception));
+            }
+        };
+    }
+
+    /**
+     * 当前线程是否可以等待队列空出位置
+     */
+    private static boolean mayBlock() {
+        return NON_BLOCKING.get() == null;
+    }
+
+    private void reject(IMqttActionListener callback, MqttException exception) {
+        if (exception.getReasonCode() == MqttException.REASON_CODE_MAX_INFLIGHT) {
+            long count = rejected.incrementAndGet();
+            if (count == 1 || count % 10000 == 0) {
+                log.warn("mqtt client '{}' outbound queue is full, {} messages rejected.", clientId, count);
+            }
+        }
+        fail(callback, exception);
+    }
+
+    /**
+     * @param direct 是否由 publish 直接发送, 未连接时抛出异常, 否则交给 fallback
+     * @return false 时客户端的发送窗口还没有空出来, 需要稍后重发
+     */
+    private boolean send(Item item, boolean direct) throws MqttException {
+        try {
+            client.publish(item.topic, item.message, null, new Listener(item.callback));
+        } catch (MqttException e) {
+            if (e.getReasonCode() == MqttException.REASON_CODE_MAX_INFLIGHT) {
+                return false;
+            }
+            release(1);
+            if (OfflineBuffer.isDisconnected(e)) {
+                if (direct) {
+                    throw e;
+                }
+                disconnected(item, e);
+            } else {
+                fail(item.callback, e);
+            }
+        } catch (RuntimeException e) {
+            release(1);
+            fail(item.callback, e);
+        }
+        return true;
+    }
+
+    /**
+     * 连接已断开, 这条消息和队列中剩下的消息按顺序交给 fallback
+     */
+    private void disconnected(Item item, MqttException exception) {
+        Fallback fallback = this.fallback;
+        if (fallback == null) {
+            fail(item.callback, exception);
+            return;
+        }
+        List<Item> left;
+        lock.lock();
+        try {
+            left = new ArrayList<>(queue);
+            queue.clear();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        log.info("mqtt client '{}' is not connected, {} queued messages moved to the offline buffer.", clientId, left.size() + 1);
+        fallback.accept(item.topic, item.message, item.callback);
+        for (Item next : left) {
+            fallback.accept(next.topic, next.message, next.callback);
+        }
+    }
+
+    /**
+     * 放回队首稍后再发
+     *
+     * @param draining 是否由 drain 调用
+     */
+    private void retry(Item item, boolean draining) {
+        boolean schedule;
+        lock.lock();
+        try {
+            --inflight;
+            queue.addFirst(item);
+            if (draining) {
+                this.draining = false;
+            }
+            schedule = !retryScheduled;
+            retryScheduled = true;
+        } finally {
+            lock.unlock();
+        }
+        if (schedule) {
+            scheduler.schedule(() -> {
+                lock.lock();
+                try {
+                    retryScheduled = false;
+                } finally {
+                    lock.unlock();
+                }
+                release(0);
+            }, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 释放发送窗口, 并发送队列中的消息
+     */
+    private void release(int completed) {
+        boolean start;
+        lock.lock();
+        try {
+            inflight -= completed;
+            start = !draining && inflight < maxInflight && !queue.isEmpty() && !closed;
+            if (start) {
+                draining = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (start) {
+            drain();
+        }
+    }
+
+    /**
+     * 同一时间只有一个线程发送队列中的消息, 保证按放入的顺序发送
+     */
+    private void drain() {
+        while (true) {
+            Item item;
+            lock.lock();
+            try {
+                if (inflight >= maxInflight || queue.isEmpty() || closed) {
+                    draining = false;
+                    return;
+                }
+                item = queue.pollFirst();
+                ++inflight;
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+            boolean sent;
+            try {
+                sent = send(item, false);
+            } catch (MqttException e) {
+                // 不是直接发送时不会抛出
+                sent = true;
+            }
+            if (!sent) {
+                retry(item, true);
+                return;
+            }
+        }
+    }
+
+    private static void fail(IMqttActionListener callback, Throwable exception) {
+        if (callback != null) {
+            try {
+                callback.onFailure(null, exception);
+            } catch (Throwable throwable) {
+                log.error("publish callback error: {}", throwable.getMessage(), throwable);
+            }
+        } else {
+            log.error("message publish error: {}", exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * 队列中等待发送的消息数量
+     *
+     * @return int
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 已发送未完成的 QOS 1/2 消息数量
+     *
+     * @return int
+     */
+    public int getInflight() {
+        lock.lock();
+        try {
+            return inflight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 队列满而发送失败的消息数量
+     *
+     * @return long
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public int getMaxInflight() {
+        return maxInflight;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 关闭, 队列中未发送的消息以失败结束.
+     */
+    public void close() {
+        List<Item> left;
+        lock.lock();
+        try {
+            closed = true;
+            left = new ArrayList<>(queue);
+            queue.clear();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (!left.isEmpty()) {
+            log.warn("mqtt client '{}' closed, {} queued messages not sent.", clientId, left.size());
+            for (Item item : left) {
+                fail(item.callback, new MqttException(MqttException.REASON_CODE_CLIENT_CLOSED));
+            }
+        }
+    }
+
+    /**
+     * 断开时 Paho 可能先以失败通知, 重连后重发成功再通知一次, 只释放一次发送窗口.
+     */
+    private final class Listener implements IMqttActionListener {
+        private final IMqttActionListener callback;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Listener(IMqttActionListener callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            nonBlocking(() -> {
+                release(released.compareAndSet(false, true) ? 1 : 0);
+                if (callback != null) {
+                    callback.onSuccess(asyncActionToken);
+                }
+            });
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            nonBlocking(() -> {
+                release(released.compareAndSet(false, true) ? 1 : 0);
+                if (callback != null) {
+                    callback.onFailure(asyncActionToken, exception);
+                }
+            });
+        }
+    }
+
+    /**
+     * 连接断开时接收队列中的消息
+     */
+    @FunctionalInterface
+    public interface Fallback {
+        void accept(String topic, MqttMessage message, IMqttActionListener callback);
+    }
+
+    private record Item(String topic, MqttMessage message, IMqttActionListener callback) {
+    }
+}
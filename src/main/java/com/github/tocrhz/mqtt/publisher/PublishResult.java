@@ -0,0 +1,14 @@
+package com.github.tocrhz.mqtt.publisher;
+
+/**
+ * Result of an asynchronous publish, available once the message has been delivered.
+ * <p>
+ * For QOS 0 delivered means written to the network, for QOS 1 and 2 acknowledged by the broker.
+ *
+ * @param topic     主题
+ * @param messageId 消息ID, QOS 0 时为 0
+ * @param qos       服务质量
+ * @param retained  保留消息
+ */
+public record PublishResult(String topic, int messageId, int qos, boolean retained) {
+}
@@ -0,0 +1,246 @@
+package com.github.tocrhz.mqtt.publisher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Append-only FIFO of byte records, stored in memory-mapped segment files.
+ * <p>
+ * Each segment starts with the read position, followed by records of {@code [int length][bytes]}, a zero length marks
+ * the end. The length is written after the bytes, so a record torn by a crash is not read. Fully read segments are deleted,
+ * the rest are read again after a restart. Not thread safe.
+ */
+final class SegmentLog implements Closeable {
+    private final static Logger log = LoggerFactory.getLogger(SegmentLog.class);
+    private final static int HEADER = 8;
+    private final static String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private long nextSequence;
+    private long count;
+
+    /**
+     * @param directory   目录
+     * @param segmentSize 每个分段的大小
+     * @param maxSize     最大大小
+     * @throws IOException 无法创建目录或读取已有的分段
+     */
+    SegmentLog(Path directory, int segmentSize, long maxSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = Math.max(segmentSize, 4096);
+        this.maxSegments = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxSize / this.segmentSize));
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(directory)) {
+            list.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).sorted().forEach(files::add);
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long sequence;
+            try {
+                sequence = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            Segment segment = Segment.open(file, sequence, (int) Math.min(Files.size(file), Integer.MAX_VALUE));
+            segments.addLast(segment);
+            count += segment.scan();
+            nextSequence = sequence + 1;
+        }
+        if (count > 0) {
+            log.info("recovered {} offline messages from '{}'.", count, directory);
+        }
+    }
+
+    /**
+     * 追加到末尾
+     *
+     * @param record 记录
+     * @return 超过最大大小时返回 false
+     * @throws IOException 无法创建分段
+     */
+    boolean append(byte[] record) throws IOException {
+        Segment tail = segments.peekLast();
+        if (tail == null || !tail.fits(record.length)) {
+            if (segments.size() >= maxSegments) {
+                return false;
+            }
+            int size = Math.max(segmentSize, HEADER + 4 + record.length + 4);
+            String name = String.format("%020d%s", nextSequence, SUFFIX);
+            tail = Segment.create(directory.resolve(name), nextSequence++, size);
+            segments.addLast(tail);
+        }
+        tail.write(record);
+        ++count;
+        return true;
+    }
+
+    /**
+     * 第一条记录, 不移除
+     *
+     * @return 为空时返回 null
+     */
+    byte[] peek() {
+        while (true) {
+            Segment head = segments.peekFirst();
+            if (head == null) {
+                return null;
+            }
+            byte[] record = head.read();
+            if (record != null || head == segments.peekLast()) {
+                return record;
+            }
+            // 已读完且不再写入的分段
+            segments.pollFirst();
+            head.delete();
+        }
+    }
+
+    /**
+     * 移除第一条记录, 需要先调用 peek
+     */
+    void remove() {
+        Segment head = segments.peekFirst();
+        if (head != null && head.skip()) {
+            --count;
+        }
+    }
+
+    long size() {
+        return count;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public void close() {
+        for (Segment segment : segments) {
+            segment.force();
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final long sequence;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private int readPosition;
+        private int writePosition;
+
+        private Segment(Path path, long sequence, MappedByteBuffer buffer) {
+            this.path = path;
+            this.sequence = sequence;
+            this.buffer = buffer;
+            this.capacity = buffer.capacity();
+        }
+
+        static Segment create(Path path, long sequence, int size) throws IOException {
+            Segment segment = new Segment(path, sequence, map(path, size));
+            segment.readPosition = HEADER;
+            segment.writePosition = HEADER;
+            segment.buffer.putInt(0, HEADER);
+            return segment;
+        }
+
+        static Segment open(Path path, long sequence, int size) throws IOException {
+            return new Segment(path, sequence, map(path, size));
+        }
+
+        private static MappedByteBuffer map(Path path, int size) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // 映射在关闭通道后仍然有效
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        /**
+         * 恢复读写位置
+         *
+         * @return 未读的记录数量
+         */
+        int scan() {
+            int position = capacity >= HEADER ? buffer.getInt(0) : capacity;
+            if (position < HEADER || position > capacity) {
+                position = HEADER;
+            }
+            readPosition = position;
+            int records = 0;
+            while (position + 4 <= capacity) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || length > capacity - position - 4) {
+                    break;
+                }
+                position += 4 + length;
+                ++records;
+            }
+            writePosition = position;
+            return records;
+        }
+
+        boolean fits(int length) {
+            return writePosition + 4 + length <= capacity;
+        }
+
+        void write(byte[] record) {
+            buffer.put(writePosition + 4, record);
+            buffer.putInt(writePosition, record.length);
+            writePosition += 4 + record.length;
+        }
+
+        byte[] read() {
+            if (readPosition >= writePosition) {
+                return null;
+            }
+            int length = buffer.getInt(readPosition);
+            byte[] record = new byte[length];
+            buffer.get(readPosition + 4, record);
+            return record;
+        }
+
+        boolean skip() {
+            if (readPosition >= writePosition) {
+                return false;
+            }
+            readPosition += 4 + buffer.getInt(readPosition);
+            buffer.putInt(0, readPosition);
+            return true;
+        }
+
+        void force() {
+            try {
+                buffer.force();
+            } catch (Exception e) {
+                log.warn("flush offline segment {} failed: {}", sequence, e.getMessage());
+            }
+        }
+
+        void delete() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("delete offline segment '{}' failed: {}", path, e.getMessage());
+            }
+        }
+    }
+}
@@ -1,53 +1,107 @@
 package com.github.tocrhz.mqtt.publisher;
 
 import com.github.tocrhz.mqtt.convert.MqttConversionService;
+import com.github.tocrhz.mqtt.convert.PayloadCompressor;
+import com.github.tocrhz.mqtt.exception.PayloadConversionException;
 import com.github.tocrhz.mqtt.properties.MqttConfigAdapter;
-import com.github.tocrhz.mqtt.subscriber.MqttSubscriber;
+import com.github.tocrhz.mqtt.subscriber.AckCoalescer;
+import com.github.tocrhz.mqtt.subscriber.InboundQueue;
 import com.github.tocrhz.mqtt.subscriber.TopicPair;
+import com.github.tocrhz.mqtt.subscriber.TopicTrie;
 import org.eclipse.paho.client.mqttv3.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 简单封装下客户端
+ * <p>
+ * subscribeBatch 为每个 SUBSCRIBE 报文中的主题数量, 为 0 时全部放在一个报文中.
+ * inbound 为 null 时直接在回调线程中分发消息, 否则放入接收队列.
+ * acks 不为 null 时使用手动确认.
+ * outbound 不为 null 时, 超过发送窗口的 QOS 1/2 消息放入发送队列.
+ * offline 不为 null 时, 未连接时发送的消息先缓存, 连接后重新发送.
+ * format 为默认的消息格式, 为 null 时使用转换类.
+ * compressor 不为 null 时压缩发送的消息, 并解压收到的压缩消息, 各个连接共用, 由 MqttClientManager 在所有连接关闭后释放.
+ * shareGroup 不为 null 时没有分组的主题使用该分组共享订阅.
+ * shards 为同一个客户端的其它连接, 发送的消息按主题分配到各个连接.
  */
 public record SimpleMqttClient(String id, MqttConnectOptions options
-        , IMqttAsyncClient client, Set<TopicPair> topics, boolean enableShared, int qos, MqttConfigAdapter adapter) {
+        , IMqttAsyncClient client, Set<TopicPair> topics, int subscribeBatch, TopicTrie trie, InboundQueue inbound, AckCoalescer acks, OutboundQueue outbound, OfflineBuffer offline
+        , boolean enableShared, int qos, String format, PayloadCompressor compressor, MqttConfigAdapter adapter
+        , String shareGroup, List<SimpleMqttClient> shards) {
     private static final Logger log = LoggerFactory.getLogger(SimpleMqttClient.class);
-    public static final ScheduledExecutorService scheduled = Executors.newScheduledThreadPool(2);
+    private static final AtomicInteger SCHEDULED_THREADS = new AtomicInteger();
+    // 定时任务中发送消息时不等待发送队列, 见 OutboundQueue#nonBlocking
+    public static final ScheduledExecutorService scheduled = Executors.newScheduledThreadPool(2
+            , runnable -> new Thread(() -> OutboundQueue.nonBlocking(runnable), "mqtt-scheduled-" + SCHEDULED_THREADS.incrementAndGet()));
 
-    public void connect() {
+    /**
+     * 建立连接, 包括其它连接, 连接失败时一直重试.
+     *
+     * @return 所有连接都连接成功并收到订阅确认后完成, 订阅失败时以异常结束
+     */
+    public CompletableFuture<Void> connect() {
+        CompletableFuture<Void> ready = new CompletableFuture<>();
+        connect(ready, System.nanoTime());
+        if (shards.isEmpty()) {
+            return ready;
+        }
+        CompletableFuture<?>[] all = new CompletableFuture<?>[shards.size() + 1];
+        all[0] = ready;
+        for (int i = 0; i < shards.size(); ++i) {
+            all[i + 1] = shards.get(i).connect();
+        }
+        return CompletableFuture.allOf(all);
+    }
+
+    private void connect(CompletableFuture<Void> ready, long start) {
         try {
             adapter.beforeConnect(id, options);
-            client.connect(options, null, new IMqttActionListener() {
+            client.setManualAcks(acks != null);
+            if (inbound != null) {
+                inbound.start(this::dispatch);
+            }
+            client.connect(options, null, OutboundQueue.nonBlocking(new IMqttActionListener() {
                 @Override
                 public void onSuccess(IMqttToken asyncActionToken) {
-                    log.info("connect success. client_id is [{}], brokers is [{}].", id, String.join(",", options.getServerURIs()));
-                    subscribe();
+                    log.info("connect success in {} ms. client_id is [{}], brokers is [{}]."
+                            , elapsed(start), id, String.join(",", options.getServerURIs()));
+                    subscribe(ready, System.nanoTime());
                 }
 
                 @Override
                 public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
                     log.error("connect failure. client_id is [{}], brokers is [{}]. retry after {} ms."
                             , id, String.join(",", options.getServerURIs()), options.getMaxReconnectDelay());
-                    scheduled.schedule(() -> connect(), options.getMaxReconnectDelay(), TimeUnit.MILLISECONDS);
+                    scheduled.schedule(() -> connect(ready, start), options.getMaxReconnectDelay(), TimeUnit.MILLISECONDS);
                 }
-            });
+            }));
+            // 回调在 Paho 的线程中执行, 发送消息时不等待发送队列
             client.setCallback(new MqttCallbackExtended() {
 
                 @Override
                 public void connectComplete(boolean reconnect, String serverURI) {
-                    if (reconnect) {
-                        log.info("mqtt reconnection success.");
-                        subscribe();
-                    }
+                    OutboundQueue.nonBlocking(() -> {
+                        if (reconnect) {
+                            log.info("mqtt reconnection success.");
+                            subscribe(null, System.nanoTime());
+                        }
+                        if (offline != null && !offline.isEmpty()) {
+                            log.info("mqtt client '{}' resend {} offline messages.", id, offline.size());
+                            replay();
+                        }
+                    });
                 }
 
                 @Override
@@ -57,9 +111,13 @@ public record SimpleMqttClient(String id, MqttConnectOptions options
 
                 @Override
                 public void messageArrived(String topic, MqttMessage message) {
-                    for (MqttSubscriber subscriber : MqttSubscriber.SUBSCRIBERS) {
-                        subscriber.accept(id, topic, message);
-                    }
+                    OutboundQueue.nonBlocking(() -> {
+                        if (inbound != null) {
+                            inbound.offer(topic, message);
+                        } else {
+                            dispatch(topic, message);
+                        }
+                    });
                 }
 
                 @Override
@@ -68,35 +126,118 @@ public record SimpleMqttClient(String id, MqttConnectOptions options
             });
         } catch (MqttException e) {
             log.error("connect error: {}", e.getMessage(), e);
+            ready.completeExceptionally(e);
         }
     }
 
-    private void subscribe() {
+    /**
+     * 解压后分发给订阅者
+     *
+     * @param topic   主题
+     * @param message 消息
+     */
+    public void dispatch(String topic, MqttMessage message) {
+        if (compressor != null) {
+            message = compressor.inflate(topic, message);
+        }
+        trie.dispatch(topic, message, acks);
+    }
+
+    /**
+     * 订阅所有主题, 主题较多时分成多个报文, 不等待上一个报文的确认
+     *
+     * @param ready 收到所有订阅确认后完成, 可为 null
+     * @param start 开始时间
+     */
+    private void subscribe(CompletableFuture<Void> ready, long start) {
         try {
             this.adapter.beforeSubscribe(id, topics);
+        } catch (Exception e) {
+            log.error("mqtt client '{}' subscribe failure.", id, e);
+            if (ready != null) {
+                ready.completeExceptionally(e);
+            }
+            return;
+        }
+        if (topics.isEmpty()) {
+            log.info("there is no topic has been found for client '{}'.", id);
+            if (ready != null) {
+                ready.complete(null);
+            }
+            return;
+        }
+        String[] topic = new String[topics.size()];
+        int[] qos = new int[topics.size()];
+        int i = 0;
+        for (TopicPair pair : topics) {
+            topic[i] = pair.getTopic(enableShared);
+            if (shareGroup != null && !topic[i].startsWith("$share/")) {
+                topic[i] = "$share/" + shareGroup + "/" + topic[i];
+            }
+            qos[i] = pair.getQos();
+            ++i;
+        }
+        int size = subscribeBatch > 0 ? subscribeBatch : topic.length;
+        int batches = (topic.length + size - 1) / size;
+        AtomicInteger remaining = new AtomicInteger(batches);
+        for (int from = 0; from < topic.length; from += size) {
+            String[] batchTopic = Arrays.copyOfRange(topic, from, Math.min(from + size, topic.length));
+            int[] batchQos = Arrays.copyOfRange(qos, from, from + batchTopic.length);
+            try {
+                client.subscribe(batchTopic, batchQos, null, OutboundQueue.nonBlocking(new IMqttActionListener() {
+                    @Override
+                    public void onSuccess(IMqttToken asyncActionToken) {
+                        int[] granted = asyncActionToken.getGrantedQos();
+                        for (int j = 0; granted != null && j < granted.length && j < batchTopic.length; ++j) {
+                            if (granted[j] == 0x80) {
+                                log.warn("mqtt client '{}' subscribe '{}' rejected by broker.", id, batchTopic[j]);
+                            }
+                        }
+                        if (log.isDebugEnabled()) {
+                            StringJoiner sj = new StringJoiner(",");
+                            for (int j = 0; j < batchTopic.length; ++j) {
+                                sj.add("('" + batchTopic[j] + "', " + batchQos[j] + ")");
+                            }
+                            log.debug("mqtt client '{}' subscribed : {}", id, sj);
+                        }
+                        if (remaining.decrementAndGet() == 0) {
+                            log.info("mqtt client '{}' subscribe success in {} ms. {} topics in {} packets."
+                                    , id, elapsed(start), topic.length, batches);
+                            if (ready != null) {
+                                ready.complete(null);
+                            }
+                        }
+                    }
 
-            if (topics.isEmpty()) {
-                log.info("there is no topic has been found for client '{}'.", id);
-            } else {
-                StringJoiner sj = new StringJoiner(",");
-                String[] topic = new String[topics.size()];
-                int[] qos = new int[topics.size()];
-                int i = 0;
-                for (TopicPair pair : topics) {
-                    topic[i] = pair.getTopic(enableShared);
-                    qos[i] = pair.getQos();
-                    sj.add("('" + topic[i] + "', " + qos[i] + ")");
-                    ++i;
+                    @Override
+                    public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                        log.error("mqtt client '{}' subscribe failure.", id, exception);
+                        if (ready != null) {
+                            ready.completeExceptionally(exception);
+                        }
+                    }
+                }));
+            } catch (MqttException e) {
+                log.error("mqtt client '{}' subscribe failure.", id, e);
+                if (ready != null) {
+                    ready.completeExceptionally(e);
                 }
-                client.subscribe(topic, qos);
-                log.info("mqtt client '{}' subscribe success. topics : " + sj, id);
+                return;
             }
-        } catch (MqttException e) {
-            log.error("mqtt client '{}' subscribe failure.", id, e);
         }
     }
 
+    private static long elapsed(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
     public void close() {
+        for (SimpleMqttClient shard : shards) {
+            shard.close();
+        }
+        if (outbound != null) {
+            outbound.close();
+        }
         try (IMqttAsyncClient imac = client()) {
             if (imac.isConnected()) {
                 imac.disconnect();
@@ -104,6 +245,13 @@ public record SimpleMqttClient(String id, MqttConnectOptions options
         } catch (MqttException e) {
             log.error("mqtt client '{}' disconnect error: {}", id, e.getMessage(), e);
         }
+        if (inbound != null) {
+            // 断开后不再有新消息, 分发队列中剩余的消息
+            inbound.close(TimeUnit.SECONDS.toMillis(options.getExecutorServiceTimeout()));
+        }
+        if (offline != null) {
+            offline.close();
+        }
     }
 
 
@@ -135,31 +283,139 @@ public record SimpleMqttClient(String id, MqttConnectOptions options
         send(topic, payload, qos, false, callback);
     }
 
+    public void send(String topic, Object payload, int qos, boolean retained, IMqttActionListener callback) {
+        send(topic, payload, qos, retained, format, callback);
+    }
+
     /**
-     * 发送消息到指定主题, 指定qos, retained
+     * 发送消息到指定主题, 指定qos, retained, 消息格式
      *
      * @param topic    主题
      * @param payload  消息内容
      * @param qos      服务质量
      * @param retained 保留消息
+     * @param format   消息格式, 如 json, cbor, 为 null 时使用转换类
      * @param callback 消息发送完成后的回调
      * @throws IllegalArgumentException if topic is empty
      * @throws NullPointerException     if client not exists
      */
-    public void send(String topic, Object payload, int qos, boolean retained, IMqttActionListener callback) {
+    public void send(String topic, Object payload, int qos, boolean retained, String format, IMqttActionListener callback) {
         Assert.isTrue(topic != null && !topic.isBlank(), "topic cannot be blank.");
-        byte[] bytes = MqttConversionService.getSharedInstance().toBytes(payload);
+        byte[] bytes = toBytes(topic, payload, format);
         if (bytes == null) {
             return;
         }
         MqttMessage message = toMessage(bytes, qos, retained);
         try {
-            client.publish(topic, message, null, callback);
+            route(topic).publish(topic, message, callback);
         } catch (Throwable throwable) {
             log.error("message publish error: {}", throwable.getMessage(), throwable);
         }
     }
 
+    public CompletableFuture<PublishResult> publishAsync(String topic, Object payload) {
+        return publishAsync(topic, payload, qos(), false, format);
+    }
+
+    public CompletableFuture<PublishResult> publishAsync(String topic, Object payload, int qos) {
+        return publishAsync(topic, payload, qos, false, format);
+    }
+
+    public CompletableFuture<PublishResult> publishAsync(String topic, Object payload, int qos, boolean retained) {
+        return publishAsync(topic, payload, qos, retained, format);
+    }
+
+    /**
+     * 异步发送消息, 发送完成(QOS 0 写入网络, QOS 1/2 收到服务端确认)时完成.
+     * <p>
+     * 与 send 不同, 转换失败, 超过最大发送窗口, 未连接等错误不会只打印日志, 而是以异常结束.
+     *
+     * @param topic    主题
+     * @param payload  消息内容
+     * @param qos      服务质量
+     * @param retained 保留消息
+     * @param format   消息格式, 如 json, cbor, 为 null 时使用转换类
+     * @return CompletableFuture, 转换失败时以 {@link PayloadConversionException} 结束, 发送失败时以 {@link MqttException} 结束
+     */
+    public CompletableFuture<PublishResult> publishAsync(String topic, Object payload, int qos, boolean retained, String format) {
+        CompletableFuture<PublishResult> future = new CompletableFuture<>();
+        try {
+            Assert.isTrue(topic != null && !topic.isBlank(), "topic cannot be blank.");
+            byte[] bytes = toBytes(topic, payload, format);
+            if (bytes == null) {
+                throw new PayloadConversionException(payload, format);
+            }
+            MqttMessage message = toMessage(bytes, qos, retained);
+            route(topic).publish(topic, message, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken token) {
+                    future.complete(new PublishResult(topic, token.getMessageId(), qos, retained));
+                }
+
+                @Override
+                public void onFailure(IMqttToken token, Throwable exception) {
+                    future.completeExceptionally(exception);
+                }
+            });
+        } catch (Throwable throwable) {
+            future.completeExceptionally(throwable);
+        }
+        return future;
+    }
+
+    /**
+     * 按主题选择连接, 同一主题总是使用同一个连接, 保证消息顺序
+     */
+    private SimpleMqttClient route(String topic) {
+        if (shards.isEmpty()) {
+            return this;
+        }
+        int index = Math.floorMod(topic.hashCode(), shards.size() + 1);
+        return index == 0 ? this : shards.get(index - 1);
+    }
+
+    private void publish(String topic, MqttMessage message, IMqttActionListener callback) throws MqttException {
+        if (offline != null) {
+            // 缓存中还有消息时也放入缓存, 保证按顺序发送
+            if (client.isConnected() && offline.isEmpty()) {
+                try {
+                    deliver(topic, message, callback);
+                    return;
+                } catch (MqttException e) {
+                    if (!OfflineBuffer.isDisconnected(e)) {
+                        throw e;
+                    }
+                }
+            }
+            offline.offer(topic, message, callback);
+            if (client.isConnected()) {
+                replay();
+            }
+            return;
+        }
+        deliver(topic, message, callback);
+    }
+
+    private void replay() {
+        offline.replay(this::deliver, client::isConnected, scheduled);
+    }
+
+    private void deliver(String topic, MqttMessage message, IMqttActionListener callback) throws MqttException {
+        if (outbound != null) {
+            outbound.publish(topic, message, callback);
+        } else {
+            client.publish(topic, message, null, OutboundQueue.nonBlocking(callback));
+        }
+    }
+
+    private byte[] toBytes(String topic, Object payload, String format) {
+        byte[] bytes = MqttConversionService.getSharedInstance().toBytes(payload, format);
+        if (bytes != null && compressor != null) {
+            bytes = compressor.compress(topic, bytes);
+        }
+        return bytes;
+    }
+
     private MqttMessage toMessage(byte[] payload, int qos, boolean retained) {
         MqttMessage message = new MqttMessage();
         message.setPayload(payload);
@@ -0,0 +1,149 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the acks of a client with manual acks.
+ * <p>
+ * A message is acked when every subscriber holding it has completed. Completed messages are buffered and
+ * sent by a single drain task, so handler threads never call into the client and acks are written in bursts.
+ *
+ * @see AckMode#MANUAL
+ */
+public final class AckCoalescer {
+    private final static Logger log = LoggerFactory.getLogger(AckCoalescer.class);
+
+    private final String clientId;
+    private final IMqttAsyncClient client;
+    private final Executor drainer;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Object lock = new Object();
+    // 已完成的消息, (id << 2) | qos
+    private int[] buffer = new int[64];
+    private int[] spare = new int[64];
+    private int size;
+    private boolean draining;
+
+    public AckCoalescer(String clientId, IMqttAsyncClient client, Executor drainer) {
+        this.clientId = clientId;
+        this.client = client;
+        this.drainer = drainer;
+    }
+
+    /**
+     * 开始跟踪一条消息, 分发本身持有一次, 分发结束后释放.
+     *
+     * @param message 消息
+     * @return MessageAck
+     */
+    MessageAck track(MqttMessage message) {
+        pending.incrementAndGet();
+        return new MessageAck(this, message.getId(), message.getQos());
+    }
+
+    /**
+     * 直接确认消息, 用于被丢弃的消息.
+     *
+     * @param message 消息
+     */
+    public void complete(MqttMessage message) {
+        if (message.getQos() > 0) {
+            pending.incrementAndGet();
+            complete(message.getId(), message.getQos());
+        }
+    }
+
+    private void complete(int id, int qos) {
+        boolean schedule;
+        synchronized (lock) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = (id << 2) | qos;
+            schedule = !draining;
+            draining = true;
+        }
+        if (schedule) {
+            try {
+                drainer.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drain();
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            int[] acks;
+            int count;
+            synchronized (lock) {
+                if (size == 0) {
+                    draining = false;
+                    return;
+                }
+                acks = buffer;
+                count = size;
+                buffer = spare;
+                size = 0;
+            }
+            for (int i = 0; i < count; i++) {
+                int id = acks[i] >>> 2;
+                int qos = acks[i] & 3;
+                try {
+                    client.messageArrivedComplete(id, qos);
+                } catch (MqttException e) {
+                    log.debug("mqtt client '{}' ack message {} failed: {}", clientId, id, e.getMessage());
+                }
+            }
+            pending.addAndGet(-count);
+            synchronized (lock) {
+                spare = acks;
+            }
+        }
+    }
+
+    /**
+     * 还未确认的消息数量
+     *
+     * @return int
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Hold count of one message, acked when it drops to zero.
+     */
+    static final class MessageAck {
+        private final AckCoalescer owner;
+        private final int id;
+        private final int qos;
+        private final AtomicInteger holds = new AtomicInteger(1);
+
+        private MessageAck(AckCoalescer owner, int id, int qos) {
+            this.owner = owner;
+            this.id = id;
+            this.qos = qos;
+        }
+
+        void retain() {
+            holds.incrementAndGet();
+        }
+
+        void release() {
+            if (holds.decrementAndGet() == 0) {
+                owner.complete(id, qos);
+            }
+        }
+    }
+}
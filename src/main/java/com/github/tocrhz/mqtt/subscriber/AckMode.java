@@ -0,0 +1,21 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+/**
+ * When a received QoS 1/2 message is acknowledged.
+ *
+ * @see com.github.tocrhz.mqtt.annotation.MqttSubscribe#ackMode()
+ */
+public enum AckMode {
+    /**
+     * 使用客户端的配置 'mqtt.ack-mode'.
+     */
+    DEFAULT,
+    /**
+     * 分发完成后立即确认, 不等待异步处理.
+     */
+    AUTO,
+    /**
+     * 处理方法(或所在的批次)执行完成后才确认.
+     */
+    MANUAL
+}
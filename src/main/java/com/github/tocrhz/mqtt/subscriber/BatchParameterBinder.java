@@ -0,0 +1,124 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import com.github.tocrhz.mqtt.convert.MqttConversionService;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.springframework.core.convert.converter.Converter;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Resolves one parameter of a batch handler from a whole {@link MessageBatch.Batch}.
+ * <p>
+ * {@code List<MqttMessage>} receives the messages, a {@code List<String>} without {@link com.github.tocrhz.mqtt.annotation.Payload}
+ * receives the topics, other {@code List<T>} receive the payloads converted to {@code T}. Any other parameter gets its default value.
+ */
+abstract class BatchParameterBinder {
+    protected final ParameterModel parameter;
+
+    BatchParameterBinder(ParameterModel parameter) {
+        this.parameter = parameter;
+    }
+
+    static BatchParameterBinder[] of(List<ParameterModel> parameters) {
+        BatchParameterBinder[] binders = new BatchParameterBinder[parameters.size()];
+        int i = 0;
+        for (ParameterModel parameter : parameters) {
+            binders[i++] = of(parameter);
+        }
+        return binders;
+    }
+
+    private static BatchParameterBinder of(ParameterModel parameter) {
+        Class<?> element = parameter.getElementType();
+        if (!List.class.isAssignableFrom(parameter.getType()) || element == null) {
+            return new DefaultValueBinder(parameter);
+        } else if (element == MqttMessage.class) {
+            return new MessagesBinder(parameter);
+        } else if (element == String.class && !parameter.isPayload()) {
+            return new TopicsBinder(parameter);
+        } else {
+            return new PayloadsBinder(parameter, element);
+        }
+    }
+
+    /**
+     * 是否能绑定批量的参数
+     *
+     * @return boolean
+     */
+    boolean isBatch() {
+        return true;
+    }
+
+    abstract Object bind(MessageBatch.Batch batch);
+
+    private static final class MessagesBinder extends BatchParameterBinder {
+        private MessagesBinder(ParameterModel parameter) {
+            super(parameter);
+        }
+
+        @Override
+        Object bind(MessageBatch.Batch batch) {
+            return batch.messages();
+        }
+    }
+
+    private static final class TopicsBinder extends BatchParameterBinder {
+        private TopicsBinder(ParameterModel parameter) {
+            super(parameter);
+        }
+
+        @Override
+        Object bind(MessageBatch.Batch batch) {
+            return batch.topics();
+        }
+    }
+
+    private static final class DefaultValueBinder extends BatchParameterBinder {
+        private DefaultValueBinder(ParameterModel parameter) {
+            super(parameter);
+        }
+
+        @Override
+        boolean isBatch() {
+            return false;
+        }
+
+        @Override
+        Object bind(MessageBatch.Batch batch) {
+            return parameter.getDefaultValue();
+        }
+    }
+
+    private static final class PayloadsBinder extends BatchParameterBinder {
+        private final Class<?> element;
+        private final LinkedList<Converter<Object, Object>> converters;
+        private final String format;
+
+        private PayloadsBinder(ParameterModel parameter, Class<?> element) {
+            super(parameter);
+            this.element = element;
+            this.converters = parameter.getConverters();
+            this.format = parameter.getFormat();
+        }
+
+        @Override
+        Object bind(MessageBatch.Batch batch) {
+            MqttConversionService service = MqttConversionService.getSharedInstance();
+            List<MqttMessage> messages = batch.messages();
+            ArrayList<Object> payloads = new ArrayList<>(messages.size());
+            for (int i = 0; i < messages.size(); i++) {
+                // 注解未指定格式时使用接收消息的客户端的默认格式
+                String format = this.format != null ? this.format : batch.format(i);
+                Object value = service.fromBytes(messages.get(i).getPayload(), element, converters, format);
+                // 必填时丢弃转换失败的消息
+                if (value != null || !parameter.isRequired()) {
+                    payloads.add(value);
+                }
+            }
+            return payloads;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import com.github.tocrhz.mqtt.properties.InboundProperties.OverflowPolicy;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Bounded queue between the client callback thread and the dispatch of one client.
+ * <p>
+ * Messages are dispatched in arrival order by a dedicated thread, the {@link OverflowPolicy} decides what happens
+ * when the queue is full.
+ */
+public class InboundQueue {
+    private final static Logger log = LoggerFactory.getLogger(InboundQueue.class);
+
+    private final String clientId;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private volatile BiConsumer<String, MqttMessage> dispatcher;
+    private final ArrayDeque<Item> queue;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final AtomicLong dropped = new AtomicLong();
+    private Thread thread;
+    private volatile BiConsumer<String, MqttMessage> dropListener;
+    private volatile boolean closed;
+
+    public InboundQueue(String clientId, int capacity, OverflowPolicy policy) {
+        this.clientId = clientId;
+        this.capacity = capacity;
+        this.policy = policy == null ? OverflowPolicy.BLOCK : policy;
+        this.queue = new ArrayDeque<>(Math.min(capacity, 1024));
+    }
+
+    /**
+     * 启动分发线程, 重复调用时忽略.
+     *
+     * @param dispatcher 分发方法
+     */
+    public synchronized void start(BiConsumer<String, MqttMessage> dispatcher) {
+        if (thread == null && !closed) {
+            this.dispatcher = dispatcher;
+            this.thread = new Thread(this::run, "mqtt-inbound-" + clientId);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+    }
+
+    /**
+     * 放入队列, 队列满时按配置的方式处理.
+     *
+     * @param topic   主题
+     * @param message 消息
+     */
+    public void offer(String topic, MqttMessage message) {
+        Item evicted = null;
+        boolean accepted = true;
+        lock.lock();
+        try {
+            while (queue.size() >= capacity && !closed) {
+                if (policy == OverflowPolicy.DROP_NEWEST
+                        || (policy == OverflowPolicy.DROP_QOS0 && message.getQos() == 0)) {
+                    accepted = false;
+                    break;
+                }
+                if (policy == OverflowPolicy.DROP_OLDEST) {
+                    evicted = queue.pollFirst();
+                    break;
+                }
+                notFull.await();
+            }
+            if (accepted) {
+                queue.addLast(new Item(topic, message));
+                notEmpty.signal();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        } finally {
+            lock.unlock();
+        }
+        if (!accepted) {
+            drop(topic, message);
+        }
+        if (evicted != null) {
+            drop(evicted.topic, evicted.message);
+        }
+    }
+
+    private void drop(String topic, MqttMessage message) {
+        long count = dropped.incrementAndGet();
+        if (count == 1 || count % 10000 == 0) {
+            log.warn("mqtt client '{}' inbound queue is full, {} messages dropped.", clientId, count);
+        }
+        BiConsumer<String, MqttMessage> listener = this.dropListener;
+        if (listener != null) {
+            listener.accept(topic, message);
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Item item;
+            lock.lock();
+            try {
+                while (queue.isEmpty()) {
+                    if (closed) {
+                        return;
+                    }
+                    notEmpty.await();
+                }
+                item = queue.pollFirst();
+                notFull.signal();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                dispatcher.accept(item.topic, item.message);
+            } catch (Throwable throwable) {
+                log.error("mqtt client '{}' dispatch error: {}", clientId, throwable.getMessage(), throwable);
+            }
+        }
+    }
+
+    /**
+     * 设置消息被丢弃时的回调
+     *
+     * @param dropListener 主题, 消息
+     */
+    public void setDropListener(BiConsumer<String, MqttMessage> dropListener) {
+        this.dropListener = dropListener;
+    }
+
+    /**
+     * 队列中等待分发的消息数量
+     *
+     * @return int
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 被丢弃的消息数量
+     *
+     * @return long
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 关闭, 等待队列中的消息分发完成.
+     *
+     * @param timeout 最长等待时间(毫秒)
+     */
+    public void close(long timeout) {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        Thread thread;
+        synchronized (this) {
+            thread = this.thread;
+        }
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join(timeout);
+            if (thread.isAlive()) {
+                log.warn("mqtt client '{}' inbound queue not drained in {} ms, {} messages left.", clientId, timeout, size());
+                thread.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Item(String topic, MqttMessage message) {
+    }
+}
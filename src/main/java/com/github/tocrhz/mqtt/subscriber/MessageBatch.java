@@ -0,0 +1,136 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Buffers the matched messages of one subscriber until batchSize is reached or lingerMs has passed.
+ * <p>
+ * Batches flushed by lingerMs are handed to the flusher on the scheduler thread ('mqtt-batch-', one for all subscribers),
+ * so with executor 'inline' they are handled there.
+ *
+ * @see com.github.tocrhz.mqtt.annotation.MqttSubscribe#batchSize()
+ */
+final class MessageBatch {
+    final static long DEFAULT_LINGER_MS = 100;
+
+    private final int batchSize;
+    private final long lingerMs;
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<Batch> flusher;
+
+    private ArrayList<String> topics;
+    private ArrayList<MqttMessage> messages;
+    private ArrayList<String> formats;
+    private ArrayList<AckCoalescer.MessageAck> acks;
+    private ScheduledFuture<?> timer;
+
+    MessageBatch(int batchSize, long lingerMs, ScheduledExecutorService scheduler, Consumer<Batch> flusher) {
+        this.batchSize = batchSize;
+        this.lingerMs = lingerMs;
+        this.scheduler = scheduler;
+        this.flusher = flusher;
+    }
+
+    /**
+     * 添加消息, 满了则返回这一批, 由调用者处理.
+     *
+     * @param topic   主题
+     * @param message 消息
+     * @param format  接收消息的客户端默认的消息格式, 可为 null
+     * @param ack     批次处理完成后释放, 可为 null
+     * @return Batch, 未满时为 null
+     */
+    Batch add(String topic, MqttMessage message, String format, AckCoalescer.MessageAck ack) {
+        synchronized (this) {
+            if (messages == null) {
+                topics = new ArrayList<>(batchSize);
+                messages = new ArrayList<>(batchSize);
+                timer = scheduler.schedule(this::linger, lingerMs, TimeUnit.MILLISECONDS);
+            }
+            if (format != null && formats == null) {
+                formats = new ArrayList<>(batchSize);
+                for (int i = 0; i < messages.size(); i++) {
+                    formats.add(null);
+                }
+            }
+            if (formats != null) {
+                formats.add(format);
+            }
+            topics.add(topic);
+            messages.add(message);
+            if (ack != null) {
+                if (acks == null) {
+                    acks = new ArrayList<>(batchSize);
+                }
+                acks.add(ack);
+            }
+            if (messages.size() >= batchSize) {
+                return take();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 取出当前未满的一批消息.
+     *
+     * @return Batch, 没有消息时为 null
+     */
+    Batch drain() {
+        synchronized (this) {
+            return messages == null ? null : take();
+        }
+    }
+
+    private Batch take() {
+        Batch batch = new Batch(topics, messages, formats, acks == null ? List.of() : acks);
+        topics = null;
+        messages = null;
+        formats = null;
+        acks = null;
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+        return batch;
+    }
+
+    private void linger() {
+        Batch batch = drain();
+        if (batch != null) {
+            flusher.accept(batch);
+        }
+    }
+
+    /**
+     * @param formats 每条消息的客户端默认格式, 都没有时为 null
+     */
+    record Batch(List<String> topics, List<MqttMessage> messages, List<String> formats, List<AckCoalescer.MessageAck> acks) {
+        int size() {
+            return messages.size();
+        }
+
+        /**
+         * 第 index 条消息的客户端默认格式
+         *
+         * @param index 消息位置
+         * @return String, 可为 null
+         */
+        String format(int index) {
+            return formats == null ? null : formats.get(index);
+        }
+
+        void release() {
+            for (AckCoalescer.MessageAck ack : acks) {
+                ack.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import com.github.tocrhz.mqtt.properties.ExecutorProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors used to run subscriber methods.
+ *
+ * @see ExecutorProperties
+ * @see com.github.tocrhz.mqtt.annotation.MqttSubscribe#executor()
+ */
+public class MessageExecutors {
+    private final static Logger log = LoggerFactory.getLogger(MessageExecutors.class);
+    public final static String INLINE = "inline";
+    public final static String POOL = "pool";
+    public final static String VIRTUAL = "virtual";
+    public final static String ORDERED = "ordered";
+
+    private final ExecutorProperties properties;
+    private final ConfigurableBeanFactory factory;
+    private volatile ExecutorService pool;
+    private volatile ExecutorService virtual;
+    private volatile OrderedExecutor ordered;
+    private volatile ScheduledExecutorService scheduler;
+
+    public MessageExecutors(ExecutorProperties properties, ConfigurableBeanFactory factory) {
+        this.properties = properties == null ? new ExecutorProperties() : properties;
+        this.factory = factory;
+    }
+
+    /**
+     * 解析处理方式, 为空时使用默认配置.
+     *
+     * @param type inline, pool, virtual, ordered 或 Executor 的 bean 名称
+     * @return 处理方式
+     */
+    public String resolve(String type) {
+        if (factory != null && StringUtils.hasText(type)) {
+            type = factory.resolveEmbeddedValue(type);
+        }
+        if (!StringUtils.hasText(type)) {
+            type = properties.getType();
+        }
+        return StringUtils.hasText(type) ? type : INLINE;
+    }
+
+    /**
+     * 获取处理方式对应的 Executor.
+     *
+     * @param type inline, pool, virtual 或 Executor 的 bean 名称, 为空时使用默认配置
+     * @return Executor, inline 时返回 null
+     * @see #ordered()
+     */
+    public Executor get(String type) {
+        type = resolve(type);
+        if (INLINE.equals(type)) {
+            return null;
+        }
+        if (ORDERED.equals(type)) {
+            throw new IllegalArgumentException("use ordered() for executor '" + ORDERED + "'.");
+        }
+        if (POOL.equals(type)) {
+            return pool();
+        }
+        if (VIRTUAL.equals(type)) {
+            return virtual();
+        }
+        if (factory == null) {
+            throw new IllegalStateException("executor bean '" + type + "' cannot be resolved without bean factory.");
+        }
+        return factory.getBean(type, Executor.class);
+    }
+
+    /**
+     * 按 key 保证顺序的处理通道, 所有订阅共用.
+     *
+     * @return OrderedExecutor
+     */
+    public OrderedExecutor ordered() {
+        if (ordered == null) {
+            synchronized (this) {
+                if (ordered == null) {
+                    ordered = new OrderedExecutor(properties.getLanes(), properties.getLaneQueueCapacity());
+                }
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * ordered 方式每个通道中等待处理的消息数量.
+     *
+     * @return int[], 未使用 ordered 方式时为空数组
+     */
+    public int[] getLaneBacklog() {
+        OrderedExecutor ordered = this.ordered;
+        return ordered == null ? new int[0] : ordered.backlog();
+    }
+
+    /**
+     * 定时任务, 用于批量消息的超时处理.
+     *
+     * @return ScheduledExecutorService
+     */
+    public ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            synchronized (this) {
+                if (scheduler == null) {
+                    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, threadFactory("mqtt-batch-"));
+                    executor.setRemoveOnCancelPolicy(true);
+                    scheduler = executor;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    private ExecutorService pool() {
+        if (pool == null) {
+            synchronized (this) {
+                if (pool == null) {
+                    int size = Math.max(1, properties.getPoolSize());
+                    pool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())),
+                            threadFactory("mqtt-handler-"),
+                            MessageExecutors::rejected);
+                }
+            }
+        }
+        return pool;
+    }
+
+    private ExecutorService virtual() {
+        if (virtual == null) {
+            synchronized (this) {
+                if (virtual == null) {
+                    try {
+                        Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                        virtual = (ExecutorService) method.invoke(null);
+                    } catch (ReflectiveOperationException e) {
+                        log.warn("virtual threads require Java 21+, use '{}' executor instead.", POOL);
+                        virtual = pool();
+                    }
+                }
+            }
+        }
+        return virtual;
+    }
+
+    /**
+     * 队列满时由提交的线程处理, 关闭后抛出异常, 由提交者释放消息的确认并输出日志.
+     * <p>
+     * CallerRunsPolicy 在关闭后直接丢弃任务, 任务中持有的确认不会释放.
+     */
+    private static void rejected(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("message handler pool has been shutdown.");
+        }
+        task.run();
+    }
+
+    static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 关闭创建的线程池, 等待已提交的消息处理完成.
+     *
+     * @param timeout 最长等待时间(毫秒)
+     */
+    public void shutdown(long timeout) {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (ordered != null) {
+            ordered.shutdown(timeout);
+        }
+        for (ExecutorService service : new ExecutorService[]{virtual, pool}) {
+            if (service == null || service.isShutdown()) {
+                continue;
+            }
+            service.shutdown();
+            try {
+                if (!service.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                    log.warn("mqtt message handlers not finished in {} ms.", timeout);
+                    service.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                service.shutdownNow();
+            }
+        }
+    }
+}
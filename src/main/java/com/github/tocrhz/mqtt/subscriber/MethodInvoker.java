@@ -0,0 +1,294 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Message handler bound to a bean method through {@link MethodHandle}.
+ * <p>
+ * The handle is created once at startup and specialized by arity, so every message is dispatched
+ * without reflective access checks or varargs spreading. Handlers with a single {@code int}, {@code long}
+ * or {@code double} parameter can also be called without boxing.
+ */
+abstract class MethodInvoker implements IMessageHandler {
+    private final static Logger log = LoggerFactory.getLogger(MethodInvoker.class);
+
+    /**
+     * 创建消息处理方法
+     *
+     * @param bean   实例
+     * @param method 方法
+     * @return IMessageHandler
+     */
+    static IMessageHandler of(Object bean, Method method) {
+        MethodHandle handle;
+        try {
+            method.trySetAccessible();
+            handle = MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            log.warn("Create method handle for '{}' failed, fallback to reflection: {}", method, e.getMessage());
+            return (params) -> method.invoke(bean, params);
+        }
+        if (!Modifier.isStatic(method.getModifiers())) {
+            handle = handle.bindTo(bean);
+        }
+        return of(handle, method.getParameterTypes());
+    }
+
+    private static MethodInvoker of(MethodHandle handle, Class<?>[] types) {
+        int count = types.length;
+        if (count == 1 && types[0].isPrimitive()) {
+            if (types[0] == int.class) {
+                return new IntInvoker(handle);
+            }
+            if (types[0] == long.class) {
+                return new LongInvoker(handle);
+            }
+            if (types[0] == double.class) {
+                return new DoubleInvoker(handle);
+            }
+        }
+        switch (count) {
+            case 0:
+                return new Invoker0(handle.asType(MethodType.genericMethodType(0)));
+            case 1:
+                return new Invoker1(handle.asType(MethodType.genericMethodType(1)));
+            case 2:
+                return new Invoker2(handle.asType(MethodType.genericMethodType(2)));
+            case 3:
+                return new Invoker3(handle.asType(MethodType.genericMethodType(3)));
+            case 4:
+                return new Invoker4(handle.asType(MethodType.genericMethodType(4)));
+            default:
+                return new InvokerN(handle.asSpreader(Object[].class, count)
+                        .asType(MethodType.methodType(Object.class, Object[].class)));
+        }
+    }
+
+    /**
+     * 参数为单个 int 时不装箱调用.
+     *
+     * @param value 参数
+     * @throws Exception 处理方法抛出的异常
+     */
+    void receiveInt(int value) throws Exception {
+        receive(new Object[]{value});
+    }
+
+    /**
+     * 参数为单个 long 时不装箱调用.
+     *
+     * @param value 参数
+     * @throws Exception 处理方法抛出的异常
+     */
+    void receiveLong(long value) throws Exception {
+        receive(new Object[]{value});
+    }
+
+    /**
+     * 参数为单个 double 时不装箱调用.
+     *
+     * @param value 参数
+     * @throws Exception 处理方法抛出的异常
+     */
+    void receiveDouble(double value) throws Exception {
+        receive(new Object[]{value});
+    }
+
+    /**
+     * 单个参数是否为 int, long, double, 用于跳过装箱.
+     *
+     * @return 参数类型, 若不是则为 null
+     */
+    Class<?> primitiveType() {
+        return null;
+    }
+
+    static Exception rethrow(Throwable throwable) {
+        if (throwable instanceof Exception e) {
+            return e;
+        }
+        if (throwable instanceof Error e) {
+            throw e;
+        }
+        return new UndeclaredThrowableException(throwable);
+    }
+
+    private static final class Invoker0 extends MethodInvoker {
+        private final MethodHandle handle;
+
+        private Invoker0(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public void receive(Object[] parameters) throws Exception {
+            try {
+                Object ignored = handle.invokeExact();
+            } catch (Throwable throwable) {
+                throw rethrow(throwable);
+            }
+        }
+    }
+
+    private static class Invoker1 extends MethodInvoker {
+        private final MethodHandle handle;
+
+        private Invoker1(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public void receive(Object[] parameters) throws Exception {
+            try {
+                Object ignored = handle.invokeExact(parameters[0]);
+            } catch (Throwable throwable) {
+                throw rethrow(throwable);
+            }
+        }
+    }
+
+    private static final class Invoker2 extends MethodInvoker {
+        private final MethodHandle handle;
+
+        private Invoker2(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public void receive(Object[] parameters) throws Exception {
+            try {
+                Object ignored = handle.invokeExact(parameters[0], parameters[1]);
+            } catch (Throwable throwable) {
+                throw rethrow(throwable);
+            }
+        }
+    }
+
+    private static final class Invoker3 extends MethodInvoker {
+        private final MethodHandle handle;
+
+        private Invoker3(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public void receive(Object[] parameters) throws Exception {
+            try {
+                Object ignored = handle.invokeExact(parameters[0], parameters[1], parameters[2]);
+            } catch (Throwable throwable) {
+                throw rethrow(throwable);
+            }
+        }
+    }
+
+    private static final class Invoker4 extends MethodInvoker {
+        private final MethodHandle handle;
+
+        private Invoker4(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public void receive(Object[] parameters) throws Exception {
+            try {
+                Object ignored = handle.invokeExact(parameters[0], parameters[1], parameters[2], parameters[3]);
+            } catch (Throwable throwable) {
+                throw rethrow(throwable);
+            }
+        }
+    }
+
+    private static final class InvokerN extends MethodInvoker {
+        private final MethodHandle handle;
+
+        private InvokerN(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public void receive(Object[] parameters) throws Exception {
+            try {
+                Object ignored = handle.invokeExact(parameters);
+            } catch (Throwable throwable) {
+                throw rethrow(throwable);
+            }
+        }
+    }
+
+    private static final class IntInvoker extends Invoker1 {
+        private final MethodHandle primitive;
+
+        private IntInvoker(MethodHandle handle) {
+            super(handle.asType(MethodType.genericMethodType(1)));
+            this.primitive = handle.asType(MethodType.methodType(void.class, int.class));
+        }
+
+        @Override
+        void receiveInt(int value) throws Exception {
+            try {
+                primitive.invokeExact(value);
+            } catch (Throwable throwable) {
+                throw rethrow(throwable);
+            }
+        }
+
+        @Override
+        Class<?> primitiveType() {
+            return int.class;
+        }
+    }
+
+    private static final class LongInvoker extends Invoker1 {
+        private final MethodHandle primitive;
+
+        private LongInvoker(MethodHandle handle) {
+            super(handle.asType(MethodType.genericMethodType(1)));
+            this.primitive = handle.asType(MethodType.methodType(void.class, long.class));
+        }
+
+        @Override
+        void receiveLong(long value) throws Exception {
+            try {
+                primitive.invokeExact(value);
+            } catch (Throwable throwable) {
+                throw rethrow(throwable);
+            }
+        }
+
+        @Override
+        Class<?> primitiveType() {
+            return long.class;
+        }
+    }
+
+    private static final class DoubleInvoker extends Invoker1 {
+        private final MethodHandle primitive;
+
+        private DoubleInvoker(MethodHandle handle) {
+            super(handle.asType(MethodType.genericMethodType(1)));
+            this.primitive = handle.asType(MethodType.methodType(void.class, double.class));
+        }
+
+        @Override
+        void receiveDouble(double value) throws Exception {
+            try {
+                primitive.invokeExact(value);
+            } catch (Throwable throwable) {
+                throw rethrow(throwable);
+            }
+        }
+
+        @Override
+        Class<?> primitiveType() {
+            return double.class;
+        }
+    }
+}
@@ -1,15 +1,16 @@
 package com.github.tocrhz.mqtt.subscriber;
 
-import com.github.tocrhz.mqtt.convert.MqttConversionService;
 import com.github.tocrhz.mqtt.exception.NullParameterException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
-import org.springframework.core.convert.converter.Converter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
 
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Used to subscribe message
@@ -28,14 +29,148 @@ public class MqttSubscriber {
      */
     public void accept(String clientId, String topic, MqttMessage mqttMessage) {
         Optional<TopicPair> matched = matched(clientId, topic);
-        if (matched.isPresent()) {
+        matched.ifPresent(topicPair -> accept(topicPair, topic, mqttMessage));
+    }
+
+    /**
+     * 接收已经匹配过主题的消息并处理
+     *
+     * @param topicPair   匹配到的订阅主题
+     * @param topic       当前消息的主题
+     * @param mqttMessage 当前消息内容
+     */
+    public void accept(TopicPair topicPair, String topic, MqttMessage mqttMessage) {
+        TopicCapture capture = TopicCapture.local();
+        if (topicPair.match(topic, capture)) {
+            accept(topics.indexOf(topicPair), capture, mqttMessage, null, null);
+        }
+    }
+
+    /**
+     * 接收已经匹配过主题的消息并处理
+     *
+     * @param index       匹配到的主题在 {@link #getTopics()} 中的位置
+     * @param capture     匹配时捕获的主题参数
+     * @param mqttMessage 当前消息内容
+     * @param ack         需要在处理完成后确认时不为 null
+     * @param memo        同一条消息已转换的内容, 只匹配一个订阅者且客户端没有默认格式时为 null
+     * @see TopicTrie
+     */
+    void accept(int index, TopicCapture capture, MqttMessage mqttMessage, AckCoalescer.MessageAck ack, PayloadMemo memo) {
+        MessageBatch batch = this.batch;
+        if (batch != null) {
+            if (ack != null) {
+                ack.retain();
+            }
+            MessageBatch.Batch full = batch.add(capture.topic(), mqttMessage, memo == null ? null : memo.format(), ack);
+            if (full != null) {
+                submit(full);
+            }
+            return;
+        }
+        if (ordered == null && executor == null) {
+            // 在分发线程中处理, 分发结束时才会确认
+            handle(index, capture, mqttMessage, memo);
+            return;
+        }
+        int key = ordered == null ? 0 : orderKey(index, capture);
+        TopicCapture copy = capture.copy();
+        if (ack == null) {
+            submit(key, () -> handle(index, copy, mqttMessage, memo), copy.topic());
+            return;
+        }
+        ack.retain();
+        boolean submitted = submit(key, () -> {
             try {
-                Object[] parameters = fillParameters(matched.get(), topic, mqttMessage);
-                handler.receive(parameters);
-            } catch (NullParameterException e) {
-                log.debug("message params error: {}", e.getMessage());
-            } catch (Exception e) {
-                log.error("message handler error: {}", e.getMessage(), e);
+                handle(index, copy, mqttMessage, memo);
+            } finally {
+                ack.release();
+            }
+        }, copy.topic());
+        if (!submitted) {
+            ack.release();
+        }
+    }
+
+    private void submit(MessageBatch.Batch batch) {
+        if (ordered == null && executor == null) {
+            handle(batch);
+        } else {
+            // 同一个订阅的批次在同一个通道中按顺序处理
+            if (!submit(System.identityHashCode(this), () -> handle(batch), batch.topics().get(0))) {
+                batch.release();
+            }
+        }
+    }
+
+    private boolean submit(int key, Runnable task, String topic) {
+        try {
+            if (ordered != null) {
+                ordered.execute(key, task);
+            } else {
+                executor.execute(task);
+            }
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("message handler rejected, topic is '{}': {}", topic, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 排序的 key, orderBy 参数值的 hash, 主题中没有该参数时为主题的 hash.
+     */
+    private int orderKey(int index, TopicCapture capture) {
+        int slot = orderSlots != null && index < orderSlots.length ? orderSlots[index] : -1;
+        String topic = capture.topic();
+        int start = slot < 0 ? 0 : capture.start(slot);
+        int end = slot < 0 ? topic.length() : capture.end(slot);
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + topic.charAt(i);
+        }
+        return h;
+    }
+
+    private void handle(int index, TopicCapture capture, MqttMessage mqttMessage, PayloadMemo memo) {
+        try {
+            PrimitivePayload primitive = this.primitive;
+            if (primitive != null && primitive.receive(mqttMessage, memo)) {
+                return;
+            }
+            Object[] parameters = fillParameters(index, capture, mqttMessage, memo);
+            handler.receive(parameters);
+        } catch (NullParameterException e) {
+            log.debug("message params error: {}", e.getMessage());
+        } catch (Exception e) {
+            log.error("message handler error: {}", e.getMessage(), e);
+        }
+    }
+
+    private void handle(MessageBatch.Batch batch) {
+        try {
+            BatchParameterBinder[] binders = this.batchBinders;
+            Object[] parameters = new Object[binders.length];
+            for (int i = 0; i < binders.length; i++) {
+                parameters[i] = binders[i].bind(batch);
+            }
+            handler.receive(parameters);
+        } catch (Exception e) {
+            log.error("message handler error: {}", e.getMessage(), e);
+        } finally {
+            batch.release();
+        }
+    }
+
+    /**
+     * 处理还未满的一批消息, 关闭时调用.
+     */
+    public void flush() {
+        MessageBatch batch = this.batch;
+        if (batch != null) {
+            MessageBatch.Batch rest = batch.drain();
+            if (rest != null) {
+                submit(rest);
             }
         }
     }
@@ -44,12 +179,19 @@ public class MqttSubscriber {
     private String[] clientIds;
     private IMessageHandler handler;
     private LinkedList<ParameterModel> parameters;
+    private ParameterBinder[] binders;
+    private PrimitivePayload primitive;
+    private Executor executor;
+    private OrderedExecutor ordered;
+    private int[] orderSlots;
+    private MessageBatch batch;
+    private BatchParameterBinder[] batchBinders;
 
     private final LinkedList<TopicPair> topics = new LinkedList<>();
 
     public static MqttSubscriber of(SubscriberModel subscribe, Object bean, Method method) {
         LinkedList<ParameterModel> parameters = ParameterModel.of(method);
-        IMessageHandler handler = (params) -> method.invoke(bean, params);
+        IMessageHandler handler = MethodInvoker.of(bean, method);
         return of(subscribe, parameters, handler);
     }
 
@@ -114,8 +256,7 @@ public class MqttSubscriber {
     }
 
     private Optional<TopicPair> matched(final String clientId, final String topic) {
-        if (clientIds == null || clientIds.length == 0
-                || Arrays.binarySearch(clientIds, clientId) >= 0) {
+        if (containsClientId(clientId)) {
             return topics.stream()
                     .filter(pair -> pair.isMatched(topic))
                     .findFirst();
@@ -123,46 +264,66 @@ public class MqttSubscriber {
         return Optional.empty();
     }
 
-    private Object[] fillParameters(TopicPair topicPair, String topic, MqttMessage mqttMessage) {
-        HashMap<String, String> pathValueMap = topicPair.getPathValueMap(topic);
-        LinkedList<Object> objects = new LinkedList<>();
-        for (ParameterModel parameter : parameters) {
-            Class<?> target = parameter.getType();
-            String name = parameter.getName();
-            LinkedList<Converter<Object, Object>> converters = parameter.getConverters();
-            Object value = null;
-            if (target == MqttMessage.class) {
-                value = mqttMessage;
-            } else if (parameter.isPayload() && mqttMessage != null) {
-                value = MqttConversionService.getSharedInstance().fromBytes(mqttMessage.getPayload(), target, converters);
-            } else if (name != null) {
-                if (pathValueMap.containsKey(name)) {
-                    value = fromTopic(pathValueMap.get(name), target);
-                }
-            } else if (target == String.class) {
-                value = topic;
-            } else if (target.getClassLoader() != null && mqttMessage != null) {
-                value = MqttConversionService.getSharedInstance().fromBytes(mqttMessage.getPayload(), target, converters);
+    private Object[] fillParameters(int index, TopicCapture capture, MqttMessage mqttMessage, PayloadMemo memo) {
+        ParameterBinder[] binders = this.binders;
+        Object[] values = new Object[binders.length];
+        for (int i = 0; i < binders.length; i++) {
+            values[i] = binders[i].resolve(index, capture, mqttMessage, memo);
+        }
+        return values;
+    }
+
+    /**
+     * 设置消息处理方式.
+     *
+     * @param executors 处理方式
+     * @see com.github.tocrhz.mqtt.annotation.MqttSubscribe#executor()
+     */
+    public void resolveExecutor(MessageExecutors executors) {
+        String orderBy = subscribe.orderBy();
+        String type = StringUtils.hasText(orderBy) && !StringUtils.hasText(subscribe.executor())
+                ? MessageExecutors.ORDERED : executors.resolve(subscribe.executor());
+        if (MessageExecutors.ORDERED.equals(type)) {
+            this.ordered = executors.ordered();
+            this.executor = null;
+            this.orderSlots = new int[topics.size()];
+            int i = 0;
+            for (TopicPair topic : topics) {
+                orderSlots[i++] = StringUtils.hasText(orderBy) ? topic.indexOf(orderBy) : -1;
+            }
+        } else {
+            if (StringUtils.hasText(orderBy)) {
+                log.warn("orderBy '{}' is ignored, executor is '{}' not '{}'.", orderBy, type, MessageExecutors.ORDERED);
             }
-            if (value == null) {
-                if (parameter.isRequired()) {
-                    throw new NullParameterException(parameter);
+            this.ordered = null;
+            this.executor = executors.get(type);
+        }
+        if (subscribe.batchSize() > 1) {
+            this.batchBinders = BatchParameterBinder.of(parameters);
+            for (BatchParameterBinder binder : batchBinders) {
+                if (!binder.isBatch()) {
+                    log.warn("parameter of batch subscriber '{}' is not a List, it always gets the default value.", binder.parameter.getType().getName());
                 }
-                value = parameter.getDefaultValue();
             }
-            objects.add(value);
+            long lingerMs = subscribe.lingerMs();
+            if (lingerMs <= 0) {
+                // 没有超时的话, 未满的一批消息会一直等待
+                log.warn("lingerMs {} of batch subscriber is not positive, use {} ms.", lingerMs, MessageBatch.DEFAULT_LINGER_MS);
+                lingerMs = MessageBatch.DEFAULT_LINGER_MS;
+            }
+            this.batch = new MessageBatch(subscribe.batchSize(), lingerMs, executors.scheduler(), this::submit);
         }
-        return objects.toArray();
     }
 
-    private Object fromTopic(String value, Class<?> target) {
-        if (MqttConversionService.getSharedInstance()
-                .canConvert(String.class, target)) {
-            return MqttConversionService.getSharedInstance().convert(value, target);
-        } else {
-            log.warn("Unsupported covert from {} to {}", String.class.getName(), target.getName());
-            return null;
-        }
+    /**
+     * 是否在处理完成后才确认消息
+     *
+     * @param clientAckMode 客户端的确认方式
+     * @return boolean
+     */
+    public boolean holdsAck(AckMode clientAckMode) {
+        AckMode mode = subscribe.ackMode();
+        return mode == AckMode.MANUAL || (mode == AckMode.DEFAULT && clientAckMode == AckMode.MANUAL);
     }
 
     public LinkedList<TopicPair> getTopics() {
@@ -213,5 +374,7 @@ public class MqttSubscriber {
                 .forEach(param -> paramTypeMap.put(param.getName(), param.getType()));
         this.clientIds = subscribe.clients();
         this.setTopics(subscribe, paramTypeMap);
+        this.binders = ParameterBinder.of(this.parameters, this.topics);
+        this.primitive = PrimitivePayload.of(this.handler, this.parameters);
     }
 }
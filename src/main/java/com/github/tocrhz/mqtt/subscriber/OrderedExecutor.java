@@ -0,0 +1,142 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks on N single-threaded lanes chosen by key.
+ * <p>
+ * Tasks with the same key always run on the same lane, so they keep the submission order,
+ * while different keys are processed in parallel. When a lane is full the submitter waits.
+ */
+public class OrderedExecutor {
+    private final static Logger log = LoggerFactory.getLogger(OrderedExecutor.class);
+    private final static Runnable STOP = () -> {
+    };
+
+    private final Lane[] lanes;
+    private volatile boolean shutdown;
+
+    public OrderedExecutor(int lanes, int queueCapacity) {
+        this.lanes = new Lane[Math.max(1, lanes)];
+        for (int i = 0; i < this.lanes.length; i++) {
+            this.lanes[i] = new Lane("mqtt-lane-" + (i + 1), Math.max(1, queueCapacity));
+        }
+    }
+
+    /**
+     * 提交任务, 相同 key 的任务按提交顺序执行, 队列满时等待.
+     *
+     * @param key  排序的 key, 一般为主题参数或主题的 hash
+     * @param task 任务
+     * @throws RejectedExecutionException 已关闭或等待时被中断
+     */
+    public void execute(int key, Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("ordered executor has been shutdown.");
+        }
+        int h = key ^ (key >>> 16);
+        Lane lane = lanes[(h & 0x7fffffff) % lanes.length];
+        try {
+            lane.queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("interrupted while waiting for lane '" + lane.thread.getName() + "'.", e);
+        }
+    }
+
+    /**
+     * 通道数量
+     *
+     * @return int
+     */
+    public int size() {
+        return lanes.length;
+    }
+
+    /**
+     * 每个通道中等待执行的任务数量
+     *
+     * @return int[]
+     */
+    public int[] backlog() {
+        int[] backlog = new int[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            backlog[i] = lanes[i].queue.size();
+        }
+        return backlog;
+    }
+
+    /**
+     * 关闭, 等待已提交的任务执行完成.
+     *
+     * @param timeout 最长等待时间(毫秒)
+     */
+    public void shutdown(long timeout) {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        for (Lane lane : lanes) {
+            try {
+                long wait = deadline - System.nanoTime();
+                if (wait <= 0 || !lane.queue.offer(STOP, wait, TimeUnit.NANOSECONDS)) {
+                    lane.thread.interrupt();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lane.thread.interrupt();
+            }
+        }
+        for (Lane lane : lanes) {
+            try {
+                lane.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+                if (lane.thread.isAlive()) {
+                    log.warn("mqtt lane '{}' not finished in {} ms, {} tasks dropped.", lane.thread.getName(), timeout, lane.queue.size());
+                    lane.thread.interrupt();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static final class Lane implements Runnable {
+        private final BlockingQueue<Runnable> queue;
+        private final Thread thread;
+
+        private Lane(String name, int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (task == STOP) {
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (Throwable throwable) {
+                    log.error("mqtt lane task error: {}", throwable.getMessage(), throwable);
+                }
+            }
+        }
+    }
+}
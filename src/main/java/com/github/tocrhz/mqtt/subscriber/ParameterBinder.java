@@ -0,0 +1,230 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import com.github.tocrhz.mqtt.convert.MqttConversionService;
+import com.github.tocrhz.mqtt.exception.NullParameterException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.convert.converter.Converter;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Resolves one handler parameter from the received message.
+ * <p>
+ * Binders are compiled once per subscriber in {@link MqttSubscriber#resolveEmbeddedValue}, with the parameter kind
+ * and converters already decided, so the message path only fills the parameter array.
+ */
+abstract class ParameterBinder {
+    private final static Logger log = LoggerFactory.getLogger(ParameterBinder.class);
+
+    protected final ParameterModel parameter;
+
+    ParameterBinder(ParameterModel parameter) {
+        this.parameter = parameter;
+    }
+
+    /**
+     * 为处理方法的每个参数创建绑定方式, 判断顺序与参数说明一致.
+     *
+     * @param parameters 处理方法的参数
+     * @param topics     订阅的主题, 参数名在各主题中的位置不同
+     * @return ParameterBinder[]
+     */
+    static ParameterBinder[] of(List<ParameterModel> parameters, List<TopicPair> topics) {
+        ParameterBinder[] binders = new ParameterBinder[parameters.size()];
+        int i = 0;
+        for (ParameterModel parameter : parameters) {
+            binders[i++] = of(parameter, topics);
+        }
+        return binders;
+    }
+
+    private static ParameterBinder of(ParameterModel parameter, List<TopicPair> topics) {
+        Class<?> target = parameter.getType();
+        if (target == MqttMessage.class) {
+            return new MessageBinder(parameter);
+        } else if ((target == Stream.class || target == Iterator.class) && parameter.getElementType() != null
+                && parameter.getName() == null) {
+            return new ElementsBinder(parameter);
+        } else if (parameter.isPayload()) {
+            return new PayloadBinder(parameter);
+        } else if (parameter.getName() != null) {
+            return new PathValueBinder(parameter, topics);
+        } else if (target == String.class) {
+            return new TopicBinder(parameter);
+        } else if (target.getClassLoader() != null) {
+            return new PayloadBinder(parameter);
+        } else {
+            return new DefaultValueBinder(parameter);
+        }
+    }
+
+    /**
+     * 绑定参数值, 为 null 时使用默认值.
+     *
+     * @param index   匹配到的主题在订阅主题中的位置
+     * @param capture 匹配时捕获的主题参数
+     * @param message 消息内容
+     * @param memo    同一条消息已转换的内容, 可为 null
+     * @return 参数值
+     * @throws NullParameterException 必填参数为 null
+     */
+    final Object resolve(int index, TopicCapture capture, MqttMessage message, PayloadMemo memo) {
+        Object value = bind(index, capture, message, memo);
+        if (value == null) {
+            if (parameter.isRequired()) {
+                throw new NullParameterException(parameter);
+            }
+            value = parameter.getDefaultValue();
+        }
+        return value;
+    }
+
+    abstract Object bind(int index, TopicCapture capture, MqttMessage message, PayloadMemo memo);
+
+    private static final class MessageBinder extends ParameterBinder {
+        private MessageBinder(ParameterModel parameter) {
+            super(parameter);
+        }
+
+        @Override
+        Object bind(int index, TopicCapture capture, MqttMessage message, PayloadMemo memo) {
+            return message;
+        }
+    }
+
+    private static final class TopicBinder extends ParameterBinder {
+        private TopicBinder(ParameterModel parameter) {
+            super(parameter);
+        }
+
+        @Override
+        Object bind(int index, TopicCapture capture, MqttMessage message, PayloadMemo memo) {
+            return capture.topic();
+        }
+    }
+
+    private static final class DefaultValueBinder extends ParameterBinder {
+        private DefaultValueBinder(ParameterModel parameter) {
+            super(parameter);
+        }
+
+        @Override
+        Object bind(int index, TopicCapture capture, MqttMessage message, PayloadMemo memo) {
+            return null;
+        }
+    }
+
+    private static final class PayloadBinder extends ParameterBinder {
+        private final Class<?> target;
+        private final LinkedList<Converter<Object, Object>> converters;
+        // 为 null 时不共用转换结果
+        private final Object memoKey;
+        // 为 null 时使用客户端的默认格式
+        private final String format;
+
+        private PayloadBinder(ParameterModel parameter) {
+            super(parameter);
+            this.target = parameter.getType();
+            this.converters = parameter.getConverters();
+            this.memoKey = parameter.isShared() ? PayloadMemo.key(target, converters) : null;
+            this.format = parameter.getFormat();
+        }
+
+        @Override
+        Object bind(int index, TopicCapture capture, MqttMessage message, PayloadMemo memo) {
+            if (message == null) {
+                return null;
+            }
+            String format = this.format != null || memo == null ? this.format : memo.format();
+            if (memo == null || memoKey == null) {
+                return convert(message, format);
+            }
+            return memo.computeIfAbsent(memoKey, format, () -> convert(message, format));
+        }
+
+        private Object convert(MqttMessage message, String format) {
+            return MqttConversionService.getSharedInstance().fromBytes(message.getPayload(), target, converters, format);
+        }
+    }
+
+    /**
+     * 消息内容为数组时, 绑定为 Stream&lt;T&gt; 或 Iterator&lt;T&gt;, 处理方法迭代时才解析下一个元素.
+     * 只能迭代一次, 所以不共用转换结果.
+     */
+    private static final class ElementsBinder extends ParameterBinder {
+        private final Class<?> element;
+        private final LinkedList<Converter<Object, Object>> converters;
+        private final String format;
+        private final boolean stream;
+
+        private ElementsBinder(ParameterModel parameter) {
+            super(parameter);
+            this.element = parameter.getElementType();
+            this.converters = parameter.getConverters();
+            this.format = parameter.getFormat();
+            this.stream = parameter.getType() == Stream.class;
+        }
+
+        @Override
+        Object bind(int index, TopicCapture capture, MqttMessage message, PayloadMemo memo) {
+            if (message == null) {
+                return null;
+            }
+            String format = this.format != null || memo == null ? this.format : memo.format();
+            Iterator<?> iterator = MqttConversionService.getSharedInstance()
+                    .fromBytesElements(message.getPayload(), element, converters, format);
+            if (iterator == null || !stream) {
+                return iterator;
+            }
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+        }
+    }
+
+    private static final class PathValueBinder extends ParameterBinder {
+        // 参数在每个订阅主题中的位置, -1 表示该主题中没有这个参数
+        private final int[] slots;
+        private volatile Converter<Object, Object> converter;
+        private volatile boolean resolved;
+
+        private PathValueBinder(ParameterModel parameter, List<TopicPair> topics) {
+            super(parameter);
+            this.slots = new int[topics.size()];
+            int i = 0;
+            for (TopicPair topic : topics) {
+                slots[i++] = topic.indexOf(parameter.getName());
+            }
+            this.converter = MqttConversionService.getSharedInstance().findConverter(String.class, parameter.getType());
+            // 此时转换类可能还未全部注册, 找不到的话收到第一条消息时再找一次
+            this.resolved = converter != null;
+        }
+
+        @Override
+        Object bind(int index, TopicCapture capture, MqttMessage message, PayloadMemo memo) {
+            int slot = index < slots.length ? slots[index] : -1;
+            if (slot < 0) {
+                return null;
+            }
+            Converter<Object, Object> converter = this.converter;
+            if (!resolved) {
+                converter = MqttConversionService.getSharedInstance().findConverter(String.class, parameter.getType());
+                if (converter == null) {
+                    log.warn("Unsupported covert from {} to {}", String.class.getName(), parameter.getType().getName());
+                }
+                this.converter = converter;
+                this.resolved = true;
+            }
+            if (converter == null) {
+                return null;
+            }
+            return converter.convert(capture.value(slot));
+        }
+    }
+}
@@ -8,6 +8,8 @@ import org.springframework.core.convert.converter.Converter;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.LinkedList;
 
 /**
@@ -19,7 +21,13 @@ public final class ParameterModel {
     // 是否是消息内容, 若参数为String类型, 并且不是消息内容, 则赋值 topic.
     private boolean payload;
     private boolean required;
+    // 多个订阅者匹配同一条消息时, 是否共用转换后的消息内容
+    private boolean shared = true;
+    // 消息格式, 为 null 时使用客户端的默认格式
+    private String format;
     private Class<?> type;
+    // 参数为 List&lt;T&gt;, Stream&lt;T&gt;, Iterator&lt;T&gt; 时, T 的类型
+    private Class<?> elementType;
     private String name;
     private Object defaultValue;
     private LinkedList<Converter<Object, Object>> converters;
@@ -30,12 +38,14 @@ public final class ParameterModel {
     public static LinkedList<ParameterModel> of(Method method) {
         LinkedList<ParameterModel> parameters = new LinkedList<>();
         Class<?>[] parameterTypes = method.getParameterTypes();
+        Type[] genericTypes = method.getGenericParameterTypes();
         Annotation[][] parameterAnnotations = method.getParameterAnnotations();
         for (int i = 0; i < parameterTypes.length; i++) {
             ParameterModel model = new ParameterModel();
             parameters.add(model);
             model.type = parameterTypes[i];
             model.defaultValue = defaultValue(model.type);
+            model.elementType = elementType(genericTypes.length == parameterTypes.length ? genericTypes[i] : null);
             Annotation[] annotations = parameterAnnotations[i];
             if (annotations != null) {
                 for (Annotation annotation : annotations) {
@@ -49,6 +59,8 @@ public final class ParameterModel {
                         model.payload = true;
                         model.required = model.required || payload.required();
                         model.converters = toConverters(payload.value());
+                        model.shared = payload.shared();
+                        model.format = payload.format().isEmpty() ? null : payload.format();
                     }
                 }
             }
@@ -81,10 +93,22 @@ public final class ParameterModel {
         return required;
     }
 
+    public boolean isShared() {
+        return shared;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
     public Class<?> getType() {
         return type;
     }
 
+    public Class<?> getElementType() {
+        return elementType;
+    }
+
     public String getName() {
         return name;
     }
@@ -97,6 +121,22 @@ public final class ParameterModel {
         return defaultValue;
     }
 
+    private static Class<?> elementType(Type type) {
+        if (type instanceof ParameterizedType parameterized) {
+            Type[] arguments = parameterized.getActualTypeArguments();
+            if (arguments.length == 1) {
+                Type argument = arguments[0];
+                if (argument instanceof ParameterizedType nested) {
+                    argument = nested.getRawType();
+                }
+                if (argument instanceof Class<?> element) {
+                    return element;
+                }
+            }
+        }
+        return null;
+    }
+
     private static Object defaultValue(Class<?> type) {
         if (type.isPrimitive()) {
             if (type == boolean.class) {
@@ -0,0 +1,89 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import org.springframework.core.convert.converter.Converter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Decoded payloads of one message, shared by the subscribers it is dispatched to.
+ * <p>
+ * Created by {@link TopicTrie#dispatch} when a message matches more than one subscriber, so the same payload
+ * is converted once per (target type, converter chain, format) instead of once per subscriber.
+ * It also carries the default payload format of the client that received the message.
+ *
+ * @see com.github.tocrhz.mqtt.annotation.Payload#shared()
+ */
+final class PayloadMemo {
+    private final static ConcurrentHashMap<Key, Key> KEYS = new ConcurrentHashMap<>();
+
+    private final String format;
+    private Object[] keys = new Object[2];
+    private String[] formats = new String[2];
+    private Object[] values = new Object[2];
+    private int size;
+
+    PayloadMemo(String format) {
+        this.format = format;
+    }
+
+    /**
+     * 客户端默认的消息格式
+     *
+     * @return String, 可为 null
+     */
+    String format() {
+        return format;
+    }
+
+    /**
+     * 转换方式的唯一标识, 相同的目标类型和转换链返回同一个对象.
+     *
+     * @param target     目标类型
+     * @param converters 注解中的转换链
+     * @return key
+     */
+    static Object key(Class<?> target, List<Converter<Object, Object>> converters) {
+        List<Class<?>> chain = new ArrayList<>();
+        if (converters != null) {
+            for (Converter<Object, Object> converter : converters) {
+                chain.add(converter.getClass());
+            }
+        }
+        Key key = new Key(target, List.copyOf(chain));
+        return KEYS.computeIfAbsent(key, k -> k);
+    }
+
+    /**
+     * 获取已转换的值, 没有则转换并保存, 转换结果为 null 也会保存.
+     *
+     * @param key     {@link #key(Class, List)}
+     * @param format  消息格式, 可为 null
+     * @param convert 转换方法
+     * @return 转换后的值
+     */
+    synchronized Object computeIfAbsent(Object key, String format, Supplier<Object> convert) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key && Objects.equals(formats[i], format)) {
+                return values[i];
+            }
+        }
+        Object value = convert.get();
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            formats = Arrays.copyOf(formats, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        keys[size] = key;
+        formats[size] = format;
+        values[size++] = value;
+        return value;
+    }
+
+    private record Key(Class<?> target, List<Class<?>> converters) {
+    }
+}
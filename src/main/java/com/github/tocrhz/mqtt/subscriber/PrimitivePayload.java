@@ -0,0 +1,79 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import com.github.tocrhz.mqtt.convert.MqttConversionService;
+import com.github.tocrhz.mqtt.convert.other.ByteArrayParsers;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import java.util.List;
+
+/**
+ * Calls a handler with a single {@code @Payload int/long/double} parameter without boxing,
+ * parsing the payload with {@link ByteArrayParsers} directly.
+ * <p>
+ * Only used while the built-in converter of the type is not replaced by the user.
+ */
+final class PrimitivePayload {
+    private final MethodInvoker invoker;
+    private final Class<?> type;
+
+    private PrimitivePayload(MethodInvoker invoker, Class<?> type) {
+        this.invoker = invoker;
+        this.type = type;
+    }
+
+    /**
+     * @return 不满足条件时为 null
+     */
+    static PrimitivePayload of(IMessageHandler handler, List<ParameterModel> parameters) {
+        if (handler instanceof MethodInvoker invoker && invoker.primitiveType() != null && parameters.size() == 1) {
+            ParameterModel parameter = parameters.get(0);
+            if (parameter.isPayload() && parameter.getFormat() == null
+                    && (parameter.getConverters() == null || parameter.getConverters().isEmpty())) {
+                return new PrimitivePayload(invoker, invoker.primitiveType());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析并调用处理方法.
+     *
+     * @param message 消息
+     * @param memo    客户端设置了默认格式时不为 null
+     * @return 内置转换类已被替换, 客户端设置了默认格式, 或者无法解析时返回 false, 由调用者按普通方式处理
+     * @throws Exception 处理方法抛出的异常
+     */
+    boolean receive(MqttMessage message, PayloadMemo memo) throws Exception {
+        if ((memo != null && memo.format() != null) || !MqttConversionService.getSharedInstance().isBuiltinParser(type)) {
+            return false;
+        }
+        byte[] payload = message.getPayload();
+        // 只捕获解析的异常, 处理方法抛出的异常交给调用者
+        if (type == int.class) {
+            int value;
+            try {
+                value = ByteArrayParsers.parseInt(payload);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            invoker.receiveInt(value);
+        } else if (type == long.class) {
+            long value;
+            try {
+                value = ByteArrayParsers.parseLong(payload);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            invoker.receiveLong(value);
+        } else {
+            double value;
+            try {
+                value = ByteArrayParsers.parseDouble(payload);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            invoker.receiveDouble(value);
+        }
+        return true;
+    }
+}
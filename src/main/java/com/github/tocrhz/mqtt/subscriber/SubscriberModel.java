@@ -2,15 +2,32 @@ package com.github.tocrhz.mqtt.subscriber;
 
 import com.github.tocrhz.mqtt.annotation.MqttSubscribe;
 
-public record SubscriberModel(String[] value, int[] qos, String[] clients, String[] groups) {
-    public SubscriberModel(String[] value, int[] qos, String[] clients, String[] groups) {
+public record SubscriberModel(String[] value, int[] qos, String[] clients, String[] groups, String executor, String orderBy,
+                              int batchSize, long lingerMs, AckMode ackMode) {
+    public SubscriberModel(String[] value, int[] qos, String[] clients, String[] groups, String executor, String orderBy,
+                           int batchSize, long lingerMs, AckMode ackMode) {
         this.value = value == null ? new String[0] : value;
         this.qos = qos == null ? new int[0] : qos;
         this.clients = clients == null ? new String[0] : clients;
         this.groups = groups == null ? new String[0] : groups;
+        this.executor = executor == null ? "" : executor;
+        this.orderBy = orderBy == null ? "" : orderBy;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerMs = lingerMs;
+        this.ackMode = ackMode == null ? AckMode.DEFAULT : ackMode;
+    }
+
+    public SubscriberModel(String[] value, int[] qos, String[] clients, String[] groups, String executor, String orderBy,
+                           int batchSize, long lingerMs) {
+        this(value, qos, clients, groups, executor, orderBy, batchSize, lingerMs, null);
+    }
+
+    public SubscriberModel(String[] value, int[] qos, String[] clients, String[] groups) {
+        this(value, qos, clients, groups, null, null, 1, 0);
     }
 
     public static SubscriberModel of(MqttSubscribe subscribe) {
-        return new SubscriberModel(subscribe.value(), subscribe.qos(), subscribe.clients(), subscribe.groups());
+        return new SubscriberModel(subscribe.value(), subscribe.qos(), subscribe.clients(), subscribe.groups(), subscribe.executor(), subscribe.orderBy(),
+                subscribe.batchSize(), subscribe.lingerMs(), subscribe.ackMode());
     }
 }
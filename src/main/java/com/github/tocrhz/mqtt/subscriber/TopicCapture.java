@@ -0,0 +1,78 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import java.util.Arrays;
+
+/**
+ * Path values captured by {@link TopicPair#match(String, TopicCapture)}.
+ * <p>
+ * Only offsets into the topic are recorded, values are materialized on demand.
+ * One instance per thread is reused for every message, so it must not be kept after the dispatch, use {@link #copy()}.
+ */
+public final class TopicCapture {
+    private final static ThreadLocal<TopicCapture> LOCAL = ThreadLocal.withInitial(TopicCapture::new);
+
+    private String topic;
+    private int[] starts = new int[4];
+    private int[] ends = new int[4];
+    private int count;
+
+    TopicCapture() {
+    }
+
+    /**
+     * 当前线程复用的捕获结果
+     *
+     * @return TopicCapture
+     */
+    public static TopicCapture local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * 复制一份, 用于在其他线程中处理消息.
+     *
+     * @return TopicCapture
+     */
+    public TopicCapture copy() {
+        TopicCapture copy = new TopicCapture();
+        copy.topic = topic;
+        copy.count = count;
+        copy.starts = Arrays.copyOf(starts, Math.max(count, 1));
+        copy.ends = Arrays.copyOf(ends, Math.max(count, 1));
+        return copy;
+    }
+
+    void reset(String topic, int count) {
+        this.topic = topic;
+        this.count = count;
+        if (starts.length < count) {
+            starts = Arrays.copyOf(starts, count);
+            ends = Arrays.copyOf(ends, count);
+        }
+    }
+
+    void set(int slot, int start, int end) {
+        starts[slot] = start;
+        ends[slot] = end;
+    }
+
+    public String topic() {
+        return topic;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int start(int slot) {
+        return starts[slot];
+    }
+
+    public int end(int slot) {
+        return ends[slot];
+    }
+
+    public String value(int slot) {
+        return topic.substring(starts[slot], ends[slot]);
+    }
+}
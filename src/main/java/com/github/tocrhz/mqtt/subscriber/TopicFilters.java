@@ -0,0 +1,103 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Removes topic filters that are covered by another filter of the same share group with the same or a higher QOS,
+ * e.g. 'a/b/c' is dropped when 'a/+/c' or 'a/#' is subscribed.
+ * <p>
+ * The filters of each group are put into a trie of levels, a filter is covered when a different path through
+ * literal, '+' and '#' nodes reaches a filter with enough QOS. Per the MQTT spec a wildcard first level does not
+ * cover topics starting with '$'.
+ */
+public final class TopicFilters {
+
+    private TopicFilters() {
+    }
+
+    /**
+     * 去掉被其它主题包含的主题, 相同的主题保留 qos 最高的
+     *
+     * @param pairs        订阅的主题
+     * @param enableShared 是否启用共享订阅, 不同分组的主题互不包含
+     * @return 剩下的主题, 保持原来的顺序
+     */
+    public static LinkedHashSet<TopicPair> minimize(Iterable<TopicPair> pairs, boolean enableShared) {
+        // 相同的主题保留 qos 最高的
+        LinkedHashMap<String, TopicPair> unique = new LinkedHashMap<>();
+        for (TopicPair pair : pairs) {
+            unique.merge(pair.getTopic(enableShared), pair, (a, b) -> b.getQos() > a.getQos() ? b : a);
+        }
+        // 按分组建立索引
+        HashMap<String, Node> roots = new HashMap<>();
+        List<String[]> levels = new ArrayList<>(unique.size());
+        List<String> groups = new ArrayList<>(unique.size());
+        for (Map.Entry<String, TopicPair> entry : unique.entrySet()) {
+            TopicPair pair = entry.getValue();
+            String filter = entry.getKey();
+            String group = "";
+            if (!filter.equals(pair.getTopic(false))) {
+                group = filter.substring(0, filter.length() - pair.getTopic(false).length());
+            }
+            String[] split = pair.getTopic(false).split("/", -1);
+            Node node = roots.computeIfAbsent(group, key -> new Node());
+            for (String level : split) {
+                node = node.children.computeIfAbsent(level, key -> new Node());
+            }
+            node.qos = Math.max(node.qos, pair.getQos());
+            levels.add(split);
+            groups.add(group);
+        }
+        LinkedHashSet<TopicPair> result = new LinkedHashSet<>();
+        int i = 0;
+        for (TopicPair pair : unique.values()) {
+            if (!covered(roots.get(groups.get(i)), levels.get(i), 0, pair.getQos(), true)) {
+                result.add(pair);
+            }
+            ++i;
+        }
+        return result;
+    }
+
+    /**
+     * @param exact 到这里的路径是否与主题本身完全相同
+     */
+    private static boolean covered(Node node, String[] levels, int i, int qos, boolean exact) {
+        // '#' 之前的部分为 $ 开头时, 首级的通配符不匹配
+        boolean dollar = i == 0 && levels[0].startsWith("$");
+        Node hash = node.children.get("#");
+        if (hash != null && hash.qos >= qos && !dollar
+                && !(exact && i == levels.length - 1 && "#".equals(levels[i]))) {
+            // 'a/#' 也包含 'a'
+            return true;
+        }
+        if (i == levels.length) {
+            return node.qos >= qos && !exact;
+        }
+        String level = levels[i];
+        if ("#".equals(level)) {
+            // 只有 '#' 包含 '#'
+            return false;
+        }
+        Node child = node.children.get(level);
+        if (child != null && covered(child, levels, i + 1, qos, exact)) {
+            return true;
+        }
+        if (!"+".equals(level) && !dollar) {
+            Node plus = node.children.get("+");
+            return plus != null && covered(plus, levels, i + 1, qos, false);
+        }
+        return false;
+    }
+
+    private static final class Node {
+        private final HashMap<String, Node> children = new HashMap<>(4);
+        // 以此结尾的主题的 qos, 没有时为 -1
+        private int qos = -1;
+    }
+}
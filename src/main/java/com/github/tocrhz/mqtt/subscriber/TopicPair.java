@@ -10,8 +10,10 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * If {@link com.github.tocrhz.mqtt.annotation.NamedValue} is used, use regular matching,
- * if not, use {@link MqttTopic#isMatched(String, String)} matching
+ * Subscribed topic, compiled level by level.
+ * <p>
+ * Levels are matched as literal, '+', '#' or a template containing {@link com.github.tocrhz.mqtt.annotation.NamedValue}
+ * parameters, the parameters are captured while matching, see {@link #match(String, TopicCapture)}.
  *
  * @author tocrhz
  */
@@ -19,11 +21,10 @@ import java.util.regex.Pattern;
 public class TopicPair {
     private final static Pattern TO_PATTERN = Pattern.compile("\\{(\\w+)}");
     private final static Pattern TO_TOPIC = Pattern.compile("[^/]*\\{\\w+}[^/]*");
-    private final static String STRING_PARAM = "([^/]+)";
-    private final static String NUMBER_PARAM = "(\\\\d+(:?\\\\.\\\\d+)?)";
+    private final static TopicParam[] NO_PARAMS = new TopicParam[0];
 
     private String topic;
-    private Pattern pattern;
+    private Segment[] segments;
     private TopicParam[] params;
     private int qos;
     private String group;
@@ -37,10 +38,10 @@ public class TopicPair {
         Assert.isTrue(qos >= 0, "qos min value is 0");
         Assert.isTrue(qos <= 2, "qos max value is 2");
         TopicPair topicPair = new TopicPair();
+        LinkedList<TopicParam> params = new LinkedList<>();
+        topicPair.segments = toSegments(topic, params, paramTypeMap);
+        topicPair.params = params.isEmpty() ? NO_PARAMS : params.toArray(NO_PARAMS);
         if (topic.contains("{")) {
-            LinkedList<TopicParam> params = new LinkedList<>();
-            topicPair.pattern = toPattern(topic, params, paramTypeMap);
-            topicPair.params = params.toArray(new TopicParam[0]);
             topicPair.topic = TO_TOPIC.matcher(topic).replaceAll("+");
         } else {
             topicPair.topic = topic;
@@ -51,30 +52,39 @@ public class TopicPair {
         return topicPair;
     }
 
-    private static Pattern toPattern(String topic, LinkedList<TopicParam> params, HashMap<String, Class<?>> paramTypeMap) {
-        String pattern = replaceSymbols(topic);
-        Matcher matcher = TO_PATTERN.matcher(pattern);
-        StringBuilder builder = new StringBuilder("^");
-        int group = 1;
-        while (matcher.find()) {
-            String paramName = matcher.group(1);
-            params.add(new TopicParam(paramName, group));
-            if (paramTypeMap.containsKey(paramName)) {
-                Class<?> paramType = paramTypeMap.get(paramName);
-                if (Number.class.isAssignableFrom(paramType)) {
-                    matcher.appendReplacement(builder, NUMBER_PARAM);
-                    ++group;
+    private static Segment[] toSegments(String topic, LinkedList<TopicParam> params, HashMap<String, Class<?>> paramTypeMap) {
+        String[] levels = topic.split("/", -1);
+        Segment[] segments = new Segment[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            String level = levels[i];
+            if ("+".equals(level)) {
+                segments[i] = Segment.PLUS;
+            } else if ("#".equals(level)) {
+                segments[i] = Segment.HASH;
+            } else {
+                Matcher matcher = TO_PATTERN.matcher(level);
+                LinkedList<String> literals = new LinkedList<>();
+                LinkedList<Integer> slots = new LinkedList<>();
+                LinkedList<Boolean> numbers = new LinkedList<>();
+                int last = 0;
+                while (matcher.find()) {
+                    String paramName = matcher.group(1);
+                    literals.add(level.substring(last, matcher.start()));
+                    slots.add(params.size());
+                    Class<?> paramType = paramTypeMap.get(paramName);
+                    numbers.add(paramType != null && Number.class.isAssignableFrom(paramType));
+                    params.add(new TopicParam(paramName, params.size()));
+                    last = matcher.end();
+                }
+                if (slots.isEmpty()) {
+                    segments[i] = Segment.literal(level);
                 } else {
-                    matcher.appendReplacement(builder, STRING_PARAM);
+                    literals.add(level.substring(last));
+                    segments[i] = Segment.template(literals, slots, numbers);
                 }
-            } else {
-                matcher.appendReplacement(builder, STRING_PARAM);
             }
-            ++group;
         }
-        matcher.appendTail(builder);
-        builder.append("$");
-        return Pattern.compile(builder.toString());
+        return segments;
     }
 
     public String getTopic(boolean enableShare) {
@@ -90,22 +100,84 @@ public class TopicPair {
         return qos;
     }
 
+    /**
+     * 主题中是否包含 {name} 参数
+     *
+     * @return boolean
+     */
+    public boolean hasParams() {
+        return params.length > 0;
+    }
+
     public boolean isMatched(String topic) {
-        if (this.pattern != null) {
-            return pattern.matcher(topic).matches();
-        } else {
-            return MqttTopic.isMatched(this.topic, topic);
+        return match(topic, null);
+    }
+
+    /**
+     * 匹配主题, 同时将参数的位置写入 capture.
+     *
+     * @param topic   消息主题
+     * @param capture 参数捕获结果, 可以为 null
+     * @return 是否匹配
+     */
+    public boolean match(String topic, TopicCapture capture) {
+        if (capture != null) {
+            capture.reset(topic, params.length);
+        }
+        int start = 0;
+        for (Segment segment : segments) {
+            if (segment.kind == Segment.HASH_KIND) {
+                // '#' 匹配剩余的所有层级, 包括父级本身
+                return true;
+            }
+            if (start < 0) {
+                return false;
+            }
+            int end = topic.indexOf('/', start);
+            int next = end + 1;
+            if (end < 0) {
+                end = topic.length();
+                next = -1;
+            }
+            if (!segment.matches(topic, start, end, capture)) {
+                return false;
+            }
+            start = next;
+        }
+        return start < 0;
+    }
+
+    /**
+     * 参数在捕获结果中的位置.
+     *
+     * @param name 参数名
+     * @return 位置, 不存在则为 -1
+     */
+    public int indexOf(String name) {
+        for (TopicParam param : params) {
+            if (param.getName().equals(name)) {
+                return param.getAt();
+            }
         }
+        return -1;
     }
 
+    /**
+     * 主题中的参数值, 兼容原来的接口.
+     * <p>
+     * 每次调用都会创建 HashMap 和 String, 较慢, 消息处理中不使用,
+     * 应使用 {@link #match(String, TopicCapture)} 和 {@link #indexOf(String)}.
+     *
+     * @param topic 消息主题
+     * @return 参数名和值, 不匹配时为空
+     */
     public HashMap<String, String> getPathValueMap(String topic) {
         HashMap<String, String> map = new HashMap<>();
-        if (pattern != null) {
-            Matcher matcher = pattern.matcher(topic);
-            if (matcher.find()) {
+        if (params.length > 0) {
+            TopicCapture capture = new TopicCapture();
+            if (match(topic, capture)) {
                 for (TopicParam param : params) {
-                    String group = matcher.group(param.getAt());
-                    map.put(param.getName(), group);
+                    map.put(param.getName(), capture.value(param.getAt()));
                 }
             }
         }
@@ -126,37 +198,124 @@ public class TopicPair {
     }
 
     public int order() {
-        return this.pattern == null ? 1 : -params.length;
+        return params.length == 0 ? 1 : -params.length;
     }
 
-    private static String replaceSymbols(String topic) {
-        StringBuilder sb = new StringBuilder();
-        char[] chars = topic.toCharArray();
-        for (char ch : chars) {
-            switch (ch) {
-                case '$':
-                case '^':
-                case '.':
-                case '?':
-                case '*':
-                case '|':
-                case '(':
-                case ')':
-                case '[':
-                case ']':
-                case '\\':
-                    sb.append('\\').append(ch);
-                    break;
-                case '+':
-                    sb.append("[^/]+");
-                    break;
-                case '#':
-                    sb.append(".*");
-                    break;
+    /**
+     * 主题中的一个层级
+     */
+    private static final class Segment {
+        private final static int LITERAL_KIND = 0;
+        private final static int PLUS_KIND = 1;
+        private final static int HASH_KIND = 2;
+        private final static int TEMPLATE_KIND = 3;
+        private final static Segment PLUS = new Segment(PLUS_KIND, null, null, null);
+        private final static Segment HASH = new Segment(HASH_KIND, null, null, null);
+
+        private final int kind;
+        // 模板中参数之间的字符, 比参数多一个(前缀和后缀)
+        private final String[] literals;
+        private final int[] slots;
+        private final boolean[] numbers;
+
+        private Segment(int kind, String[] literals, int[] slots, boolean[] numbers) {
+            this.kind = kind;
+            this.literals = literals;
+            this.slots = slots;
+            this.numbers = numbers;
+        }
+
+        private static Segment literal(String level) {
+            return new Segment(LITERAL_KIND, new String[]{level}, null, null);
+        }
+
+        private static Segment template(LinkedList<String> literals, LinkedList<Integer> slots, LinkedList<Boolean> numbers) {
+            int[] slotArray = new int[slots.size()];
+            boolean[] numberArray = new boolean[numbers.size()];
+            for (int i = 0; i < slotArray.length; i++) {
+                slotArray[i] = slots.get(i);
+                numberArray[i] = numbers.get(i);
+            }
+            return new Segment(TEMPLATE_KIND, literals.toArray(new String[0]), slotArray, numberArray);
+        }
+
+        private boolean matches(String topic, int start, int end, TopicCapture capture) {
+            switch (kind) {
+                case PLUS_KIND:
+                    return true;
+                case LITERAL_KIND:
+                    String literal = literals[0];
+                    return literal.length() == end - start && topic.regionMatches(start, literal, 0, literal.length());
                 default:
-                    sb.append(ch);
+                    String prefix = literals[0];
+                    if (end - start < prefix.length() || !topic.regionMatches(start, prefix, 0, prefix.length())) {
+                        return false;
+                    }
+                    return matchParam(0, topic, start + prefix.length(), end, capture);
+            }
+        }
+
+        /**
+         * 匹配第 i 个参数及其后面的字符, 与原正则一致, 参数尽可能多的匹配.
+         */
+        private boolean matchParam(int i, String topic, int pos, int end, TopicCapture capture) {
+            if (i == slots.length) {
+                return pos == end;
+            }
+            String next = literals[i + 1];
+            if (numbers[i]) {
+                // \d+(\.\d+)?
+                int digits = digits(topic, pos, end);
+                if (digits == 0) {
+                    return false;
+                }
+                int point = pos + digits;
+                if (point < end && topic.charAt(point) == '.') {
+                    for (int at = point + 1 + digits(topic, point + 1, end); at > point + 1; at--) {
+                        if (matchNext(i, next, topic, pos, at, end, capture)) {
+                            return true;
+                        }
+                    }
+                }
+                for (int at = point; at > pos; at--) {
+                    if (matchNext(i, next, topic, pos, at, end, capture)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            // [^/]+
+            for (int at = end - next.length(); at > pos; at--) {
+                if (matchNext(i, next, topic, pos, at, end, capture)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean matchNext(int i, String next, String topic, int pos, int at, int end, TopicCapture capture) {
+            if (at + next.length() > end || !topic.regionMatches(at, next, 0, next.length())) {
+                return false;
+            }
+            if (matchParam(i + 1, topic, at + next.length(), end, capture)) {
+                if (capture != null) {
+                    capture.set(slots[i], pos, at);
+                }
+                return true;
+            }
+            return false;
+        }
+
+        private static int digits(String topic, int pos, int end) {
+            int n = 0;
+            while (pos + n < end) {
+                char ch = topic.charAt(pos + n);
+                if (ch < '0' || ch > '9') {
+                    break;
+                }
+                ++n;
             }
+            return n;
         }
-        return sb.toString();
     }
 }
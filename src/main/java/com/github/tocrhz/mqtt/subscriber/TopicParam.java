@@ -5,7 +5,7 @@ package com.github.tocrhz.mqtt.subscriber;
  */
 class TopicParam {
     private String name;
-    private int at; // 正则匹配的参数位置.
+    private int at; // 参数在捕获结果中的位置.
 
     public TopicParam(String name, int at) {
         super();
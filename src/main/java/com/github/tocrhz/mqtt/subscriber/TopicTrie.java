@@ -0,0 +1,273 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Per-client subscriber index, organized by topic level.
+ * <p>
+ * Built once from the resolved {@link TopicPair}s, so a message only walks the levels of its own topic
+ * instead of testing every subscriber. Levels with {@code {name}} are indexed as '+', the matched pair
+ * then verifies the whole topic.
+ */
+public final class TopicTrie {
+    private final static Comparator<Entry> ENTRY_ORDER = Comparator
+            .comparingInt((Entry entry) -> entry.index)
+            .thenComparingInt(entry -> entry.rank);
+
+    private final Node root = new Node();
+    private int size;
+    private boolean manualAcks;
+    private String format;
+
+    private TopicTrie() {
+    }
+
+    /**
+     * 根据订阅者创建索引, 排除不属于该客户端的订阅者.
+     *
+     * @param clientId    客户端ID
+     * @param subscribers 订阅者, 顺序即为消息分发的顺序
+     * @return TopicTrie
+     */
+    public static TopicTrie of(String clientId, List<MqttSubscriber> subscribers) {
+        return of(clientId, subscribers, AckMode.AUTO, null);
+    }
+
+    /**
+     * 根据订阅者创建索引, 排除不属于该客户端的订阅者.
+     *
+     * @param clientId    客户端ID
+     * @param subscribers 订阅者, 顺序即为消息分发的顺序
+     * @param ackMode     客户端的确认方式, 订阅者为 DEFAULT 时使用
+     * @param format      客户端默认的消息格式, 可为 null
+     * @return TopicTrie
+     */
+    public static TopicTrie of(String clientId, List<MqttSubscriber> subscribers, AckMode ackMode, String format) {
+        TopicTrie trie = new TopicTrie();
+        trie.format = format == null || format.isEmpty() ? null : format;
+        int index = 0;
+        for (MqttSubscriber subscriber : subscribers) {
+            if (subscriber.containsClientId(clientId)) {
+                boolean holdsAck = subscriber.holdsAck(ackMode);
+                trie.manualAcks |= holdsAck;
+                int rank = 0;
+                for (TopicPair pair : subscriber.getTopics()) {
+                    trie.add(new Entry(subscriber, pair, index, rank++, holdsAck));
+                }
+            }
+            ++index;
+        }
+        return trie;
+    }
+
+    private void add(Entry entry) {
+        String topic = entry.pair.getTopic(false);
+        Node node = root;
+        int start = 0;
+        while (start >= 0) {
+            int end = topic.indexOf('/', start);
+            int next = end + 1;
+            if (end < 0) {
+                end = topic.length();
+                next = -1;
+            }
+            node = node.childOrCreate(topic.substring(start, end));
+            start = next;
+        }
+        node.entries.add(entry);
+        ++size;
+    }
+
+    /**
+     * 索引中的订阅数量
+     *
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 是否有订阅者需要在处理完成后才确认消息, 此时客户端需使用手动确认.
+     *
+     * @return boolean
+     */
+    public boolean isManualAcks() {
+        return manualAcks;
+    }
+
+    /**
+     * 将消息分发给所有匹配的订阅者, 每个订阅者只使用其优先级最高的匹配主题.
+     *
+     * @param topic   消息主题
+     * @param message 消息内容
+     */
+    public void dispatch(String topic, MqttMessage message) {
+        dispatch(topic, message, null);
+    }
+
+    /**
+     * 将消息分发给所有匹配的订阅者, 所有持有该消息的订阅者处理完成后确认消息.
+     *
+     * @param topic   消息主题
+     * @param message 消息内容
+     * @param acks    客户端使用手动确认时不为 null
+     */
+    public void dispatch(String topic, MqttMessage message, AckCoalescer acks) {
+        AckCoalescer.MessageAck ack = acks == null || message.getQos() == 0 ? null : acks.track(message);
+        try {
+            List<Entry> candidates = match(topic);
+            if (candidates.isEmpty()) {
+                return;
+            }
+            TopicCapture capture = TopicCapture.local();
+            // 匹配多个订阅者时, 消息内容只转换一次. 候选按订阅者排序, 首尾不同即有多个订阅者
+            boolean shared = candidates.get(0).index != candidates.get(candidates.size() - 1).index;
+            PayloadMemo memo = shared || format != null ? new PayloadMemo(format) : null;
+            MqttSubscriber last = null;
+            for (Entry entry : candidates) {
+                if (entry.subscriber == last) {
+                    continue;
+                }
+                // 带参数的主题在索引中为 '+', 需再次校验, 同时捕获参数
+                if (entry.pair.match(topic, capture)) {
+                    last = entry.subscriber;
+                    entry.subscriber.accept(entry.rank, capture, message, entry.holdsAck ? ack : null, memo);
+                }
+            }
+        } finally {
+            if (ack != null) {
+                ack.release();
+            }
+        }
+    }
+
+    /**
+     * 查找候选的订阅者.
+     *
+     * @param topic 消息主题
+     * @return 按订阅者顺序及主题优先级排列
+     */
+    List<Entry> match(String topic) {
+        ArrayList<Entry> candidates = new ArrayList<>();
+        collect(root, topic, 0, candidates);
+        if (candidates.size() > 1) {
+            candidates.sort(ENTRY_ORDER);
+        }
+        return candidates;
+    }
+
+    /**
+     * @param start 当前层级在主题中的起始位置, -1 表示所有层级已匹配完.
+     */
+    private static void collect(Node node, String topic, int start, List<Entry> out) {
+        // '#' 匹配剩余的所有层级, 包括父级本身
+        if (node.hash != null) {
+            out.addAll(node.hash.entries);
+        }
+        if (start < 0) {
+            out.addAll(node.entries);
+            return;
+        }
+        int end = topic.indexOf('/', start);
+        int next = end + 1;
+        if (end < 0) {
+            end = topic.length();
+            next = -1;
+        }
+        if (node.plus != null) {
+            collect(node.plus, topic, next, out);
+        }
+        Node literal = node.child(topic, start, end);
+        if (literal != null) {
+            collect(literal, topic, next, out);
+        }
+    }
+
+    record Entry(MqttSubscriber subscriber, TopicPair pair, int index, int rank, boolean holdsAck) {
+    }
+
+    private static final class Node {
+        private final ArrayList<Entry> entries = new ArrayList<>(1);
+        private Node plus;
+        private Node hash;
+        // 开放寻址的子节点表, 查找时直接比较主题的区间, 不截取字符串
+        private String[] keys;
+        private Node[] children;
+        private int count;
+
+        private Node childOrCreate(String level) {
+            if ("+".equals(level)) {
+                return plus == null ? (plus = new Node()) : plus;
+            }
+            if ("#".equals(level)) {
+                return hash == null ? (hash = new Node()) : hash;
+            }
+            Node child = child(level, 0, level.length());
+            if (child == null) {
+                if (keys == null || (count + 1) * 2 > keys.length) {
+                    resize();
+                }
+                child = new Node();
+                put(level, child);
+            }
+            return child;
+        }
+
+        private Node child(String topic, int start, int end) {
+            if (keys == null) {
+                return null;
+            }
+            int len = end - start;
+            int mask = keys.length - 1;
+            int i = hash(topic, start, end) & mask;
+            String key;
+            while ((key = keys[i]) != null) {
+                if (key.length() == len && topic.regionMatches(start, key, 0, len)) {
+                    return children[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        private void put(String key, Node child) {
+            int mask = keys.length - 1;
+            int i = hash(key, 0, key.length()) & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            children[i] = child;
+            ++count;
+        }
+
+        private void resize() {
+            String[] oldKeys = keys;
+            Node[] oldChildren = children;
+            int capacity = oldKeys == null ? 4 : oldKeys.length * 2;
+            keys = new String[capacity];
+            children = new Node[capacity];
+            count = 0;
+            if (oldKeys != null) {
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != null) {
+                        put(oldKeys[i], oldChildren[i]);
+                    }
+                }
+            }
+        }
+
+        private static int hash(String s, int start, int end) {
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + s.charAt(i);
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+}
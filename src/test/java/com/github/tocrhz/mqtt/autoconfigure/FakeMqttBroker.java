@@ -0,0 +1,238 @@
+package com.github.tocrhz.mqtt.autoconfigure;
+
+import org.eclipse.paho.client.mqttv3.MqttTopic;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的 MQTT 3.1.1 broker, 只支持 CONNECT, SUBSCRIBE, UNSUBSCRIBE, PUBLISH(QoS 0/1/2), PINGREQ 和 DISCONNECT,
+ * 消息最高以 QoS 1 转发给订阅者, 不保存会话和保留消息.
+ */
+final class FakeMqttBroker implements Closeable {
+    private final ServerSocket server;
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    private final AtomicInteger packetId = new AtomicInteger();
+
+    FakeMqttBroker() throws IOException {
+        this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(this::accept, "fake-broker");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    String uri() {
+        return "tcp://127.0.0.1:" + server.getLocalPort();
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Connection connection = new Connection(server.accept());
+                connections.add(connection);
+                Thread thread = new Thread(connection, "fake-broker-connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void route(String topic, int qos, byte[] payload) {
+        for (Connection connection : connections) {
+            Integer granted = connection.granted(topic);
+            if (granted != null) {
+                connection.publish(topic, Math.min(Math.min(qos, granted), 1), payload);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    private final class Connection implements Runnable {
+        private final Socket socket;
+        private final OutputStream out;
+        // key: 订阅的主题过滤器, value: QoS
+        private final Map<String, Integer> filters = new ConcurrentHashMap<>();
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = socket.getOutputStream();
+        }
+
+        @Override
+        public void run() {
+            try (DataInputStream in = new DataInputStream(socket.getInputStream())) {
+                while (true) {
+                    int header = in.read();
+                    if (header < 0) {
+                        break;
+                    }
+                    byte[] body = new byte[remainingLength(in)];
+                    in.readFully(body);
+                    if (!handle(header, new DataInputStream(new ByteArrayInputStream(body)), body.length)) {
+                        break;
+                    }
+                }
+            } catch (IOException ignored) {
+            } finally {
+                close();
+            }
+        }
+
+        private boolean handle(int header, DataInputStream body, int length) throws IOException {
+            switch (header >> 4) {
+                case 1 -> write(0x20, 0, 0); // CONNECT -> CONNACK
+                case 3 -> {
+                    int qos = (header >> 1) & 0x03;
+                    String topic = body.readUTF();
+                    int id = qos > 0 ? body.readUnsignedShort() : 0;
+                    byte[] payload = new byte[length - 2 - topic.getBytes(StandardCharsets.UTF_8).length - (qos > 0 ? 2 : 0)];
+                    body.readFully(payload);
+                    if (qos == 1) {
+                        write(0x40, id >> 8, id); // PUBACK
+                    } else if (qos == 2) {
+                        write(0x50, id >> 8, id); // PUBREC
+                    }
+                    route(topic, qos, payload);
+                }
+                case 6 -> {
+                    int id = body.readUnsignedShort();
+                    write(0x70, id >> 8, id); // PUBREL -> PUBCOMP
+                }
+                case 8 -> {
+                    int id = body.readUnsignedShort();
+                    ByteArrayOutputStream suback = new ByteArrayOutputStream();
+                    suback.write(id >> 8);
+                    suback.write(id);
+                    int read = 2;
+                    while (read < length) {
+                        String filter = body.readUTF();
+                        int qos = Math.min(body.readUnsignedByte(), 1);
+                        filters.put(filter, qos);
+                        suback.write(qos);
+                        read += 3 + filter.getBytes(StandardCharsets.UTF_8).length;
+                    }
+                    write(0x90, suback.toByteArray());
+                }
+                case 10 -> {
+                    int id = body.readUnsignedShort();
+                    int read = 2;
+                    while (read < length) {
+                        String filter = body.readUTF();
+                        filters.remove(filter);
+                        read += 2 + filter.getBytes(StandardCharsets.UTF_8).length;
+                    }
+                    write(0xB0, id >> 8, id); // UNSUBACK
+                }
+                case 12 -> write(0xD0); // PINGREQ -> PINGRESP
+                case 14 -> {
+                    return false;
+                }
+                default -> {
+                    // PUBACK, PUBREC, PUBCOMP of messages sent to the client
+                }
+            }
+            return true;
+        }
+
+        private Integer granted(String topic) {
+            Integer granted = null;
+            for (Map.Entry<String, Integer> entry : filters.entrySet()) {
+                String filter = entry.getKey();
+                if (filter.startsWith("$share/")) {
+                    filter = filter.substring(filter.indexOf('/', 7) + 1);
+                }
+                if (MqttTopic.isMatched(filter, topic) && (granted == null || entry.getValue() > granted)) {
+                    granted = entry.getValue();
+                }
+            }
+            return granted;
+        }
+
+        private void publish(String topic, int qos, byte[] payload) {
+            ByteArrayOutputStream packet = new ByteArrayOutputStream();
+            byte[] name = topic.getBytes(StandardCharsets.UTF_8);
+            packet.write(name.length >> 8);
+            packet.write(name.length);
+            packet.writeBytes(name);
+            if (qos > 0) {
+                int id = packetId.updateAndGet(value -> value % 0xFFFF + 1);
+                packet.write(id >> 8);
+                packet.write(id);
+            }
+            packet.writeBytes(payload);
+            try {
+                write(0x30 | qos << 1, packet.toByteArray());
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void write(int header, int... body) throws IOException {
+            byte[] bytes = new byte[body.length];
+            for (int i = 0; i < body.length; i++) {
+                bytes[i] = (byte) body[i];
+            }
+            write(header, bytes);
+        }
+
+        private synchronized void write(int header, byte[] body) throws IOException {
+            ByteArrayOutputStream packet = new ByteArrayOutputStream();
+            packet.write(header);
+            int length = body.length;
+            do {
+                int digit = length % 128;
+                length /= 128;
+                packet.write(length > 0 ? digit | 0x80 : digit);
+            } while (length > 0);
+            packet.writeBytes(body);
+            out.write(packet.toByteArray());
+            out.flush();
+        }
+
+        private void close() {
+            connections.remove(this);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        private static int remainingLength(InputStream in) throws IOException {
+            int length = 0;
+            int multiplier = 1;
+            int digit;
+            do {
+                digit = in.read();
+                if (digit < 0) {
+                    throw new IOException("connection closed");
+                }
+                length += (digit & 0x7F) * multiplier;
+                multiplier *= 128;
+            } while ((digit & 0x80) != 0);
+            return length;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.tocrhz.mqtt.autoconfigure;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.github.tocrhz.mqtt.annotation.MqttSubscribe;
+import com.github.tocrhz.mqtt.annotation.NamedValue;
+import com.github.tocrhz.mqtt.annotation.Payload;
+import com.github.tocrhz.mqtt.index.MqttSubscribeIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.generate.ClassNameGenerator;
+import org.springframework.aot.generate.DefaultGenerationContext;
+import org.springframework.aot.generate.InMemoryGeneratedFiles;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.beans.factory.aot.BeanRegistrationAotContribution;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RegisteredBean;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.javapoet.ClassName;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MqttRuntimeHintsTest {
+
+    @Test
+    void subscriberHints() throws NoSuchMethodException {
+        RuntimeHints hints = process(SampleSubscriber.class);
+        assertTrue(RuntimeHintsPredicates.reflection().onType(SampleSubscriber.class)
+                .withMemberCategory(MemberCategory.INTROSPECT_PUBLIC_METHODS).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onMethod(SampleSubscriber.class.getMethod("telemetry", String.class, Reading.class)).invoke().test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onConstructor(Trim.class.getDeclaredConstructor()).invoke().test(hints));
+        // 消息内容的类型用于 Jackson 绑定
+        assertTrue(RuntimeHintsPredicates.reflection().onType(Reading.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(Reading.class, "getValue").invoke().test(hints));
+        // @NamedValue 的参数不是消息内容
+        assertFalse(RuntimeHintsPredicates.reflection().onMethod(String.class, "length").test(hints));
+    }
+
+    @Test
+    void noSubscriberMethod() {
+        assertNull(contribution(Reading.class));
+    }
+
+    @Test
+    void starterHints() {
+        RuntimeHints hints = new RuntimeHints();
+        new MqttRuntimeHints().registerHints(hints, getClass().getClassLoader());
+        assertTrue(RuntimeHintsPredicates.resource().forResource(MqttSubscribeIndex.LOCATION).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(CBORFactory.class)
+                .withMemberCategory(MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS).test(hints));
+    }
+
+    private static RuntimeHints process(Class<?> beanClass) {
+        BeanRegistrationAotContribution contribution = contribution(beanClass);
+        assertNotNull(contribution);
+        DefaultGenerationContext context = new DefaultGenerationContext(
+                new ClassNameGenerator(ClassName.get(MqttRuntimeHintsTest.class)), new InMemoryGeneratedFiles());
+        contribution.applyTo(context, null);
+        return context.getRuntimeHints();
+    }
+
+    private static BeanRegistrationAotContribution contribution(Class<?> beanClass) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("bean", new RootBeanDefinition(beanClass));
+        return new MqttSubscribeAotProcessor().processAheadOfTime(RegisteredBean.of(beanFactory, "bean"));
+    }
+
+    public static class SampleSubscriber {
+
+        @MqttSubscribe("dev/{id}/tel")
+        public void telemetry(@NamedValue("id") String id, @Payload(Trim.class) Reading reading) {
+        }
+    }
+
+    public static class Trim implements Converter<byte[], byte[]> {
+
+        @Override
+        public byte[] convert(byte[] source) {
+            return new String(source).trim().getBytes();
+        }
+    }
+
+    public static class Reading {
+        private double value;
+
+        public double getValue() {
+            return value;
+        }
+
+        public void setValue(double value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.tocrhz.mqtt.autoconfigure;
+
+import com.github.tocrhz.mqtt.annotation.MqttSubscribe;
+import com.github.tocrhz.mqtt.annotation.NamedValue;
+import com.github.tocrhz.mqtt.annotation.Payload;
+import com.github.tocrhz.mqtt.publisher.MqttPublisher;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 连接测试用的 broker, 发送并通过 @MqttSubscribe 方法接收一条消息.
+ * <p>
+ * 由 native profile 在 native image 中运行: mvn -Pnative test,
+ * 在 JVM 中运行: mvn test -Dgroups=native -DexcludedGroups=none
+ */
+@Tag("native")
+@SpringBootTest(classes = MqttSmokeTest.Application.class, properties = {
+        "mqtt.client-id=smoke",
+        "mqtt.startup.await-connected=10s"
+})
+class MqttSmokeTest {
+    private final static FakeMqttBroker BROKER = broker();
+
+    @Autowired
+    private MqttPublisher publisher;
+    @Autowired
+    private SmokeSubscriber subscriber;
+
+    @DynamicPropertySource
+    static void brokerUri(DynamicPropertyRegistry registry) {
+        registry.add("mqtt.uri", BROKER::uri);
+    }
+
+    @AfterAll
+    static void closeBroker() throws IOException {
+        BROKER.close();
+    }
+
+    @Test
+    void publishAndSubscribe() throws InterruptedException {
+        Reading reading = new Reading();
+        reading.setValue(21.5);
+        publisher.send("smoke/sensor-1/tel", reading, 1);
+        String received = subscriber.received.poll(10, TimeUnit.SECONDS);
+        assertNotNull(received, "no message received");
+        assertEquals("sensor-1=21.5", received);
+    }
+
+    private static FakeMqttBroker broker() {
+        try {
+            return new FakeMqttBroker();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    static class Application {
+
+        @Bean
+        public SmokeSubscriber smokeSubscriber() {
+            return new SmokeSubscriber();
+        }
+    }
+
+    public static class SmokeSubscriber {
+        private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+        @MqttSubscribe("smoke/{id}/tel")
+        public void telemetry(@NamedValue("id") String id, @Payload Reading reading) {
+            received.add(id + "=" + reading.getValue());
+        }
+    }
+
+    public static class Reading {
+        private double value;
+
+        public double getValue() {
+            return value;
+        }
+
+        public void setValue(double value) {
+            this.value = value;
+        }
+    }
+}
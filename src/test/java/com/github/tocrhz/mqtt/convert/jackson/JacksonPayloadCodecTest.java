@@ -0,0 +1,61 @@
+package com.github.tocrhz.mqtt.convert.jackson;
+
+import com.github.tocrhz.mqtt.autoconfigure.PayloadJacksonAutoConfiguration;
+import com.github.tocrhz.mqtt.convert.MqttConversionService;
+import com.github.tocrhz.mqtt.convert.PayloadCodec;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JacksonPayloadCodecTest {
+    private static MqttConversionService registry;
+
+    @BeforeAll
+    static void registerCodecs() {
+        new PayloadJacksonAutoConfiguration(new DefaultListableBeanFactory(), new StandardEnvironment());
+        registry = MqttConversionService.getSharedInstance();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"json", "cbor", "smile", "msgpack"})
+    void roundTrip(String format) throws IOException {
+        PayloadCodec codec = registry.getCodec(format);
+        assertNotNull(codec, format);
+        Telemetry telemetry = Telemetry.sample();
+        byte[] payload = codec.encode(telemetry);
+        assertEquals(telemetry, codec.decode(payload, Telemetry.class));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"cbor", "smile", "msgpack"})
+    void smallerThanJson(String format) throws IOException {
+        Telemetry telemetry = Telemetry.sample();
+        int json = registry.getCodec("json").encode(telemetry).length;
+        int binary = registry.getCodec(format).encode(telemetry).length;
+        assertTrue(binary < json, format + ": " + binary + " bytes, json: " + json + " bytes");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"json", "cbor", "smile", "msgpack"})
+    void decodeElements(String format) throws IOException {
+        PayloadCodec codec = registry.getCodec(format);
+        Telemetry first = Telemetry.sample();
+        Telemetry second = Telemetry.sample();
+        second.setSequence(1025L);
+        Iterator<Telemetry> iterator = codec.decodeElements(codec.encode(new Telemetry[]{first, second}), Telemetry.class);
+        List<Telemetry> elements = new ArrayList<>();
+        iterator.forEachRemaining(elements::add);
+        assertEquals(List.of(first, second), elements);
+    }
+}
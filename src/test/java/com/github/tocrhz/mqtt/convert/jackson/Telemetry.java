@@ -0,0 +1,104 @@
+package com.github.tocrhz.mqtt.convert.jackson;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 设备上报的遥测数据, 用于编解码的测试和基准测试
+ */
+public class Telemetry {
+    private String deviceId;
+    private long sequence;
+    private long timestamp;
+    private boolean online;
+    private int battery;
+    private String status;
+    // 温度, 单位 0.1℃
+    private int[] readings;
+
+    public static Telemetry sample() {
+        Telemetry telemetry = new Telemetry();
+        telemetry.setDeviceId("sensor-0042");
+        telemetry.setSequence(1024L);
+        telemetry.setTimestamp(1700000000000L);
+        telemetry.setOnline(true);
+        telemetry.setBattery(87);
+        telemetry.setStatus("NORMAL");
+        telemetry.setReadings(new int[]{215, 216, 218, 221, 219, 217, 216, 214});
+        return telemetry;
+    }
+
+    public TelemetryRecord toRecord() {
+        return new TelemetryRecord(deviceId, sequence, timestamp, online, battery, status, readings);
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public boolean isOnline() {
+        return online;
+    }
+
+    public void setOnline(boolean online) {
+        this.online = online;
+    }
+
+    public int getBattery() {
+        return battery;
+    }
+
+    public void setBattery(int battery) {
+        this.battery = battery;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int[] getReadings() {
+        return readings;
+    }
+
+    public void setReadings(int[] readings) {
+        this.readings = readings;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Telemetry that = (Telemetry) o;
+        return sequence == that.sequence && timestamp == that.timestamp && online == that.online && battery == that.battery
+                && Objects.equals(deviceId, that.deviceId) && Objects.equals(status, that.status) && Arrays.equals(readings, that.readings);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(deviceId, sequence, timestamp);
+    }
+}
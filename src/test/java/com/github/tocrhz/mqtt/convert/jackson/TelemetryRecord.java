@@ -0,0 +1,8 @@
+package com.github.tocrhz.mqtt.convert.jackson;
+
+/**
+ * 与 {@link Telemetry} 相同的数据, 用 record 表示
+ */
+public record TelemetryRecord(String deviceId, long sequence, long timestamp, boolean online, int battery,
+                              String status, int[] readings) {
+}
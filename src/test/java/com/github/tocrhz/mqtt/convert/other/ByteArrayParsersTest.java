@@ -0,0 +1,102 @@
+package com.github.tocrhz.mqtt.convert.other;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ByteArrayParsersTest {
+    private final static String[] NUMBERS = {
+            "", "-", "+", ".", "-.", "0", "-0", "+0", "00012", "-00012",
+            "127", "128", "-128", "-129", "255", "32767", "32768", "-32768", "-32769",
+            "2147483647", "2147483648", "-2147483648", "-2147483649",
+            "999999999999999999", "1000000000000000000", "9223372036854775807", "9223372036854775808",
+            "-9223372036854775808", "-9223372036854775809", "99999999999999999999",
+            " 1", "1 ", "\t1", "1\n", "--1", "+-1", "-+1", "1-", "1_000", "0x10", "1e3", "1E-3", "-1e-3",
+            "1.", ".5", "-.5", "+.5", "1.5", "-1.5", "0.1", "0.3", "-0.0", "1.2.3", "1..2", "1.5f", "1.5d",
+            "123456789012345.6", "1234567890123456", "12345678901234567", "0.000000000000001",
+            "9999999", "16777216", "16777217", "9999999.5", "0.0000000001", "0.00000000001", "1234567.8",
+            "3.4028235e38", "3.4028236e38", "1.7976931348623157E308", "4.9E-324",
+            "NaN", "-NaN", "Infinity", "-Infinity", "+Infinity",
+            "١٢", "１２", "1²", "é"
+    };
+    private final static String[] BOOLEANS = {
+            "", "true", "TRUE", "True", "tRuE", "false", "FALSE", "yes", "1", "truee", "tru", " true", "true ",
+            "ｔｒｕｅ", "trüe", "été"
+    };
+
+    @Test
+    void sameAsJdk() {
+        for (String text : NUMBERS) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            assertSame(text, Byte::parseByte, () -> ByteArrayParsers.parseByte(bytes));
+            assertSame(text, Short::parseShort, () -> ByteArrayParsers.parseShort(bytes));
+            assertSame(text, Integer::parseInt, () -> ByteArrayParsers.parseInt(bytes));
+            assertSame(text, Long::parseLong, () -> ByteArrayParsers.parseLong(bytes));
+            assertSame(text, s -> Double.doubleToRawLongBits(Double.parseDouble(s))
+                    , () -> Double.doubleToRawLongBits(ByteArrayParsers.parseDouble(bytes)));
+            assertSame(text, s -> Float.floatToRawIntBits(Float.parseFloat(s))
+                    , () -> Float.floatToRawIntBits(ByteArrayParsers.parseFloat(bytes)));
+        }
+        for (String text : BOOLEANS) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            assertEquals(Boolean.parseBoolean(text), ByteArrayParsers.parseBoolean(bytes), text);
+        }
+    }
+
+    @Test
+    void decimalsRoundLikeJdk() {
+        Random random = new Random(20231016);
+        for (int i = 0; i < 200_000; i++) {
+            String text = decimal(random, 1 + random.nextInt(17), random.nextInt(24));
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            assertEquals(Double.doubleToRawLongBits(Double.parseDouble(text))
+                    , Double.doubleToRawLongBits(ByteArrayParsers.parseDouble(bytes)), text);
+            text = decimal(random, 1 + random.nextInt(9), random.nextInt(12));
+            bytes = text.getBytes(StandardCharsets.UTF_8);
+            assertEquals(Float.floatToRawIntBits(Float.parseFloat(text))
+                    , Float.floatToRawIntBits(ByteArrayParsers.parseFloat(bytes)), text);
+        }
+    }
+
+    /**
+     * 随机的小数, 如 "-123.0450"
+     */
+    private static String decimal(Random random, int digits, int scale) {
+        StringBuilder sb = new StringBuilder();
+        if (random.nextInt(4) == 0) {
+            sb.append(random.nextBoolean() ? '-' : '+');
+        }
+        for (int i = 0; i < digits; i++) {
+            if (i == digits - scale) {
+                sb.append(i == 0 ? "0." : ".");
+            }
+            sb.append((char) ('0' + random.nextInt(10)));
+        }
+        return sb.toString();
+    }
+
+    private static <T> void assertSame(String text, Function<String, T> jdk, Parser<T> parser) {
+        Object expected;
+        try {
+            expected = jdk.apply(text);
+        } catch (RuntimeException e) {
+            expected = e.getClass();
+        }
+        Object actual;
+        try {
+            actual = parser.parse();
+        } catch (RuntimeException e) {
+            actual = e.getClass();
+        }
+        assertEquals(expected, actual, "'" + text + "'");
+    }
+
+    @FunctionalInterface
+    private interface Parser<T> {
+        T parse();
+    }
+}
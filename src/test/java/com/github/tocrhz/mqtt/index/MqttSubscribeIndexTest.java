@@ -0,0 +1,187 @@
+package com.github.tocrhz.mqtt.index;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MqttSubscribeIndexTest {
+    @TempDir
+    static Path directory;
+    private static Path plain;
+    private static Path indexed;
+
+    /**
+     * plain 模块编译时没有注解处理器, indexed 模块有
+     */
+    @BeforeAll
+    static void compile() throws IOException {
+        plain = compile("plain", false, Map.of(
+                "sample/plain/Base.java", """
+                        package sample.plain;
+                        public class Base {
+                            @com.github.tocrhz.mqtt.annotation.MqttSubscribe("base")
+                            public void base(String topic) {
+                            }
+                        }
+                        """));
+        indexed = compile("indexed", true, Map.of(
+                "sample/Listener.java", """
+                        package sample;
+                        import com.github.tocrhz.mqtt.annotation.MqttSubscribe;
+                        import java.util.List;
+                        public class Listener implements Handler {
+                            @MqttSubscribe("a/{id}")
+                            public void handle(String topic, byte[] payload, List<String> names) {
+                            }
+                            @MqttSubscribe("a/hidden")
+                            void hidden(String topic) {
+                            }
+                            public void other() {
+                            }
+                            public static class Nested {
+                                @MqttSubscribe("n")
+                                public <T extends Number> void nested(T[] values, int count) {
+                                }
+                            }
+                        }
+                        """,
+                "sample/Handler.java", """
+                        package sample;
+                        public interface Handler {
+                            @com.github.tocrhz.mqtt.annotation.MqttSubscribe("h")
+                            default void fromInterface(String topic) {
+                            }
+                        }
+                        """,
+                "sample/Empty.java", """
+                        package sample;
+                        public class Empty {
+                            public void handle(String topic) {
+                            }
+                        }
+                        """,
+                "sample/Child.java", """
+                        package sample;
+                        public class Child extends sample.plain.Base {
+                        }
+                        """));
+    }
+
+    @Test
+    void writesPublicMethodSignatures() throws IOException {
+        String index = Files.readString(indexed.resolve(MqttSubscribeIndex.LOCATION));
+        assertTrue(index.contains("sample.Listener=handle(java.lang.String;byte[];java.util.List)\n"), index);
+        assertTrue(index.contains("sample.Listener$Nested=nested(java.lang.Number[];int)\n"), index);
+        assertTrue(index.contains("sample.Handler=fromInterface(java.lang.String)\n"), index);
+        assertEquals(3, index.lines().count(), index);
+        assertTrue(Files.notExists(plain.resolve(MqttSubscribeIndex.LOCATION)));
+    }
+
+    @Test
+    void resolvesListedMethods() throws Exception {
+        try (URLClassLoader loader = loader()) {
+            MqttSubscribeIndex index = MqttSubscribeIndex.load(loader);
+            Class<?> listener = loader.loadClass("sample.Listener");
+            assertEquals(List.of("handle", "fromInterface"), names(index.resolve(listener)));
+            assertEquals(List.of("nested"), names(index.resolve(loader.loadClass("sample.Listener$Nested"))));
+            // 被索引覆盖但没有订阅方法, 不需要扫描
+            assertTrue(index.resolve(loader.loadClass("sample.Empty")).isEmpty());
+        }
+    }
+
+    @Test
+    void scansWhatIsNotCovered() throws Exception {
+        try (URLClassLoader loader = loader()) {
+            MqttSubscribeIndex index = MqttSubscribeIndex.load(loader);
+            // 类或父类所在的位置没有索引
+            assertNull(index.resolve(loader.loadClass("sample.plain.Base")));
+            assertNull(index.resolve(loader.loadClass("sample.Child")));
+        }
+    }
+
+    @Test
+    void scansWhenIndexIsStale() throws Exception {
+        Path stale = Files.createDirectories(directory.resolve("stale"));
+        copy(indexed, stale);
+        Path file = stale.resolve(MqttSubscribeIndex.LOCATION);
+        Files.writeString(file, Files.readString(file).replace("handle(java.lang.String;byte[];java.util.List)", "handle(java.lang.String)"));
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{stale.toUri().toURL(), plain.toUri().toURL()}, getClass().getClassLoader())) {
+            MqttSubscribeIndex index = MqttSubscribeIndex.load(loader);
+            assertNull(index.resolve(loader.loadClass("sample.Listener")));
+            assertEquals(List.of("nested"), names(index.resolve(loader.loadClass("sample.Listener$Nested"))));
+        }
+    }
+
+    @Test
+    void normalizesRoots() {
+        assertEquals("file:/app/a.jar", MqttSubscribeIndex.root("jar:file:/app/a.jar!/"));
+        assertEquals("file:/app/a.jar", MqttSubscribeIndex.root("file:/app/a.jar"));
+        assertEquals("file:/app/classes", MqttSubscribeIndex.root("file:/app/classes/"));
+        assertEquals("file:/app.jar!/BOOT-INF/classes", MqttSubscribeIndex.root("jar:file:/app.jar!/BOOT-INF/classes!/"));
+    }
+
+    private URLClassLoader loader() throws IOException {
+        return new URLClassLoader(new URL[]{indexed.toUri().toURL(), plain.toUri().toURL()}, getClass().getClassLoader());
+    }
+
+    private static List<String> names(Collection<Method> methods) {
+        List<String> names = new ArrayList<>();
+        for (Method method : methods) {
+            names.add(method.getName());
+        }
+        return names;
+    }
+
+    private static Path compile(String name, boolean index, Map<String, String> sources) throws IOException {
+        Path source = directory.resolve(name + "-src");
+        Path output = Files.createDirectories(directory.resolve(name));
+        List<String> args = new ArrayList<>(List.of("-d", output.toString(), "-classpath"
+                , System.getProperty("java.class.path") + java.io.File.pathSeparator + directory.resolve("plain")));
+        if (index) {
+            args.addAll(List.of("-processor", MqttSubscribeIndexer.class.getName()));
+        } else {
+            args.add("-proc:none");
+        }
+        for (Map.Entry<String, String> entry : sources.entrySet()) {
+            Path file = source.resolve(entry.getKey());
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, entry.getValue(), StandardCharsets.UTF_8);
+            args.add(file.toString());
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, args.toArray(new String[0])), "compile " + name);
+        return output;
+    }
+
+    private static void copy(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.walk(from)) {
+            for (Path file : files.toList()) {
+                Path target = to.resolve(from.relativize(file).toString());
+                if (Files.isDirectory(file)) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.copy(file, target);
+                }
+            }
+        }
+    }
+}
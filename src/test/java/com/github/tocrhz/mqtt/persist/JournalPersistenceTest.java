@@ -0,0 +1,284 @@
+package com.github.tocrhz.mqtt.persist;
+
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+import org.eclipse.paho.client.mqttv3.internal.MqttPersistentData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalPersistenceTest {
+    private final static String CLIENT_ID = "client";
+    private final static String SERVER_URI = "tcp://localhost:1883";
+    // [int length][int crc]
+    private final static int RECORD_HEADER = 8;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversLiveEntries() throws Exception {
+        JournalPersistence persistence = open(4096, 0);
+        put(persistence, "s-1", "header-1", "payload-1");
+        put(persistence, "s-2", "header-2", null);
+        put(persistence, "s-3", "header-3", "payload-3");
+        persistence.remove("s-2");
+        put(persistence, "s-1", "header-1b", "payload-1b");
+        persistence.close();
+        assertThrows(MqttPersistenceException.class, () -> persistence.get("s-1"));
+
+        JournalPersistence reopened = open(4096, 0);
+        assertEquals(List.of("s-1", "s-3"), keys(reopened));
+        assertArrayEquals(bytes("header-1bpayload-1b"), data(reopened.get("s-1")));
+        assertArrayEquals(bytes("header-3payload-3"), data(reopened.get("s-3")));
+        assertNull(reopened.get("s-2"));
+        reopened.close();
+        // 打开时压缩到一个新文件
+        assertEquals(1, journals().size());
+    }
+
+    @Test
+    void compactsWhenFull() throws Exception {
+        JournalPersistence persistence = open(4096, 10);
+        String payload = "x".repeat(500);
+        for (int i = 0; i < 200; i++) {
+            put(persistence, "s-" + i, "h", payload);
+            if (i >= 3) {
+                persistence.remove("s-" + (i - 3));
+            }
+        }
+        assertEquals(1, journals().size());
+        persistence.close();
+        JournalPersistence reopened = open(4096, 10);
+        assertEquals(List.of("s-197", "s-198", "s-199"), keys(reopened));
+        reopened.clear();
+        assertTrue(keys(reopened).isEmpty());
+        reopened.close();
+        assertTrue(keys(reopenAndClose()).isEmpty());
+    }
+
+    @Test
+    void compactsSparseJournalOnWrite() throws Exception {
+        JournalPersistence persistence = open(16384, 0);
+        Path first = journals().get(0);
+        churn(persistence, 20);
+        // 写入的记录不到 11KB, 没有写满, 因为有效数据少而压缩
+        List<Path> journals = journals();
+        assertEquals(1, journals.size());
+        assertTrue(journals.get(0).compareTo(first) > 0);
+        assertTrue(end(journals.get(0)) < 16384 / 2);
+        assertEquals(List.of("s-19"), keys(persistence));
+        persistence.close();
+        assertEquals(List.of("s-19"), keys(reopenAndClose()));
+    }
+
+    @Test
+    void compactsSparseJournalOnSync() throws Exception {
+        JournalPersistence persistence = open(16384, 10);
+        Path first = journals().get(0);
+        churn(persistence, 20);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (journals().get(0).equals(first)) {
+            assertTrue(System.nanoTime() < deadline, "timeout");
+            Thread.sleep(5);
+        }
+        assertEquals(1, journals().size());
+        assertEquals(List.of("s-19"), keys(persistence));
+        persistence.close();
+        assertEquals(List.of("s-19"), keys(reopenAndClose()));
+    }
+
+    @Test
+    void keepsJournalWithMostlyLiveEntries() throws Exception {
+        JournalPersistence persistence = open(16384, 0);
+        Path first = journals().get(0);
+        String payload = "x".repeat(500);
+        for (int i = 0; i < 20; i++) {
+            put(persistence, "s-" + i, "h", payload);
+        }
+        assertEquals(List.of(first), journals());
+        persistence.close();
+    }
+
+    @Test
+    void ignoresRecordWithoutLength() throws Exception {
+        JournalPersistence persistence = open(4096, 0);
+        put(persistence, "s-1", "header-1", "payload-1");
+        put(persistence, "s-2", "header-2", "payload-2");
+        persistence.close();
+        // 写入了内容和 crc 但还没写长度时崩溃
+        Path journal = journals().get(0);
+        int end = end(journal);
+        write(journal, end + 4, new byte[]{1, 2, 3, 4, 1, 0, 3, 's', '-', '3'});
+        assertEquals(List.of("s-1", "s-2"), keys(reopenAndClose()));
+    }
+
+    @Test
+    void stopsAtCrcMismatch() throws Exception {
+        JournalPersistence persistence = open(4096, 0);
+        put(persistence, "s-1", "header-1", "payload-1");
+        put(persistence, "s-2", "header-2", "payload-2");
+        put(persistence, "s-3", "header-3", "payload-3");
+        persistence.close();
+        // 第二条记录的内容损坏, 之后的记录都被忽略
+        Path journal = journals().get(0);
+        List<Integer> offsets = offsets(journal);
+        write(journal, offsets.get(1) + RECORD_HEADER + 5, new byte[]{'#'});
+        assertEquals(List.of("s-1"), keys(reopenAndClose()));
+    }
+
+    @Test
+    void ignoresRecordCutByTruncatedFile() throws Exception {
+        JournalPersistence persistence = open(4096, 0);
+        put(persistence, "s-1", "header-1", "payload-1");
+        put(persistence, "s-2", "header-2", "x".repeat(100));
+        persistence.close();
+        Path journal = journals().get(0);
+        List<Integer> offsets = offsets(journal);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(offsets.get(1) + RECORD_HEADER + 20);
+        }
+        assertEquals(List.of("s-1"), keys(reopenAndClose()));
+        Files.write(journal.resolveSibling("journal-99999999999999999999.log"), new byte[3]);
+        assertEquals(List.of("s-1"), keys(reopenAndClose()));
+    }
+
+    @Test
+    void recoversAfterCrashDuringCompaction() throws Exception {
+        JournalPersistence persistence = open(4096, 0);
+        put(persistence, "s-1", "header-1", "payload-1");
+        put(persistence, "s-2", "header-2", "payload-2");
+        persistence.remove("s-1");
+        put(persistence, "s-3", "header-3", "payload-3");
+        persistence.close();
+        // 压缩时崩溃: 新文件只写了一部分, 旧文件还没删除
+        Path journal = journals().get(0);
+        String name = journal.getFileName().toString();
+        long generation = Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+        Path next = journal.resolveSibling(String.format("journal-%020d.log", generation + 1));
+        Files.copy(journal, next, StandardCopyOption.REPLACE_EXISTING);
+        List<Integer> offsets = offsets(next);
+        write(next, offsets.get(offsets.size() - 1), new byte[RECORD_HEADER]);
+
+        JournalPersistence reopened = open(4096, 0);
+        assertEquals(List.of("s-2", "s-3"), keys(reopened));
+        assertArrayEquals(bytes("header-3payload-3"), data(reopened.get("s-3")));
+        reopened.close();
+        assertEquals(1, journals().size());
+        assertFalse(Files.exists(journal));
+    }
+
+    private JournalPersistence open(int fileSize, long syncInterval) throws MqttPersistenceException {
+        JournalPersistence persistence = new JournalPersistence(directory.toString(), fileSize, syncInterval);
+        persistence.open(CLIENT_ID, SERVER_URI);
+        return persistence;
+    }
+
+    private JournalPersistence reopenAndClose() throws MqttPersistenceException {
+        JournalPersistence persistence = open(4096, 0);
+        persistence.close();
+        return persistence;
+    }
+
+    private static void put(JournalPersistence persistence, String key, String header, String payload) throws MqttPersistenceException {
+        byte[] headerBytes = bytes(header);
+        byte[] payloadBytes = payload == null ? null : bytes(payload);
+        persistence.put(key, new MqttPersistentData(key, headerBytes, 0, headerBytes.length
+                , payloadBytes, 0, payloadBytes == null ? 0 : payloadBytes.length));
+    }
+
+    /**
+     * 每次写入一条, 删除上一条
+     */
+    private static void churn(JournalPersistence persistence, int count) throws MqttPersistenceException {
+        String payload = "x".repeat(500);
+        for (int i = 0; i < count; i++) {
+            put(persistence, "s-" + i, "h", payload);
+            if (i > 0) {
+                persistence.remove("s-" + (i - 1));
+            }
+        }
+    }
+
+    /**
+     * 已关闭时重新打开读取
+     */
+    private List<String> keys(JournalPersistence persistence) throws MqttPersistenceException {
+        boolean closed;
+        try {
+            persistence.containsKey("");
+            closed = false;
+        } catch (MqttPersistenceException e) {
+            persistence.open(CLIENT_ID, SERVER_URI);
+            closed = true;
+        }
+        List<String> keys = Collections.list(persistence.keys());
+        Collections.sort(keys);
+        if (closed) {
+            persistence.close();
+        }
+        return keys;
+    }
+
+    private static byte[] data(MqttPersistable persistable) throws MqttPersistenceException {
+        return Arrays.copyOfRange(persistable.getHeaderBytes(), persistable.getHeaderOffset()
+                , persistable.getHeaderOffset() + persistable.getHeaderLength());
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private List<Path> journals() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("journal-")).sorted().toList();
+        }
+    }
+
+    /**
+     * 每条记录的起始位置
+     */
+    private static List<Integer> offsets(Path journal) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(journal));
+        List<Integer> offsets = new ArrayList<>();
+        int offset = 0;
+        while (offset + RECORD_HEADER <= buffer.capacity() && buffer.getInt(offset) > 0) {
+            offsets.add(offset);
+            offset += RECORD_HEADER + buffer.getInt(offset);
+        }
+        return offsets;
+    }
+
+    private static int end(Path journal) throws IOException {
+        List<Integer> offsets = offsets(journal);
+        int last = offsets.get(offsets.size() - 1);
+        return last + RECORD_HEADER + ByteBuffer.wrap(Files.readAllBytes(journal)).getInt(last);
+    }
+
+    private static void write(Path file, long position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.tocrhz.mqtt.publisher;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 只实现 publish 和 isConnected 的客户端
+ */
+final class FakeMqttClient {
+    final List<String> sent = new CopyOnWriteArrayList<>();
+    final List<IMqttActionListener> pending = new CopyOnWriteArrayList<>();
+    final AtomicInteger rejected = new AtomicInteger();
+    volatile boolean connected = true;
+    volatile boolean autoComplete = true;
+    volatile int disconnectAfter = Integer.MAX_VALUE;
+    final IMqttAsyncClient client = (IMqttAsyncClient) Proxy.newProxyInstance(getClass().getClassLoader()
+            , new Class<?>[]{IMqttAsyncClient.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "isConnected" -> connected;
+                case "publish" -> publish((String) args[0], (IMqttActionListener) args[3]);
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    private Object publish(String topic, IMqttActionListener listener) throws MqttException {
+        if (connected && sent.size() >= disconnectAfter) {
+            connected = false;
+        }
+        if (!connected) {
+            rejected.incrementAndGet();
+            throw new MqttException(MqttException.REASON_CODE_CLIENT_NOT_CONNECTED);
+        }
+        sent.add(topic);
+        if (autoComplete) {
+            listener.onSuccess(null);
+        } else {
+            pending.add(listener);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,187 @@
+package com.github.tocrhz.mqtt.publisher;
+
+import com.github.tocrhz.mqtt.properties.OutboundProperties.OverflowPolicy;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OfflineBufferTest {
+    private ScheduledExecutorService scheduler;
+    private FakeMqttClient fake;
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final IMqttActionListener callback = new IMqttActionListener() {
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            succeeded.incrementAndGet();
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            failed.incrementAndGet();
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        fake = new FakeMqttClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void keepsMessagesWhenDisconnectedDuringReplay() throws Exception {
+        OfflineBuffer offline = new OfflineBuffer("test", 100, null, 0, 0, 0);
+        OutboundQueue outbound = new OutboundQueue("test", fake.client, 100, 100, OverflowPolicy.FAIL, 0, scheduler);
+        outbound.setFallback(offline::offer);
+        for (int i = 0; i < 50; i++) {
+            offline.offer("t/" + i, message(i), callback);
+        }
+        // 发送 10 条后断开
+        fake.disconnectAfter = 10;
+        offline.replay(outbound::publish, fake::isConnected, scheduler);
+        await(() -> fake.rejected.get() > 0);
+        await(() -> offline.size() == 40);
+        assertEquals(0, failed.get());
+        assertEquals(topics(0, 10), fake.sent);
+
+        fake.disconnectAfter = Integer.MAX_VALUE;
+        fake.connected = true;
+        offline.replay(outbound::publish, fake::isConnected, scheduler);
+        await(offline::isEmpty);
+        await(() -> succeeded.get() == 50);
+        assertEquals(0, failed.get());
+        assertEquals(topics(0, 50), fake.sent);
+    }
+
+    @Test
+    void queuedMessagesFallBackToOfflineBuffer() throws Exception {
+        OfflineBuffer offline = new OfflineBuffer("test", 100, null, 0, 0, 0);
+        OutboundQueue outbound = new OutboundQueue("test", fake.client, 1, 100, OverflowPolicy.FAIL, 0, scheduler);
+        outbound.setFallback(offline::offer);
+        fake.autoComplete = false;
+        for (int i = 0; i < 5; i++) {
+            outbound.publish("t/" + i, message(i), callback);
+        }
+        assertEquals(1, fake.sent.size());
+        assertEquals(4, outbound.size());
+
+        // 断开时 Paho 以失败结束已发送的消息, 队列中的消息放回离线缓存
+        fake.connected = false;
+        fake.pending.remove(0).onFailure(null, new MqttException(MqttException.REASON_CODE_CONNECTION_LOST));
+        assertEquals(0, outbound.size());
+        assertEquals(4, offline.size());
+        assertEquals(1, failed.get());
+
+        fake.connected = true;
+        fake.autoComplete = true;
+        offline.replay(outbound::publish, fake::isConnected, scheduler);
+        await(offline::isEmpty);
+        await(() -> succeeded.get() == 4);
+        assertEquals(1, failed.get());
+        assertEquals(topics(0, 5), fake.sent);
+    }
+
+    @Test
+    void directPublishThrowsWhenNotConnected() {
+        OutboundQueue outbound = new OutboundQueue("test", fake.client, 10, 100, OverflowPolicy.FAIL, 0, scheduler);
+        fake.connected = false;
+        MqttException exception = null;
+        try {
+            outbound.publish("t/0", message(0), callback);
+        } catch (MqttException e) {
+            exception = e;
+        }
+        assertTrue(exception != null && OfflineBuffer.isDisconnected(exception));
+        assertEquals(0, outbound.getInflight());
+        assertEquals(0, failed.get());
+    }
+
+    @Test
+    void stopsReplayWhenClosed(@TempDir Path directory) throws Exception {
+        // 每 100 毫秒发送一条
+        OfflineBuffer offline = new OfflineBuffer("test", 0, directory, 4096, 1024 * 1024, 10);
+        for (int i = 0; i < 20; i++) {
+            offline.offer("t/" + i, message(i), callback);
+        }
+        List<String> sent = new CopyOnWriteArrayList<>();
+        offline.replay((topic, message, listener) -> sent.add(topic), fake::isConnected, scheduler);
+        await(() -> sent.size() >= 1);
+        offline.close();
+        int count = sent.size();
+        Thread.sleep(300);
+        assertEquals(count, sent.size());
+        assertTrue(count < 20);
+        // 关闭后不再重新发送
+        offline.replay((topic, message, listener) -> sent.add(topic), fake::isConnected, scheduler);
+        Thread.sleep(200);
+        assertEquals(count, sent.size());
+        assertEquals(0, failed.get());
+
+        // 没有发送的消息留在磁盘中, 关闭时正在发送的一条可能再发送一次
+        OfflineBuffer reopened = new OfflineBuffer("test", 0, directory, 4096, 1024 * 1024, 0);
+        long left = reopened.size();
+        assertTrue(left == 20 - count || left == 20 - count + 1, "left: " + left);
+        reopened.close();
+    }
+
+    @Test
+    void failsMemoryMessagesWhenClosed() throws Exception {
+        OfflineBuffer offline = new OfflineBuffer("test", 100, null, 0, 0, 10);
+        for (int i = 0; i < 5; i++) {
+            offline.offer("t/" + i, message(i), callback);
+        }
+        List<String> sent = new CopyOnWriteArrayList<>();
+        offline.close();
+        offline.replay((topic, message, listener) -> sent.add(topic), fake::isConnected, scheduler);
+        Thread.sleep(200);
+        assertTrue(sent.isEmpty());
+        assertEquals(5, failed.get());
+        assertTrue(offline.isEmpty());
+    }
+
+    private static MqttMessage message(int i) {
+        MqttMessage message = new MqttMessage(("m" + i).getBytes(StandardCharsets.UTF_8));
+        message.setQos(1);
+        return message;
+    }
+
+    private static List<String> topics(int from, int to) {
+        List<String> topics = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            topics.add("t/" + i);
+        }
+        return topics;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timeout");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.github.tocrhz.mqtt.publisher;
+
+import com.github.tocrhz.mqtt.properties.OutboundProperties.OverflowPolicy;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundQueueTest {
+    // BLOCK 的等待时间, 立即失败的情况远小于该时间
+    private final static long TIMEOUT_MS = 5000;
+
+    private ScheduledExecutorService scheduler;
+    private FakeMqttClient fake;
+    private final List<String> succeeded = new CopyOnWriteArrayList<>();
+    private final List<Throwable> failed = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        fake = new FakeMqttClient();
+        fake.autoComplete = false;
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void blockWaitsUntilTheQueueHasRoom() throws Exception {
+        OutboundQueue outbound = full(OverflowPolicy.BLOCK);
+        Thread publisher = new Thread(() -> publish(outbound, 2));
+        publisher.start();
+        publisher.join(200);
+        assertTrue(publisher.isAlive(), "should wait while the queue is full");
+
+        // 第一条完成后发送队列中的第二条, 第三条放入队列
+        fake.pending.remove(0).onSuccess(null);
+        publisher.join(TIMEOUT_MS);
+        assertEquals(List.of("t/0", "t/1"), fake.sent);
+        assertEquals(1, outbound.size());
+        assertEquals(List.of("t/0"), succeeded);
+        assertTrue(failed.isEmpty());
+        assertEquals(0, outbound.getRejected());
+    }
+
+    @Test
+    void blockFailsAfterTimeout() throws Exception {
+        OutboundQueue outbound = new OutboundQueue("test", fake.client, 1, 1, OverflowPolicy.BLOCK, 50, scheduler);
+        publish(outbound, 0);
+        publish(outbound, 1);
+        long start = System.nanoTime();
+        publish(outbound, 2);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertRejected(outbound);
+    }
+
+    @Test
+    void failFastWhenTheQueueIsFull() throws Exception {
+        OutboundQueue outbound = full(OverflowPolicy.FAIL);
+        assertFast(() -> publish(outbound, 2));
+        assertRejected(outbound);
+    }
+
+    @Test
+    void blockFailsFastWhenMarkedNonBlocking() throws Exception {
+        OutboundQueue outbound = full(OverflowPolicy.BLOCK);
+        assertFast(() -> OutboundQueue.nonBlocking(() -> publish(outbound, 2)));
+        assertRejected(outbound);
+        // 标记只在 nonBlocking 中有效
+        Thread publisher = new Thread(() -> publish(outbound, 3));
+        publisher.start();
+        publisher.join(200);
+        assertTrue(publisher.isAlive());
+        fake.pending.remove(0).onSuccess(null);
+        publisher.join(TIMEOUT_MS);
+        assertEquals(1, failed.size());
+    }
+
+    @Test
+    void completionCallbackDoesNotBlock() throws Exception {
+        OutboundQueue outbound = new OutboundQueue("test", fake.client, 1, 1, OverflowPolicy.BLOCK, TIMEOUT_MS, scheduler);
+        // 在第一条的完成回调中发送: 第二条发送后, 第三条放入队列, 第四条在 Paho 的回调中不能等待
+        outbound.publish("t/0", message(0), new IMqttActionListener() {
+            @Override
+            public void onSuccess(IMqttToken asyncActionToken) {
+                publish(outbound, 2);
+                publish(outbound, 3);
+            }
+
+            @Override
+            public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            }
+        });
+        publish(outbound, 1);
+        assertFast(() -> fake.pending.remove(0).onSuccess(null));
+        assertEquals(List.of("t/0", "t/1"), fake.sent);
+        assertEquals(1, outbound.size());
+        assertEquals(1, failed.size());
+        assertEquals(1, outbound.getRejected());
+    }
+
+    /**
+     * 发送窗口(1)和队列(1)都已满
+     */
+    private OutboundQueue full(OverflowPolicy policy) throws MqttException {
+        OutboundQueue outbound = new OutboundQueue("test", fake.client, 1, 1, policy, TIMEOUT_MS, scheduler);
+        publish(outbound, 0);
+        publish(outbound, 1);
+        assertEquals(1, outbound.getInflight());
+        assertEquals(1, outbound.size());
+        return outbound;
+    }
+
+    private void publish(OutboundQueue outbound, int i) {
+        try {
+            outbound.publish("t/" + i, message(i), new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken asyncActionToken) {
+                    succeeded.add("t/" + i);
+                }
+
+                @Override
+                public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                    failed.add(exception);
+                }
+            });
+        } catch (MqttException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void assertRejected(OutboundQueue outbound) {
+        assertEquals(1, failed.size());
+        assertEquals(MqttException.REASON_CODE_MAX_INFLIGHT, ((MqttException) failed.get(0)).getReasonCode());
+        assertEquals(1, outbound.getRejected());
+        assertEquals(1, outbound.size());
+    }
+
+    private static void assertFast(Runnable task) {
+        long start = System.nanoTime();
+        task.run();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed < TIMEOUT_MS / 2, "took " + elapsed + " ms");
+    }
+
+    private static MqttMessage message(int i) {
+        MqttMessage message = new MqttMessage(("m" + i).getBytes(StandardCharsets.UTF_8));
+        message.setQos(1);
+        return message;
+    }
+}
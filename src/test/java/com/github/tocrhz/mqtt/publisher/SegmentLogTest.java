@@ -0,0 +1,181 @@
+package com.github.tocrhz.mqtt.publisher;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentLogTest {
+    private final static int SEGMENT_SIZE = 4096;
+    // 每个分段的头部为读取位置, 占 8 字节
+    private final static int HEADER = 8;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void fifoAcrossSegments() throws IOException {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, 1 << 20)) {
+            for (int i = 0; i < 100; i++) {
+                assertTrue(log.append(record(i, 100)));
+            }
+            assertTrue(segments().size() > 1);
+            assertEquals(100, log.size());
+            assertEquals(range(0, 100), drain(log, 100));
+            assertTrue(log.isEmpty());
+            assertNull(log.peek());
+            // 读完的分段被删除, 只保留最后一个
+            assertEquals(1, segments().size());
+        }
+    }
+
+    @Test
+    void recoversUnreadRecords() throws IOException {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, 1 << 20)) {
+            for (int i = 0; i < 100; i++) {
+                log.append(record(i, 100));
+            }
+            assertEquals(range(0, 30), drain(log, 30));
+        }
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, 1 << 20)) {
+            assertEquals(70, log.size());
+            log.append(record(100, 100));
+            assertEquals(range(30, 101), drain(log, 71));
+        }
+    }
+
+    @Test
+    void ignoresRecordWithoutLength() throws IOException {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, 1 << 20)) {
+            for (int i = 0; i < 3; i++) {
+                log.append(record(i, 10));
+            }
+        }
+        // 写入了内容但还没写长度时崩溃
+        Path segment = segments().get(0);
+        write(segment, HEADER + 3 * 14 + 4, "torn".getBytes(StandardCharsets.UTF_8));
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, 1 << 20)) {
+            assertEquals(3, log.size());
+            log.append(record(3, 10));
+            assertEquals(range(0, 4), drain(log, 4));
+        }
+    }
+
+    @Test
+    void ignoresRecordCutByTruncatedFile() throws IOException {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, 1 << 20)) {
+            for (int i = 0; i < 5; i++) {
+                log.append(record(i, 100));
+            }
+        }
+        // 文件在最后一条记录中间被截断
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(HEADER + 4 * 104 + 50);
+        }
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, 1 << 20)) {
+            assertEquals(4, log.size());
+            // 剩余空间不够时写入新的分段
+            log.append(record(5, 100));
+            assertEquals(List.of(0, 1, 2, 3, 5), drain(log, 5));
+        }
+    }
+
+    @Test
+    void skipsEmptyAndPartialSegments() throws IOException {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, 1 << 20)) {
+            log.append(record(0, 10));
+        }
+        Files.write(directory.resolve(String.format("%020d.seg", 5)), new byte[0]);
+        Files.write(directory.resolve(String.format("%020d.seg", 6)), new byte[]{0, 0, 1});
+        Files.write(directory.resolve("unknown.seg"), new byte[16]);
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, 1 << 20)) {
+            assertEquals(1, log.size());
+            log.append(record(1, 10));
+            assertEquals(range(0, 2), drain(log, 2));
+            assertTrue(Files.exists(directory.resolve(String.format("%020d.seg", 7))));
+            assertFalse(Files.exists(directory.resolve(String.format("%020d.seg", 5))));
+        }
+    }
+
+    @Test
+    void rereadsWhenReadPositionIsInvalid() throws IOException {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, 1 << 20)) {
+            for (int i = 0; i < 3; i++) {
+                log.append(record(i, 10));
+            }
+            drain(log, 2);
+        }
+        write(segments().get(0), 0, ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE).array());
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, 1 << 20)) {
+            // 宁可重复发送也不丢失
+            assertEquals(range(0, 3), drain(log, 3));
+        }
+    }
+
+    @Test
+    void rejectsWhenFull() throws IOException {
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE, 2 * SEGMENT_SIZE)) {
+            int appended = 0;
+            while (log.append(record(appended, 1000))) {
+                ++appended;
+            }
+            assertEquals(8, appended);
+            // 读完一个分段后又有空间
+            drain(log, 5);
+            assertTrue(log.append(record(appended, 1000)));
+        }
+    }
+
+    /**
+     * 记录内容为序号加填充
+     */
+    private static byte[] record(int index, int length) {
+        return ByteBuffer.allocate(length).putInt(index).array();
+    }
+
+    private static List<Integer> drain(SegmentLog log, int count) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte[] record = log.peek();
+            assertTrue(record != null, "missing record " + i);
+            indexes.add(ByteBuffer.wrap(record).getInt());
+            log.remove();
+        }
+        return indexes;
+    }
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            indexes.add(i);
+        }
+        return indexes;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> list = Files.list(directory)) {
+            return list.sorted().toList();
+        }
+    }
+
+    private static void write(Path file, long position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+}
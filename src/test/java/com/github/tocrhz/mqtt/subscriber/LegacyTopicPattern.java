@@ -0,0 +1,71 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 原来基于正则的主题匹配, 用于对比 {@link TopicPair}
+ */
+final class LegacyTopicPattern {
+    private final static Pattern TO_PATTERN = Pattern.compile("\\{(\\w+)}");
+
+    private final Pattern pattern;
+    private final List<String> names = new ArrayList<>();
+    private final List<Integer> groups = new ArrayList<>();
+
+    LegacyTopicPattern(String topic, Map<String, Class<?>> types) {
+        StringBuilder sb = new StringBuilder();
+        for (char ch : topic.toCharArray()) {
+            switch (ch) {
+                case '$', '^', '.', '?', '*', '|', '(', ')', '[', ']', '\\' -> sb.append('\\').append(ch);
+                case '+' -> sb.append("[^/]+");
+                case '#' -> sb.append(".*");
+                default -> sb.append(ch);
+            }
+        }
+        Matcher matcher = TO_PATTERN.matcher(sb.toString());
+        StringBuilder builder = new StringBuilder("^");
+        int group = 1;
+        while (matcher.find()) {
+            String name = matcher.group(1);
+            names.add(name);
+            groups.add(group);
+            Class<?> type = types.get(name);
+            if (type != null && Number.class.isAssignableFrom(type)) {
+                matcher.appendReplacement(builder, "(\\\\d+(:?\\\\.\\\\d+)?)");
+                ++group;
+            } else {
+                matcher.appendReplacement(builder, "([^/]+)");
+            }
+            ++group;
+        }
+        matcher.appendTail(builder);
+        builder.append("$");
+        this.pattern = Pattern.compile(builder.toString());
+    }
+
+    boolean matches(String topic) {
+        return pattern.matcher(topic).matches();
+    }
+
+    /**
+     * 参数值, 与原 getPathValueMap 一样每次创建 Matcher 和 HashMap
+     *
+     * @return 不匹配时为 null
+     */
+    Map<String, String> values(String topic) {
+        Matcher matcher = pattern.matcher(topic);
+        if (!matcher.matches()) {
+            return null;
+        }
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            values.put(names.get(i), matcher.group(groups.get(i)));
+        }
+        return values;
+    }
+}
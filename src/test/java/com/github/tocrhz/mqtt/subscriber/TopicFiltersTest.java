@@ -0,0 +1,156 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import org.eclipse.paho.client.mqttv3.MqttTopic;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopicFiltersTest {
+
+    @Test
+    void wildcardsCoverLiterals() {
+        assertEquals(List.of("a/+/c"), minimize("a/b/c", "a/+/c"));
+        assertEquals(List.of("a/#"), minimize("a/b/c", "a/#", "a/+/c"));
+        assertEquals(List.of("#"), minimize("a/b", "+/+", "a/#", "#"));
+        assertEquals(List.of("a/+/#"), minimize("a/+/#", "a/b/c/d", "a/b/#"));
+        // '+' 不包含多级, 也不包含父级
+        assertEquals(List.of("a/+", "a/b/c", "a"), minimize("a/+", "a/b/c", "a"));
+        // 只有 '#' 包含 '#'
+        assertEquals(List.of("a/+/+", "a/b/#"), minimize("a/+/+", "a/b/#"));
+        assertEquals(List.of("a/+/#"), minimize("a/+/#", "a/b/+"));
+        assertEquals(List.of("+/#"), minimize("+/b", "+/#"));
+    }
+
+    @Test
+    void hashCoversParent() {
+        assertEquals(List.of("a/#"), minimize("a", "a/#"));
+        assertEquals(List.of("a/b/#"), minimize("a/b", "a/b/#"));
+        // 'a/b/#' 不包含 'a'
+        assertEquals(List.of("a", "a/b/#"), minimize("a", "a/b/#"));
+        assertEquals(List.of("a/#", "b"), minimize("a/#", "b"));
+    }
+
+    @Test
+    void dollarTopics() {
+        // 首级的通配符不匹配 $ 开头的主题
+        assertEquals(List.of("#", "$SYS/load"), minimize("#", "$SYS/load", "a/b"));
+        assertEquals(List.of("+/load", "$SYS/load"), minimize("+/load", "$SYS/load"));
+        assertEquals(List.of("$SYS/#"), minimize("$SYS/load", "$SYS/#", "$SYS/+"));
+        assertEquals(List.of("$SYS/+"), minimize("$SYS/load", "$SYS/+"));
+        // 非首级的 $ 没有特殊含义
+        assertEquals(List.of("a/+"), minimize("a/$x", "a/+"));
+    }
+
+    @Test
+    void qos() {
+        TopicPair literal = TopicPair.of("a/b", 2);
+        TopicPair wildcard = TopicPair.of("a/+", 1);
+        assertEquals(List.of(literal, wildcard), List.copyOf(TopicFilters.minimize(List.of(literal, wildcard), false)));
+        literal = TopicPair.of("a/b", 1);
+        wildcard = TopicPair.of("a/#", 1);
+        assertEquals(List.of(wildcard), List.copyOf(TopicFilters.minimize(List.of(literal, wildcard), false)));
+        // 相同的主题保留 qos 最高的
+        LinkedHashSet<TopicPair> merged = TopicFilters.minimize(List.of(TopicPair.of("a/b", 0), TopicPair.of("a/b", 2), TopicPair.of("a/b", 1)), false);
+        assertEquals(1, merged.size());
+        assertEquals(2, merged.iterator().next().getQos());
+    }
+
+    @Test
+    void groups() {
+        TopicPair g1 = shared("a/b", "g1");
+        TopicPair g2 = shared("a/+", "g2");
+        TopicPair g1Wildcard = shared("a/+", "g1");
+        TopicPair plain = TopicPair.of("a/#", 0);
+        // 不同分组互不包含, 不分组的也不包含分组的
+        assertEquals(List.of("$share/g1/a/b", "$share/g2/a/+", "a/#")
+                , topics(TopicFilters.minimize(List.of(g1, g2, plain), true), true));
+        assertEquals(List.of("$share/g1/a/+"), topics(TopicFilters.minimize(List.of(g1, g1Wildcard), true), true));
+        // 未启用共享订阅时忽略分组
+        assertEquals(List.of("a/#"), topics(TopicFilters.minimize(List.of(g1, g2, plain), false), false));
+    }
+
+    @Test
+    void removedFiltersAreCovered() {
+        Random random = new Random(20231016);
+        for (int round = 0; round < 200; round++) {
+            List<TopicPair> pairs = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                pairs.add(TopicPair.of(randomFilter(random), random.nextInt(3)));
+            }
+            LinkedHashSet<TopicPair> kept = TopicFilters.minimize(pairs, false);
+            for (TopicPair pair : pairs) {
+                if (kept.contains(pair)) {
+                    continue;
+                }
+                List<String> samples = new ArrayList<>();
+                for (int i = 0; i < 20; i++) {
+                    samples.add(randomTopic(random, pair.getTopic(false)));
+                }
+                boolean covered = kept.stream().anyMatch(other -> other.getQos() >= pair.getQos()
+                        && samples.stream().allMatch(topic -> MqttTopic.isMatched(other.getTopic(false), topic)));
+                assertTrue(covered, pair.getTopic(false) + " removed from " + topics(kept, false));
+            }
+        }
+    }
+
+    private static List<String> minimize(String... topics) {
+        List<TopicPair> pairs = new ArrayList<>();
+        for (String topic : topics) {
+            pairs.add(TopicPair.of(topic, 0));
+        }
+        return topics(TopicFilters.minimize(pairs, false), false);
+    }
+
+    private static List<String> topics(Iterable<TopicPair> pairs, boolean enableShared) {
+        List<String> topics = new ArrayList<>();
+        for (TopicPair pair : pairs) {
+            topics.add(pair.getTopic(enableShared));
+        }
+        return topics;
+    }
+
+    private static TopicPair shared(String topic, String group) {
+        return TopicPair.of(topic, 0, group, new HashMap<>());
+    }
+
+    private static String randomFilter(Random random) {
+        int count = 1 + random.nextInt(4);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append('/');
+            }
+            if (i == count - 1 && random.nextInt(4) == 0) {
+                sb.append('#');
+            } else {
+                sb.append("ab+".charAt(random.nextInt(3)));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 与 filter 匹配的随机主题, 不含空层级
+     */
+    private static String randomTopic(Random random, String filter) {
+        StringBuilder sb = new StringBuilder();
+        for (String level : filter.split("/", -1)) {
+            if ("#".equals(level)) {
+                int extra = random.nextInt(3);
+                for (int i = 0; i < extra; i++) {
+                    sb.append("abc".charAt(random.nextInt(3))).append('/');
+                }
+            } else {
+                sb.append("+".equals(level) ? "abc".charAt(random.nextInt(3)) : level).append('/');
+            }
+        }
+        return sb.substring(0, sb.length() - 1);
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.tocrhz.mqtt.subscriber;
+
+import org.eclipse.paho.client.mqttv3.MqttTopic;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopicPairTest {
+    private final static Map<String, Class<?>> TYPES = Map.of("n", Integer.class, "v", Double.class);
+
+    private final static String[] TEMPLATES = {
+            "a/b/c", "a/+/c", "a/+", "a/#", "#", "+/+",
+            "dev/{id}/tel", "dev/{id}-{n}/tel", "dev/{id}/+/#", "dev/{id}/#",
+            "x/{a}.{b}", "s/{v}", "$SYS/{x}", "a/{x}y{z}", "+/{x}/#", "{a}{b}/c"
+    };
+    // 不含空层级, 空层级的差异见 plusMatchesEmptyLevel
+    private final static String[] TOPICS = {
+            "a/b/c", "a/b", "a", "a/b/c/d", "ab/c",
+            "dev/1/tel", "dev/abc-12/tel", "dev/abc-12.5/tel", "dev/a-b-3/tel", "dev/1/tel/x/y", "dev/1/x", "dev/1",
+            "x/1.2.3", "x/a.b", "x/.b", "s/12", "s/1.5", "s/1.", "s/.5", "s/abc",
+            "$SYS/load", "a/xyyz", "a/xyz", "a/xy", "q/w/e"
+    };
+
+    @Test
+    void matchesLikeRegex() {
+        for (String template : TEMPLATES) {
+            TopicPair pair = TopicPair.of(template, 0, null, new HashMap<>(TYPES));
+            LegacyTopicPattern legacy = template.contains("{") ? new LegacyTopicPattern(template, TYPES) : null;
+            for (String topic : TOPICS) {
+                boolean expected;
+                if (legacy == null) {
+                    expected = MqttTopic.isMatched(template, topic);
+                } else {
+                    // 原正则中 '#' 为 '.*', 不匹配父级本身
+                    expected = legacy.matches(topic) || template.endsWith("/#") && legacy.matches(topic + "/");
+                }
+                assertEquals(expected, pair.isMatched(topic), template + " | " + topic);
+                if (expected && legacy != null && legacy.matches(topic)) {
+                    assertEquals(legacy.values(topic), pair.getPathValueMap(topic), template + " | " + topic);
+                }
+            }
+        }
+    }
+
+    @Test
+    void plusMatchesEmptyLevel() {
+        // 原实现中 '+' 不匹配空层级, 与 MQTT 规范不一致
+        assertTrue(TopicPair.of("a/+/c", 0).isMatched("a//c"));
+        assertTrue(TopicPair.of("a/+", 0).isMatched("a/"));
+        assertTrue(TopicPair.of("+/+", 0).isMatched("/"));
+        assertTrue(TopicPair.of("dev/{id}/+", 0).isMatched("dev/1/"));
+        // 参数至少匹配一个字符
+        assertFalse(TopicPair.of("dev/{id}/tel", 0).isMatched("dev//tel"));
+    }
+
+    @Test
+    void hashMatchesParentLevel() {
+        TopicPair pair = TopicPair.of("dev/{id}/#", 0);
+        assertTrue(pair.isMatched("dev/1"));
+        assertTrue(pair.isMatched("dev/1/"));
+        assertTrue(pair.isMatched("dev/1/tel/x"));
+        assertFalse(pair.isMatched("dev"));
+        assertEquals(Map.of("id", "1"), pair.getPathValueMap("dev/1"));
+    }
+
+    @Test
+    void numberParam() {
+        TopicPair pair = TopicPair.of("s/{v}", 0, null, new HashMap<>(TYPES));
+        assertTrue(pair.isMatched("s/12"));
+        assertTrue(pair.isMatched("s/1.5"));
+        assertFalse(pair.isMatched("s/1."));
+        assertFalse(pair.isMatched("s/.5"));
+        assertFalse(pair.isMatched("s/abc"));
+        // 原正则 (:?\.\d+)? 的笔误会接受 "1:.5"
+        assertFalse(pair.isMatched("s/1:.5"));
+    }
+
+    @Test
+    void capture() {
+        TopicPair pair = TopicPair.of("dev/{id}-{n}/{type}", 0, null, new HashMap<>(TYPES));
+        TopicCapture capture = new TopicCapture();
+        assertTrue(pair.match("dev/a-b-3/tel", capture));
+        assertEquals("a-b", capture.value(pair.indexOf("id")));
+        assertEquals("3", capture.value(pair.indexOf("n")));
+        assertEquals("tel", capture.value(pair.indexOf("type")));
+        assertEquals(-1, pair.indexOf("none"));
+        assertFalse(pair.match("dev/a-b/tel", capture));
+    }
+
+    @Test
+    void topic() {
+        TopicPair pair = TopicPair.of("dev/{id}/x{n}y/tel", 1, "g1", new HashMap<>(TYPES));
+        assertTrue(pair.hasParams());
+        assertEquals("dev/+/+/tel", pair.getTopic(false));
+        assertEquals("$share/g1/dev/+/+/tel", pair.getTopic(true));
+        assertEquals(-2, pair.order());
+        assertEquals(1, TopicPair.of("a/+", 0).order());
+        assertEquals(TopicPair.of("dev/+/+/tel", 0), pair);
+    }
+}